@@ -0,0 +1,35 @@
+package enums;
+
+/**
+ * The result of validating a Circularity Flow without throwing, in the order the checks are made.
+ * Each invalid status keeps the message of the exception thrown for it by the calculation.
+ */
+public enum FlowStatus {
+    valid(null),
+    rrWithoutR("R is equal to 0, Rr can't be different than 0!"),
+    rNotBelowW("R can't be bigger or equal to W"),
+    unbalancedR("Rr + Wc should equal R"),
+    wAboveM("W can't be bigger than M"),
+    mBelowV("M can't be smaller than V"),
+    lfiDivisionByZero("LFI Division by zero"),
+    lfiOutOfRange("LFI should be beetwen 0 and 1"),
+    wcAboveWf("Wc can't be bigger than Wf"),
+    xDivisionByZero("X Division by zero"),
+    invalidBounds("Invalid input value"),
+    fxDivisionByZero("Fx Division by zero"),
+    mcipOutOfRange("MCIp should be beetwen 0 and 1");
+
+    private final String message;
+
+    FlowStatus(String message) {
+        this.message = message;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isValid() {
+        return this == valid;
+    }
+}
@@ -0,0 +1,9 @@
+package enums;
+
+/**
+ * The metrics of a Circularity Flow stored as columns by {@code CircularityResults}, in the order the columns
+ * are stored. The ordinals are part of the file format.
+ */
+public enum ResultColumn {
+    V, R, Rr, Ri, Wc, Wf, Ep, Es, MCIp
+}
@@ -0,0 +1,360 @@
+package esii.grupo19;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.UUID;
+
+import enums.*;
+
+/**
+ * The BinarySnapshot class writes and reads a ProductSystem in a compact binary format, meant to be reloaded
+ * much faster than the CSV and JSON formats. Both directions go sequentially through a single buffer over an
+ * NIO channel.
+ *
+ * <p>Layout, in big-endian order:
+ * <ul>
+ *     <li>header: the magic number {@code PSYS} and the format version, as two ints;</li>
+ *     <li>string table: the number of distinct strings, then each string as its UTF-8 length and bytes;</li>
+ *     <li>flows: their number, then for each flow its id as two longs, its name and comment as string table
+ *     indexes and its type as an enum ordinal;</li>
+ *     <li>processes: their number, then for each process its id, name, product name, type, operator, location,
+ *     references, a byte telling whether it has a contact followed by the four contact strings, its comment and
+ *     its process flows;</li>
+ *     <li>process flows: their number, then for each process flow its id, flow and process names, quantity as a
+ *     raw double, and unit, input/output and state ordinals.</li>
+ * </ul>
+ * Null strings are written as the index -1 and null enums as the ordinal -1. The enum ordinals are part of the
+ * format, so reordering an enum requires a new format version.
+ *
+ * <p>A process flow shared by several processes is written once per process and read back as a single instance.
+ */
+class BinarySnapshot {
+    static final int MAGIC = 0x50535953;
+    static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final FlowType[] FLOW_TYPES = FlowType.values();
+    private static final ProcessType[] PROCESS_TYPES = ProcessType.values();
+    private static final Unit[] UNITS = Unit.values();
+    private static final IOFlow[] IO_FLOWS = IOFlow.values();
+    private static final State[] STATES = State.values();
+
+    private BinarySnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of the ProductSystem to the channel.
+     *
+     * @param productSystem The ProductSystem to be written.
+     * @param channel       The channel to write to. It is not closed.
+     * @throws IOException If an I/O error occurs.
+     */
+    static void write(ProductSystem productSystem, WritableByteChannel channel) throws IOException {
+        ProductSystem.Contents contents = productSystem.contents();
+        HashMap<String, Integer> indexes = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        for (Flow flow : contents.flows()) {
+            collect(indexes, strings, flow.getName(), flow.getComment());
+        }
+        for (Process process : contents.processes()) {
+            collect(indexes, strings, process.getName(), process.getProductName(), process.getOperator(),
+                    process.getLocation(), process.getReferences(), process.getComment());
+            Contact contact = process.getContact();
+            if (contact != null) {
+                collect(indexes, strings, contact.getName(), contact.getEmail(), contact.getPhone(), contact.getAddress());
+            }
+            for (ProcessFlow processFlow : process.getProcessFlows()) {
+                collect(indexes, strings, processFlow.getNameFlow(), processFlow.getNameProcess());
+            }
+        }
+
+        Output out = new Output(channel);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(strings.size());
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.putBytes(bytes);
+        }
+
+        out.putInt(contents.flows().size());
+        for (Flow flow : contents.flows()) {
+            out.putId(flow.getId());
+            out.putInt(index(indexes, flow.getName()));
+            out.putInt(index(indexes, flow.getComment()));
+            out.putOrdinal(flow.getType());
+        }
+
+        out.putInt(contents.processes().size());
+        for (Process process : contents.processes()) {
+            out.putId(process.getId());
+            out.putInt(index(indexes, process.getName()));
+            out.putInt(index(indexes, process.getProductName()));
+            out.putOrdinal(process.getProcessType());
+            out.putInt(index(indexes, process.getOperator()));
+            out.putInt(index(indexes, process.getLocation()));
+            out.putInt(index(indexes, process.getReferences()));
+            Contact contact = process.getContact();
+            out.putByte(contact == null ? 0 : 1);
+            if (contact != null) {
+                out.putInt(index(indexes, contact.getName()));
+                out.putInt(index(indexes, contact.getEmail()));
+                out.putInt(index(indexes, contact.getPhone()));
+                out.putInt(index(indexes, contact.getAddress()));
+            }
+            out.putInt(index(indexes, process.getComment()));
+            out.putInt(process.getProcessFlows().size());
+            for (ProcessFlow processFlow : process.getProcessFlows()) {
+                out.putId(processFlow.getId());
+                out.putInt(index(indexes, processFlow.getNameFlow()));
+                out.putInt(index(indexes, processFlow.getNameProcess()));
+                out.putDouble(processFlow.getFlowQuantity());
+                out.putOrdinal(processFlow.getUnit());
+                out.putOrdinal(processFlow.getIOFlow());
+                out.putOrdinal(processFlow.getState());
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a ProductSystem from a snapshot.
+     *
+     * @param channel The channel to read from. It is not closed.
+     * @return The ProductSystem stored in the snapshot, with its ids.
+     * @throws IOException If an I/O error occurs, if the channel does not hold a snapshot, or if its version
+     *                     is not supported.
+     */
+    static ProductSystem read(ReadableByteChannel channel) throws IOException {
+        Input in = new Input(channel);
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Invalid snapshot");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported snapshot version: " + version);
+        }
+        String[] strings = new String[in.getCount()];
+        for (int i = 0; i < strings.length; i++) {
+            strings[i] = new String(in.getBytes(in.getCount()), StandardCharsets.UTF_8);
+        }
+
+        ProductSystem productSystem = new ProductSystem();
+        int flows = in.getCount();
+        for (int i = 0; i < flows; i++) {
+            UUID id = in.getId();
+            String name = in.getString(strings);
+            String comment = in.getString(strings);
+            productSystem.addFlow(new Flow(id, name, in.getEnum(FLOW_TYPES), comment));
+        }
+
+        HashMap<UUID, ProcessFlow> processFlowsById = new HashMap<>();
+        int processes = in.getCount();
+        for (int i = 0; i < processes; i++) {
+            UUID id = in.getId();
+            String name = in.getString(strings);
+            String productName = in.getString(strings);
+            ProcessType type = in.getEnum(PROCESS_TYPES);
+            String operator = in.getString(strings);
+            String location = in.getString(strings);
+            String references = in.getString(strings);
+            Contact contact = null;
+            if (in.getByte() != 0) {
+                contact = new Contact(in.getString(strings), in.getString(strings), in.getString(strings), in.getString(strings));
+            }
+            String comment = in.getString(strings);
+            Process process = new Process(id, name, productName, type, operator, location, references, contact, comment);
+            productSystem.addProcess(process);
+            int processFlows = in.getCount();
+            for (int j = 0; j < processFlows; j++) {
+                UUID processFlowId = in.getId();
+                String nameFlow = in.getString(strings);
+                String nameProcess = in.getString(strings);
+                double quantity = in.getDouble();
+                Unit unit = in.getEnum(UNITS);
+                IOFlow ioFlow = in.getEnum(IO_FLOWS);
+                State state = in.getEnum(STATES);
+                ProcessFlow processFlow = processFlowsById.get(processFlowId);
+                if (processFlow == null) {
+                    processFlow = new ProcessFlow(processFlowId, nameFlow, nameProcess, quantity, unit, ioFlow, state);
+                    processFlowsById.put(processFlowId, processFlow);
+                }
+                process.addProcessFlow(processFlow);
+            }
+        }
+        return productSystem;
+    }
+
+    private static void collect(HashMap<String, Integer> indexes, ArrayList<String> strings, String... values) {
+        for (String value : values) {
+            if (value != null && !indexes.containsKey(value)) {
+                indexes.put(value, strings.size());
+                strings.add(value);
+            }
+        }
+    }
+
+    private static int index(HashMap<String, Integer> indexes, String value) {
+        return value == null ? -1 : indexes.get(value);
+    }
+
+    /**
+     * Buffered sequential writer over a channel, also used by {@link CircularityResults}.
+     */
+    static class Output {
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        Output(WritableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+
+        void putByte(int value) throws IOException {
+            ensure(1);
+            buffer.put((byte) value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void putId(UUID id) throws IOException {
+            ensure(16);
+            buffer.putLong(id.getMostSignificantBits());
+            buffer.putLong(id.getLeastSignificantBits());
+        }
+
+        void putOrdinal(Enum<?> value) throws IOException {
+            putByte(value == null ? -1 : value.ordinal());
+        }
+
+        void putBytes(byte[] bytes) throws IOException {
+            int offset = 0;
+            while (offset < bytes.length) {
+                ensure(1);
+                int length = Math.min(buffer.remaining(), bytes.length - offset);
+                buffer.put(bytes, offset, length);
+                offset += length;
+            }
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Buffered sequential reader over a channel.
+     */
+    private static class Input {
+        private final ReadableByteChannel channel;
+        private final ByteBuffer buffer;
+
+        Input(ReadableByteChannel channel) {
+            this.channel = channel;
+            this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            this.buffer.flip();
+        }
+
+        int getByte() throws IOException {
+            ensure(1);
+            return buffer.get();
+        }
+
+        int getInt() throws IOException {
+            ensure(4);
+            return buffer.getInt();
+        }
+
+        /**
+         * Reads a number of elements or bytes, which must not be negative.
+         */
+        int getCount() throws IOException {
+            int count = getInt();
+            if (count < 0) {
+                throw new IOException("Invalid snapshot");
+            }
+            return count;
+        }
+
+        double getDouble() throws IOException {
+            ensure(8);
+            return buffer.getDouble();
+        }
+
+        UUID getId() throws IOException {
+            ensure(16);
+            return new UUID(buffer.getLong(), buffer.getLong());
+        }
+
+        String getString(String[] strings) throws IOException {
+            int index = getInt();
+            if (index == -1) {
+                return null;
+            }
+            if (index < 0 || index >= strings.length) {
+                throw new IOException("Invalid snapshot");
+            }
+            return strings[index];
+        }
+
+        <E extends Enum<E>> E getEnum(E[] values) throws IOException {
+            int ordinal = getByte();
+            if (ordinal == -1) {
+                return null;
+            }
+            if (ordinal < 0 || ordinal >= values.length) {
+                throw new IOException("Invalid snapshot");
+            }
+            return values[ordinal];
+        }
+
+        byte[] getBytes(int length) throws IOException {
+            byte[] bytes = new byte[length];
+            int offset = 0;
+            while (offset < length) {
+                ensure(1);
+                int read = Math.min(buffer.remaining(), length - offset);
+                buffer.get(bytes, offset, read);
+                offset += read;
+            }
+            return bytes;
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            buffer.compact();
+            while (buffer.position() < bytes) {
+                if (channel.read(buffer) < 0) {
+                    throw new EOFException("Truncated snapshot");
+                }
+            }
+            buffer.flip();
+        }
+    }
+}
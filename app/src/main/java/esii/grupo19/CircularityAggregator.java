@@ -0,0 +1,276 @@
+package esii.grupo19;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+
+import enums.*;
+
+/**
+ * The CircularityAggregator class collects the Circularity Flows of a product in a single pass over a ProductSystem.
+ * It builds name-to-Flow and name-to-Process lookups once, when it is created, and then accumulates the
+ * V, R, Rr, Ri, Wc and Wf values of every material or service flow while walking the processes of the product.
+ *
+ * <p>The produced Circularity Flows, their order and the exceptions thrown for invalid data are the same as the
+ * ones obtained with {@link CircularityCalculator#searchCircularityFlow()} before this class existed: flows are
+ * listed in order of first appearance, and when several flows or processes share a name the first one is used.
+ *
+ * <p>The aggregator works on a {@link ProductSystem#snapshot()} taken when it is created, so a new aggregator must
+ * be created after the ProductSystem changes, and changes made by other threads meanwhile are never half seen.
+ *
+ * <p>Usage:
+ * {@code
+ * CircularityAggregator aggregator = new CircularityAggregator(productSystem);
+ * LinkedList<CircularityFlow> circularityFlows = aggregator.aggregate("productName");
+ * }
+ */
+public class CircularityAggregator {
+    private final ProductSystem productSystem;
+    private final PersistentList<Process> processes;
+    private final HashMap<String, Flow> flowsByName;
+    private final HashMap<String, Process> processesByName;
+
+    /**
+     * Creates an aggregator for the given ProductSystem, indexing its flows and processes by name.
+     *
+     * @param productSystem The ProductSystem whose processes will be aggregated.
+     * @throws IllegalArgumentException If the ProductSystem is null.
+     */
+    public CircularityAggregator(ProductSystem productSystem) {
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        ProductSystemSnapshot snapshot = productSystem.snapshot();
+        this.productSystem = productSystem;
+        this.processes = snapshot.processes();
+        this.flowsByName = new HashMap<>();
+        this.processesByName = new HashMap<>();
+        for (Flow flow : snapshot.flows()) {
+            flowsByName.putIfAbsent(flow.getName(), flow);
+        }
+        for (Process process : processes) {
+            processesByName.putIfAbsent(process.getName(), process);
+        }
+    }
+
+    public ProductSystem getProductSystem() {
+        return productSystem;
+    }
+
+    /**
+     * Retrieves the processes of the snapshot the aggregator works on.
+     */
+    PersistentList<Process> processes() {
+        return processes;
+    }
+
+    /**
+     * Collects the Circularity Flows of every process of the given product.
+     *
+     * @param productName The name of the product whose processes are aggregated.
+     * @return The Circularity Flows of the product, in order of first appearance.
+     * @throws IllegalArgumentException If the product name is null, if a process of the product has no process flows,
+     *                                  if a referenced flow or process does not exist, if a flow type is invalid,
+     *                                  or if the product has no material or service flows.
+     */
+    public LinkedList<CircularityFlow> aggregate(String productName) {
+        if (productName == null) {
+            throw new IllegalArgumentException("Product name is null");
+        }
+        LinkedHashMap<String, CircularityFlow> circularityFlows = new LinkedHashMap<>();
+        for (Process process : processes) {
+            if (process.getProductName().equals(productName)) {
+                aggregateProcess(process, circularityFlows);
+            }
+        }
+        if (circularityFlows.isEmpty()) {
+            throw new IllegalArgumentException("There are no processes with this name: " + productName);
+        }
+        return new LinkedList<>(circularityFlows.values());
+    }
+
+    /**
+     * Collects the Circularity Flows of every product of the ProductSystem in a single pass over its processes.
+     * Processes are grouped by {@link Process#getProductName()}; processes without a product name are skipped.
+     * Products whose data is invalid are skipped too.
+     *
+     * @return The Circularity Flows of each valid product, with products and flows in order of first appearance.
+     * @see #aggregateAll(Map)
+     */
+    public LinkedHashMap<String, LinkedList<CircularityFlow>> aggregateAll() {
+        return aggregateAll(null);
+    }
+
+    /**
+     * Collects the Circularity Flows of every product of the ProductSystem in a single pass over its processes,
+     * like {@link #aggregateAll()}, keeping the error of each product whose data is invalid: a process of the
+     * product has no process flows, a referenced flow or process does not exist, a flow type is invalid, or the
+     * product has no material or service flows. The other products are still aggregated.
+     *
+     * @param failures The map to which the error of each invalid product is added, by product name, or null to
+     *                 skip invalid products silently.
+     * @return The Circularity Flows of each valid product, with products and flows in order of first appearance.
+     */
+    public LinkedHashMap<String, LinkedList<CircularityFlow>> aggregateAll(Map<String, ? super IllegalArgumentException> failures) {
+        LinkedHashMap<String, LinkedHashMap<String, CircularityFlow>> products = new LinkedHashMap<>();
+        LinkedHashMap<String, IllegalArgumentException> errors = new LinkedHashMap<>();
+        for (Process process : processes) {
+            String productName = process.getProductName();
+            if (productName == null || errors.containsKey(productName)) {
+                continue;
+            }
+            LinkedHashMap<String, CircularityFlow> productFlows = products.computeIfAbsent(productName, k -> new LinkedHashMap<>());
+            try {
+                aggregateProcess(process, productFlows);
+            } catch (IllegalArgumentException e) {
+                errors.put(productName, e);
+            }
+        }
+        LinkedHashMap<String, LinkedList<CircularityFlow>> circularityFlows = new LinkedHashMap<>();
+        for (String productName : products.keySet()) {
+            IllegalArgumentException error = errors.get(productName);
+            if (error == null && products.get(productName).isEmpty()) {
+                error = new IllegalArgumentException("There are no processes with this name: " + productName);
+            }
+            if (error != null) {
+                if (failures != null) {
+                    failures.put(productName, error);
+                }
+                continue;
+            }
+            circularityFlows.put(productName, new LinkedList<>(products.get(productName).values()));
+        }
+        return circularityFlows;
+    }
+
+    /**
+     * Adds the process flows of a single process to the given Circularity Flows, creating the missing ones.
+     *
+     * @param process          The process whose process flows are added.
+     * @param circularityFlows The Circularity Flows being collected, indexed by flow name.
+     * @throws IllegalArgumentException If the process has no process flows, if a referenced flow or process
+     *                                  does not exist or if a flow type is invalid.
+     */
+    void aggregateProcess(Process process, LinkedHashMap<String, CircularityFlow> circularityFlows) {
+        if (process.getProcessFlows().isEmpty()) {
+            throw new IllegalArgumentException("Empty ProcessFlow list");
+        }
+        for (ProcessFlow processFlow : process.getProcessFlows()) {
+            Flow flow = searchFlow(processFlow.getNameFlow());
+            // Update Circularity Flows for material or service flows
+            if (flow.getType() == FlowType.material || flow.getType() == FlowType.service) {
+                CircularityFlow circularityFlow = circularityFlows.get(flow.getName());
+                if (circularityFlow == null) {
+                    circularityFlow = new CircularityFlow(flow.getName());
+                    circularityFlows.put(flow.getName(), circularityFlow);
+                }
+                accumulate(circularityFlow, processFlow, searchProcessType(processFlow));
+            } else if (flow.getType() != FlowType.energy) {
+                throw new IllegalArgumentException("Invalid flow type");
+            }
+        }
+    }
+
+    /**
+     * Searches for a Flow by name using the lookup built when the aggregator was created.
+     *
+     * @param name The name of the Flow to be searched.
+     * @return The first Flow of the ProductSystem with the provided name.
+     * @throws IllegalArgumentException If the name is null, if the flow list is empty or if no flow has that name.
+     */
+    public Flow searchFlow(String name) {
+        if (name == null) {
+            throw new IllegalArgumentException("Flow name is null");
+        }
+        if (flowsByName.isEmpty()) {
+            throw new IllegalArgumentException("Empty Flow list");
+        }
+        Flow flow = flowsByName.get(name);
+        if (flow == null) {
+            throw new IllegalArgumentException("Flow does not exist");
+        }
+        return flow;
+    }
+
+    /**
+     * Searches for the Process Type of the process named by the given Process Flow, using the lookup built
+     * when the aggregator was created.
+     *
+     * @param processFlow The process flow for which the process type is to be determined.
+     * @return The Process Type of the first process with the name referenced by the process flow.
+     * @throws IllegalArgumentException If the process flow is null, if the process list is empty, if the process
+     *                                  does not exist or if its type is null.
+     */
+    public ProcessType searchProcessType(ProcessFlow processFlow) {
+        if (processFlow == null) {
+            throw new IllegalArgumentException("Process flow is null");
+        }
+        if (processesByName.isEmpty()) {
+            throw new IllegalArgumentException("Empty Process list");
+        }
+        Process process = processesByName.get(processFlow.getNameProcess());
+        if (process == null) {
+            throw new IllegalArgumentException("Process does not exist");
+        }
+        if (process.getProcessType() == null) {
+            throw new IllegalArgumentException("Process type is null");
+        }
+        return process.getProcessType();
+    }
+
+    /**
+     * Adds the quantity of a process flow to the matching value of a Circularity Flow.
+     * Quantities are converted with {@link UnitConverter} to the base unit of their dimension, which becomes the unit
+     * of the Circularity Flow, so the result does not depend on the unit or the order of the process flows; process
+     * flows of another dimension can't be added.
+     * Virgin flows add to V; recycled inputs add to Ri in primary processes and to R in recycling processes;
+     * recycled outputs of recycling processes add to Rr; waste adds to Wf in primary processes and to Wc in
+     * recycling processes.
+     *
+     * @param circularityFlow The Circularity Flow to be updated.
+     * @param processFlow     The process flow whose quantity is added.
+     * @param type            The type of the process the process flow belongs to.
+     * @throws IllegalArgumentException If the state of the process flow is null, or if its unit can't be converted
+     *                                  to the unit of the Circularity Flow.
+     */
+    static void accumulate(CircularityFlow circularityFlow, ProcessFlow processFlow, ProcessType type) {
+        State state = processFlow.getState();
+        if (state == null) {
+            throw new IllegalArgumentException("Invalid processFlow state");
+        }
+        Unit unit = UnitConverter.getBaseUnit(processFlow.getUnit());
+        if (circularityFlow.getUnit() == null) {
+            circularityFlow.setUnit(unit);
+        } else if (unit != null && unit != circularityFlow.getUnit()) {
+            throw new IllegalArgumentException("Incompatible units");
+        }
+        double quantity = UnitConverter.convert(processFlow.getFlowQuantity(), processFlow.getUnit(), unit);
+        switch (state) {
+            case virgin:
+                circularityFlow.setV(circularityFlow.getV() + quantity);
+                break;
+            case recycled:
+                //Ri
+                if (processFlow.getIOFlow() == IOFlow.Input && type == ProcessType.primary) {
+                    circularityFlow.setRi(circularityFlow.getRi() + quantity);
+                    //R
+                } else if (processFlow.getIOFlow() == IOFlow.Input && type == ProcessType.recycling) {
+                    circularityFlow.setR(circularityFlow.getR() + quantity);
+                    //Rr
+                } else if (processFlow.getIOFlow() == IOFlow.Output && type == ProcessType.recycling) {
+                    circularityFlow.setRr(circularityFlow.getRr() + quantity);
+                }
+                break;
+            case waste:
+                //Wf
+                if (type == ProcessType.primary) {
+                    circularityFlow.setWf(circularityFlow.getWf() + quantity);
+                    //Wc
+                } else if (type == ProcessType.recycling) {
+                    circularityFlow.setWc(circularityFlow.getWc() + quantity);
+                }
+                break;
+        }
+    }
+}
@@ -0,0 +1,346 @@
+package esii.grupo19;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import javax.management.InvalidAttributeValueException;
+
+import exceptions.DivideByZeroException;
+
+/**
+ * The CircularityBatchCalculator class calculates the Mass Circularity Index (MCI) of every product of a
+ * ProductSystem at once. Where a {@link CircularityCalculator} is bound to a single product and rescans the whole
+ * ProductSystem for it, this class groups the processes by {@link Process#getProductName()} and aggregates the
+ * Circularity Flows of all products in a single pass.
+ *
+ * <p>The MCI of each product and its Circularity Flows are the same as the ones obtained with a
+ * CircularityCalculator for that product and the same L, U, Lavg and Uavg values.
+ *
+ * <p>A product whose data is invalid does not stop the batch: its error is kept in {@link #getFailures()} and the
+ * other products are still calculated.
+ *
+ * <p>When a {@link ForkJoinPool} is set, the products are evaluated in parallel on that pool, and the MCIp of the
+ * flows of large products is calculated in parallel as well. The weighted sums are still added in flow order, so
+ * the results, their order and the errors of the failing products are the same as in the sequential mode.
+ *
+ * <p>Usage:
+ * {@code
+ * CircularityBatchCalculator batchCalculator = new CircularityBatchCalculator(u, l, lavg, uavg, productSystem);
+ * LinkedHashMap<String, Double> results = batchCalculator.calculateCircularity();
+ * LinkedHashMap<String, Exception> failures = batchCalculator.getFailures();
+ * LinkedList<CircularityFlow> circularityFlows = batchCalculator.getCircularityFlows("productName");
+ *
+ * batchCalculator.setForkJoinPool(new ForkJoinPool(32));
+ * LinkedHashMap<String, Double> parallelResults = batchCalculator.calculateCircularity();
+ * }
+ */
+public class CircularityBatchCalculator {
+    // Products with at least this number of flows have their flows evaluated in parallel
+    static final int PARALLEL_FLOW_THRESHOLD = 1024;
+    private int U;
+    private int L;
+    private double Lavg;
+    private double Uavg;
+    private ProductSystem productSystem;
+    private LinkedHashMap<String, LinkedList<CircularityFlow>> circularityFlows;
+    private LinkedHashMap<String, Double> results;
+    private LinkedHashMap<String, Exception> failures;
+    private ForkJoinPool forkJoinPool;
+
+    public CircularityBatchCalculator(int u, int l, double lavg, double uavg, ProductSystem productSystem) {
+        this.productSystem = productSystem;
+        this.U = u;
+        this.L = l;
+        this.Lavg = lavg;
+        this.Uavg = uavg;
+        this.circularityFlows = new LinkedHashMap<>();
+        this.results = new LinkedHashMap<>();
+        this.failures = new LinkedHashMap<>();
+    }
+
+    public int getU() {
+        return U;
+    }
+
+    public void setU(int u) {
+        U = u;
+    }
+
+    public int getL() {
+        return L;
+    }
+
+    public void setL(int l) {
+        L = l;
+    }
+
+    public double getLavg() {
+        return Lavg;
+    }
+
+    public void setLavg(double lavg) {
+        Lavg = lavg;
+    }
+
+    public double getUavg() {
+        return Uavg;
+    }
+
+    public void setUavg(double uavg) {
+        Uavg = uavg;
+    }
+
+    public ProductSystem getProductSystem() {
+        return productSystem;
+    }
+
+    public void setProductSystem(ProductSystem productSystem) {
+        this.productSystem = productSystem;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * Sets the pool used to evaluate the products in parallel.
+     *
+     * @param forkJoinPool The pool used by {@link #calculateCircularity()}, or null to evaluate the products sequentially.
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Retrieves the MCI of each product calculated by the last call to {@link #calculateCircularity()}.
+     *
+     * @return The MCI of each product, in order of first appearance of the product.
+     */
+    public LinkedHashMap<String, Double> getResults() {
+        return results;
+    }
+
+    /**
+     * Retrieves the error of each product that could not be calculated by the last call to
+     * {@link #calculateCircularity()}, or whose Circularity Flows could not be found by the last search.
+     *
+     * @return The error of each failing product: first the products with invalid data, then the products whose
+     * calculation failed, each in order of first appearance of the product.
+     */
+    public LinkedHashMap<String, Exception> getFailures() {
+        return failures;
+    }
+
+    /**
+     * Retrieves the Circularity Flows of each product found by the last search.
+     *
+     * @return The Circularity Flows of each product, in order of first appearance of the product.
+     */
+    public LinkedHashMap<String, LinkedList<CircularityFlow>> getCircularityFlows() {
+        return circularityFlows;
+    }
+
+    /**
+     * Retrieves the Circularity Flows of a single product found by the last search.
+     *
+     * @param productName The name of the product.
+     * @return The Circularity Flows of the product, or null if the product was not found.
+     */
+    public LinkedList<CircularityFlow> getCircularityFlows(String productName) {
+        return circularityFlows.get(productName);
+    }
+
+    /**
+     * Searches for the Circularity Flows of every product in the product system's processes, in a single pass.
+     * The products whose data is invalid are left out, and their errors are kept in {@link #getFailures()}.
+     *
+     * @throws IllegalArgumentException If the product system is null or has no processes.
+     */
+    public void searchCircularityFlows() {
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        if (productSystem.getProcessCount() == 0) {
+            throw new IllegalArgumentException("Empty Process list");
+        }
+        LinkedHashMap<String, Exception> found = new LinkedHashMap<>();
+        circularityFlows = new CircularityAggregator(productSystem).aggregateAll(found);
+        failures = found;
+    }
+
+    /**
+     * Calculates the MCI of every product of the product system.
+     *
+     * The products whose data is invalid, or whose calculation fails, are left out of the results, and their
+     * errors are kept in {@link #getFailures()}.
+     *
+     * @return The MCI of each product that could be calculated, in order of first appearance of the product.
+     * @throws IllegalArgumentException           If the product system is null, or if it has no processes or flows.
+     * @throws DivideByZeroException              If the bounds make X or F(X) divide by zero.
+     * @throws InvalidAlgorithmParameterException If the bounds are invalid.
+     */
+    public LinkedHashMap<String, Double> calculateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        if (productSystem.getProcessCount() == 0) {
+            throw new IllegalArgumentException("Empty Process list");
+        }
+        if (productSystem.getFlowCount() == 0) {
+            throw new IllegalArgumentException("Empty Flow list");
+        }
+        // Invalid bounds would fail every product, so they fail the whole batch
+        CircularityKernel.calculateFx(CircularityKernel.calculateX(L, Lavg, U, Uavg));
+        searchCircularityFlows();
+        LinkedHashMap<String, Double> calculated = new LinkedHashMap<>();
+        if (forkJoinPool == null) {
+            for (String productName : circularityFlows.keySet()) {
+                try {
+                    calculated.put(productName, CircularityCalculator.calculateCircularity(circularityFlows.get(productName), L, Lavg, U, Uavg));
+                } catch (DivideByZeroException | InvalidAttributeValueException | InvalidAlgorithmParameterException | RuntimeException e) {
+                    failures.put(productName, e);
+                }
+            }
+        } else {
+            String[] productNames = circularityFlows.keySet().toArray(new String[0]);
+            double[] values = new double[productNames.length];
+            Exception[] errors = new Exception[productNames.length];
+            forkJoinPool.invoke(new ProductTask(productNames, values, errors, 0, productNames.length));
+            for (int i = 0; i < productNames.length; i++) {
+                if (errors[i] != null) {
+                    failures.put(productNames[i], errors[i]);
+                } else {
+                    calculated.put(productNames[i], values[i]);
+                }
+            }
+        }
+        this.results = calculated;
+        return this.results;
+    }
+
+    /**
+     * Calculates the MCI of a product, evaluating the MCIp of its flows in parallel when there are many of them.
+     * The products are summed in flow order and the error of the first failing flow is thrown, so the result is
+     * the same as the one of {@link CircularityCalculator#calculateCircularity(LinkedList, int, double, int, double)}.
+     */
+    private double calculateProduct(LinkedList<CircularityFlow> flows) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        if (flows.size() < PARALLEL_FLOW_THRESHOLD) {
+            return CircularityCalculator.calculateCircularity(flows, L, Lavg, U, Uavg);
+        }
+        CircularityFlow[] flowArray = flows.toArray(new CircularityFlow[0]);
+        double[] mcip = new double[flowArray.length];
+        double[] m = new double[flowArray.length];
+        Exception[] errors = new Exception[flowArray.length];
+        CircularityKernel.Utility utility = CircularityKernel.calculateUtility(L, Lavg, U, Uavg);
+        new FlowTask(flowArray, utility, mcip, m, errors, 0, flowArray.length).invoke();
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < flowArray.length; i++) {
+            if (errors[i] != null) {
+                rethrow(errors[i]);
+            }
+            x += mcip[i] * m[i];
+            y += m[i];
+        }
+        return CircularityCalculator.calculateCircularity(x, y);
+    }
+
+    /**
+     * Rethrows an exception caught by a parallel task with its original type.
+     */
+    private static void rethrow(Exception e) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        if (e instanceof DivideByZeroException) {
+            throw (DivideByZeroException) e;
+        }
+        if (e instanceof InvalidAttributeValueException) {
+            throw (InvalidAttributeValueException) e;
+        }
+        if (e instanceof InvalidAlgorithmParameterException) {
+            throw (InvalidAlgorithmParameterException) e;
+        }
+        throw (RuntimeException) e;
+    }
+
+    /**
+     * Fork-join task calculating the MCI of the products in the range [from, to), splitting the range in halves.
+     */
+    private class ProductTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final String[] productNames;
+        private final double[] values;
+        private final Exception[] errors;
+        private final int from;
+        private final int to;
+
+        ProductTask(String[] productNames, double[] values, Exception[] errors, int from, int to) {
+            this.productNames = productNames;
+            this.values = values;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ProductTask(productNames, values, errors, from, middle),
+                        new ProductTask(productNames, values, errors, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    values[i] = calculateProduct(circularityFlows.get(productNames[i]));
+                } catch (Exception e) {
+                    errors[i] = e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Fork-join task calculating the MCIp and M of the flows in the range [from, to), splitting the range in halves.
+     */
+    private class FlowTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private static final int SEQUENTIAL_FLOWS = 256;
+        private final CircularityFlow[] flows;
+        private final CircularityKernel.Utility utility;
+        private final double[] mcip;
+        private final double[] m;
+        private final Exception[] errors;
+        private final int from;
+        private final int to;
+
+        FlowTask(CircularityFlow[] flows, CircularityKernel.Utility utility, double[] mcip, double[] m, Exception[] errors, int from, int to) {
+            this.flows = flows;
+            this.utility = utility;
+            this.mcip = mcip;
+            this.m = m;
+            this.errors = errors;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SEQUENTIAL_FLOWS) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new FlowTask(flows, utility, mcip, m, errors, from, middle),
+                        new FlowTask(flows, utility, mcip, m, errors, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                try {
+                    mcip[i] = flows[i].calculateMCIp(utility);
+                    m[i] = flows[i].getM();
+                } catch (Exception e) {
+                    errors[i] = e;
+                }
+            }
+        }
+    }
+}
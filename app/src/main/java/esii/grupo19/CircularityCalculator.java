@@ -1,6 +1,11 @@
 package esii.grupo19;
 
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 import java.security.InvalidAlgorithmParameterException;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 
 import javax.management.InvalidAttributeValueException;
@@ -19,6 +24,7 @@ public class CircularityCalculator implements CircularityCalculatorADT {
     private double result;
     ProductSystem productSystem;
     LinkedList<CircularityFlow> circularityFlows;
+    private CircularityResultCache resultCache;
 
     public CircularityCalculator(String productName, int u, int l, double lavg, double uavg, ProductSystem productSystem) {
         this.productSystem = productSystem;
@@ -95,6 +101,29 @@ public class CircularityCalculator implements CircularityCalculatorADT {
         this.circularityFlows = circularityFlows;
     }
 
+    /**
+     * Calculates the utility context of the current L, U, Lavg and Uavg, holding the X and F(X) shared by every
+     * Circularity Flow of a calculation.
+     *
+     * @return The utility context of the calculator.
+     */
+    public CircularityKernel.Utility getUtility() {
+        return CircularityKernel.calculateUtility(L, Lavg, U, Uavg);
+    }
+
+    public CircularityResultCache getResultCache() {
+        return resultCache;
+    }
+
+    /**
+     * Sets the cache used by {@link #calculateCircularity()} to reuse the results of unchanged products.
+     *
+     * @param resultCache The cache to be used, or null to always calculate.
+     */
+    public void setResultCache(CircularityResultCache resultCache) {
+        this.resultCache = resultCache;
+    }
+
     /**
      * Checks if there is a CircularityFlow with the specified name in the list.
      *
@@ -122,32 +151,11 @@ public class CircularityCalculator implements CircularityCalculatorADT {
         if (productSystem == null) {
             throw new IllegalArgumentException("ProductSystem is null");
         }
-        if (productSystem.getProcesses().isEmpty()) {
+        if (productSystem.getProcessCount() == 0) {
             throw new IllegalArgumentException("Empty Process list");
         }
         circularityFlows.clear();
-        for (Process process : productSystem.getProcesses()) {
-            if (process.getProductName().equals(productName)) {
-                if (process.getProcessFlows().isEmpty()) {
-                    throw new IllegalArgumentException("Empty ProcessFlow list");
-                }
-                for (ProcessFlow processFlow : process.getProcessFlows()) {
-                    Flow flow = searchFlow(processFlow.getNameFlow());
-                    // Update Circularity Flows for material or service flows
-                    if (flow.getType() == FlowType.material || flow.getType() == FlowType.service) {
-                        if (!containsByName(flow.getName())) {
-                            circularityFlows.add(new CircularityFlow(flow.getName()));
-                        }
-                        updateCircularityFlows(processFlow);
-                    } else if (flow.getType() != FlowType.energy) {
-                        throw new IllegalArgumentException("Invalid flow type");
-                    }
-                }
-            }
-        }
-        if (circularityFlows.isEmpty()) {
-            throw new IllegalArgumentException("There are no processes with this name: " + productName);
-        }
+        circularityFlows.addAll(new CircularityAggregator(productSystem).aggregate(productName));
     }
 
     @Override
@@ -160,37 +168,7 @@ public class CircularityCalculator implements CircularityCalculatorADT {
         }
         for (CircularityFlow circularityFlow : circularityFlows) {
             if (circularityFlow.getFlowName().equals(processFlow.getNameFlow())) {
-                ProcessType type = searchProcessType(processFlow);
-                State state = processFlow.getState();
-                if (state == null) {
-                    throw new IllegalArgumentException("Invalid processFlow state");
-                }
-                switch (state) {
-                    case virgin:
-                        circularityFlow.setV(circularityFlow.getV() + processFlow.getFlowQuantity());
-                        break;
-                    case recycled:
-                        //Ri
-                        if (processFlow.getIOFlow() == IOFlow.Input && type == ProcessType.primary) {
-                            circularityFlow.setRi(circularityFlow.getRi() + processFlow.getFlowQuantity());
-                            //R
-                        } else if (processFlow.getIOFlow() == IOFlow.Input && type == ProcessType.recycling) {
-                            circularityFlow.setR(circularityFlow.getR() + processFlow.getFlowQuantity());
-                            //Rr
-                        } else if (processFlow.getIOFlow() == IOFlow.Output && type == ProcessType.recycling) {
-                            circularityFlow.setRr(circularityFlow.getRr() + processFlow.getFlowQuantity());
-                        }
-                        break;
-                    case waste:
-                        //Wf
-                        if (type == ProcessType.primary) {
-                            circularityFlow.setWf(circularityFlow.getWf() + processFlow.getFlowQuantity());
-                            //Wc
-                        } else if (type == ProcessType.recycling) {
-                            circularityFlow.setWc(circularityFlow.getWc() + processFlow.getFlowQuantity());
-                        }
-                        break;
-                }
+                CircularityAggregator.accumulate(circularityFlow, processFlow, searchProcessType(processFlow));
             }
         }
 
@@ -204,7 +182,7 @@ public class CircularityCalculator implements CircularityCalculatorADT {
         if (productSystem == null) {
             throw new IllegalArgumentException("ProductSystem is null");
         }
-        if (productSystem.getProcesses().isEmpty()) {
+        if (productSystem.getProcessCount() == 0) {
             throw new IllegalArgumentException("Empty Process list");
         }
         for (Process process : productSystem.getProcesses()) {
@@ -226,7 +204,7 @@ public class CircularityCalculator implements CircularityCalculatorADT {
         if (productSystem == null) {
             throw new IllegalArgumentException("ProductSystem is null");
         }
-        if (productSystem.getFlows().isEmpty()) {
+        if (productSystem.getFlowCount() == 0) {
             throw new IllegalArgumentException("Empty Flow list");
         }
         for (Flow flow : productSystem.getFlows()) {
@@ -240,9 +218,6 @@ public class CircularityCalculator implements CircularityCalculatorADT {
 
     @Override
     public double calculateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
-        // Auxiliary variables for MCI calculation
-        double x = 0;
-        double y = 0;
         // Validate input parameters
         if (productName == null) {
             throw new IllegalArgumentException("Product name is null");
@@ -250,29 +225,150 @@ public class CircularityCalculator implements CircularityCalculatorADT {
         if (productSystem == null) {
             throw new IllegalArgumentException("ProductSystem is null");
         }
-        if (productSystem.getProcesses().isEmpty()) {
+        if (productSystem.getProcessCount() == 0) {
             throw new IllegalArgumentException("Empty Process list");
         }
-        if (productSystem.getFlows().isEmpty()) {
+        if (productSystem.getFlowCount() == 0) {
             throw new IllegalArgumentException("Empty Flow list");
         }
+        // Reuse the result of the same product and parameters if the ProductSystem did not change since
+        if (resultCache != null && resultCache.load(this)) {
+            return this.result;
+        }
+        // Read before the processes, so that a result is never stored under a later version than its data
+        long version = productSystem.getVersion();
         // Initialize variables and retrieve Circularity Flow information
         searchCircularityFlow();
         // Calculate total MCI
+        this.result = calculateCircularity(circularityFlows, L, Lavg, U, Uavg);
+        if (resultCache != null) {
+            resultCache.store(this, version);
+        }
+        // Return the calculated Circularity Flow value
+        return this.result;
+    }
+
+    /**
+     * Calculates the Circularity of the product like {@link #calculateCircularity()}, without changing the
+     * calculator: the result and the Circularity Flows are not kept and the result cache is not used.
+     * The flows are calculated with {@link CircularityKernel}, so one calculator can be evaluated by several
+     * threads at once as long as its parameters are not being changed.
+     *
+     * @return The Circularity value of the product.
+     * @throws IllegalArgumentException           If the product name or the ProductSystem is null, or if the
+     *                                            ProductSystem has no processes or flows.
+     * @throws DivideByZeroException              If a divide by zero scenario is encountered during the calculation.
+     * @throws InvalidAttributeValueException     If a flow has invalid values.
+     * @throws InvalidAlgorithmParameterException If the bounds are invalid.
+     */
+    public double evaluateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        String productName = this.productName;
+        ProductSystem productSystem = this.productSystem;
+        CircularityKernel.Utility utility = getUtility();
+        // Validate input parameters
+        if (productName == null) {
+            throw new IllegalArgumentException("Product name is null");
+        }
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        if (productSystem.getProcessCount() == 0) {
+            throw new IllegalArgumentException("Empty Process list");
+        }
+        if (productSystem.getFlowCount() == 0) {
+            throw new IllegalArgumentException("Empty Flow list");
+        }
+        // Auxiliary variables for MCI calculation
+        double x = 0;
+        double y = 0;
+        for (CircularityFlow circularityFlow : new CircularityAggregator(productSystem).aggregate(productName)) {
+            CircularityKernel.Result flow = CircularityKernel.calculateMCIp(circularityFlow.getV(), circularityFlow.getR(),
+                    circularityFlow.getRr(), circularityFlow.getRi(), circularityFlow.getWc(), circularityFlow.getWf(),
+                    utility);
+            x += flow.mcip() * flow.m();
+            y += flow.m();
+        }
+        return calculateCircularity(x, y);
+    }
+
+    /**
+     * Checks every Circularity Flow of the product in one pass, without throwing for invalid flows and without
+     * changing the calculator. A product with no invalid flows can be calculated with {@link #calculateCircularity()}
+     * unless its total input is zero.
+     *
+     * @return The status of each invalid flow by flow name, in flow order; empty if every flow is valid.
+     * @throws IllegalArgumentException If the product name or the ProductSystem is null, or if the ProductSystem
+     *                                  has no processes.
+     */
+    public LinkedHashMap<String, FlowStatus> validateCircularity() {
+        if (productName == null) {
+            throw new IllegalArgumentException("Product name is null");
+        }
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        if (productSystem.getProcessCount() == 0) {
+            throw new IllegalArgumentException("Empty Process list");
+        }
+        CircularityKernel.Utility utility = getUtility();
+        LinkedHashMap<String, FlowStatus> violations = new LinkedHashMap<>();
+        for (CircularityFlow circularityFlow : new CircularityAggregator(productSystem).aggregate(productName)) {
+            FlowStatus status = circularityFlow.validate(utility);
+            if (!status.isValid()) {
+                violations.put(circularityFlow.getFlowName(), status);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * Calculates the Mass Circularity Index of a product from its Circularity Flows, as the average of the
+     * MCIp of each flow weighted by its total input M.
+     *
+     * @param circularityFlows The Circularity Flows of the product.
+     * @param l                The lower bound value.
+     * @param lavg             The average value for lower bounds.
+     * @param u                The upper bound value.
+     * @param uavg             The average value for upper bounds.
+     * @return The Circularity value of the product.
+     * @throws DivideByZeroException              If the total input of the flows is zero.
+     * @throws InvalidAttributeValueException     If a flow has invalid values.
+     * @throws InvalidAlgorithmParameterException If the bounds are invalid.
+     * @throws IllegalArgumentException           If the result is outside the range [0, 1].
+     */
+    static double calculateCircularity(LinkedList<CircularityFlow> circularityFlows, int l, double lavg, int u, double uavg) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        // Auxiliary variables for MCI calculation
+        double x = 0;
+        double y = 0;
+        // X and F(X) are the same for every flow
+        CircularityKernel.Utility utility = CircularityKernel.calculateUtility(l, lavg, u, uavg);
         for (CircularityFlow circularityFlow : circularityFlows) {
-            x += (circularityFlow.calculateMCIp(L, Lavg, U, Uavg) * circularityFlow.calculateM());
-            y += circularityFlow.calculateM();
+            x += circularityFlow.calculateMCIp(utility) * circularityFlow.getM();
+            y += circularityFlow.getM();
         }
+        return calculateCircularity(x, y);
+    }
+
+    /**
+     * Calculates the Mass Circularity Index of a product from the sums of its flows, x being the sum of the
+     * MCIp of each flow multiplied by its total input M and y being the sum of the M values.
+     *
+     * @param x The sum of MCIp * M over the flows of the product.
+     * @param y The sum of M over the flows of the product.
+     * @return The Circularity value of the product.
+     * @throws DivideByZeroException    If y is zero.
+     * @throws IllegalArgumentException If the result is outside the range [0, 1].
+     */
+    static double calculateCircularity(double x, double y) throws DivideByZeroException {
         if (y == 0) {
             throw new DivideByZeroException("MCI Division by zero");
         }
-        this.result = x / y;
+        double result = x / y;
         // Validate Circularity Flow value
-        if (this.result < 0 || this.result > 1) {
+        if (result < 0 || result > 1) {
             throw new IllegalArgumentException("Invalid Circularity Flow value");
         }
-        // Return the calculated Circularity Flow value
-        return this.result;
+        return result;
     }
 
     /**
@@ -298,26 +394,59 @@ public class CircularityCalculator implements CircularityCalculatorADT {
      * @throws DivideByZeroException              If a divide by zero scenario is encountered during the Circularity calculation.
      */
     public String toCsvString() throws IllegalArgumentException {
+        StringWriter csvString = new StringWriter();
+        try {
+            writeCsv(csvString);
+        } catch (IOException e) {
+            // A StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
+        return csvString.toString();
+    }
+
+    /**
+     * Writes the same text as {@link #toCsvString()} to the given writer, one row at a time, so no representation
+     * of the whole ProductSystem or of all the Circularity Flows is built in memory.
+     *
+     * @param writer The writer to which the CSV rows are written. It is flushed but not closed.
+     * @throws IOException              If an I/O error occurs while writing.
+     * @throws IllegalArgumentException If the Circularity Flow list is empty, in which case nothing is written.
+     * @throws IllegalStateException    If the MCIp, Ep or Es of a Circularity Flow has not been calculated yet.
+     */
+    public void writeCsv(Writer writer) throws IOException, IllegalArgumentException {
+        writeCsv(writer, null);
+    }
 
-        String s = "";
-        s += this.productName + ",";
-        s += this.productSystem.toCsvString() + ",";
-        s += this.U + ",";
-        s += this.L + ",";
-        s += this.Lavg + ",";
-        s += this.Uavg + ",";
-        s += this.result + "\n";
+    /**
+     * Writes the text written by {@link ProductSystem#writeCsv(Writer)}, already serialized elsewhere.
+     */
+    interface ProductSystemCsv {
+        void writeTo(Writer writer) throws IOException;
+    }
 
+    /**
+     * Writes the same text as {@link #writeCsv(Writer)}, with the CSV of the ProductSystem already serialized,
+     * so that calculators sharing a ProductSystem serialize it once.
+     *
+     * @param productSystemCsv Writes the text written by {@link ProductSystem#writeCsv(Writer)} for the
+     *                         ProductSystem of this calculator, or null to write it now.
+     */
+    void writeCsv(Writer writer, ProductSystemCsv productSystemCsv) throws IOException, IllegalArgumentException {
         if (circularityFlows.isEmpty()) {
             throw new IllegalArgumentException("Empty Circularity Flow list");
-
+        }
+        writer.write(this.productName + ",");
+        if (productSystemCsv == null) {
+            this.productSystem.writeCsv(writer);
         } else {
-            for (CircularityFlow circularityFlow : circularityFlows) {
-                s += circularityFlow.toCSVString() + "\n";
-            }
+            productSystemCsv.writeTo(writer);
         }
-        return s;
-
+        writer.write("," + this.U + "," + this.L + "," + this.Lavg + "," + this.Uavg + "," + this.result + "\n");
+        for (CircularityFlow circularityFlow : circularityFlows) {
+            writer.write(circularityFlow.toCSVString());
+            writer.write('\n');
+        }
+        writer.flush();
     }
 
 }
\ No newline at end of file
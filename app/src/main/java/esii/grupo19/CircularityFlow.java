@@ -4,6 +4,9 @@ import java.security.InvalidAlgorithmParameterException;
 
 import javax.management.InvalidAttributeValueException;
 
+import enums.FlowStatus;
+import enums.ResultColumn;
+import enums.Unit;
 import exceptions.*;
 
 public class CircularityFlow {
@@ -22,6 +25,7 @@ public class CircularityFlow {
     private double fx;      //calculated, (0.9/x)
     private double LFI;     //calculated, (2 * V - Rr)/(2 * M + ((Wf - Wc)/2))
     private double MCIp;    //calculated, 1 - (LFI * fx)
+    private Unit unit;      //base unit of the introduced values, set by the first aggregated process flow
 
     public CircularityFlow(String flowName) {
         this.flowName = flowName;
@@ -59,6 +63,30 @@ public class CircularityFlow {
         this.MCIp = Double.NaN;
     }
 
+    /**
+     * Constructs a copy of a Circularity Flow, with its introduced and calculated values.
+     *
+     * @param circularityFlow The Circularity Flow to be copied.
+     */
+    public CircularityFlow(CircularityFlow circularityFlow) {
+        this.flowName = circularityFlow.flowName;
+        this.V = circularityFlow.V;
+        this.R = circularityFlow.R;
+        this.Rr = circularityFlow.Rr;
+        this.Ri = circularityFlow.Ri;
+        this.Ep = circularityFlow.Ep;
+        this.Es = circularityFlow.Es;
+        this.W = circularityFlow.W;
+        this.Wc = circularityFlow.Wc;
+        this.Wf = circularityFlow.Wf;
+        this.M = circularityFlow.M;
+        this.x = circularityFlow.x;
+        this.fx = circularityFlow.fx;
+        this.LFI = circularityFlow.LFI;
+        this.MCIp = circularityFlow.MCIp;
+        this.unit = circularityFlow.unit;
+    }
+
     //setters and getters
     public String getFlowName() {
         return flowName;
@@ -68,6 +96,19 @@ public class CircularityFlow {
         this.flowName = flowName;
     }
 
+    /**
+     * Retrieves the unit the introduced values were aggregated in, see {@link UnitConverter}.
+     *
+     * @return The unit, or null if no process flow with a unit was aggregated.
+     */
+    public Unit getUnit() {
+        return unit;
+    }
+
+    public void setUnit(Unit unit) {
+        this.unit = unit;
+    }
+
     public double getV() {
         return V;
     }
@@ -172,6 +213,26 @@ public class CircularityFlow {
         return MCIp;
     }
 
+    /**
+     * Returns a result of the flow without checking whether it has been calculated, for the exports that store
+     * the results of flows in bulk.
+     *
+     * @return The value of the column, or NaN if it has not been calculated yet.
+     */
+    double getResult(ResultColumn column) {
+        return switch (column) {
+            case V -> V;
+            case R -> R;
+            case Rr -> Rr;
+            case Ri -> Ri;
+            case Wc -> Wc;
+            case Wf -> Wf;
+            case Ep -> Ep;
+            case Es -> Es;
+            case MCIp -> MCIp;
+        };
+    }
+
     /**
      * Calculates the parameter W for a given scenario.
      * The parameter W is computed as the difference between the values of V (Volume) and Rr (Reference Volume).
@@ -179,7 +240,7 @@ public class CircularityFlow {
      * @return The calculated value of W.
      */
     public double calculateW() {
-        W = V - Rr;
+        W = CircularityKernel.calculateW(V, Rr);
 
         return W;
     }
@@ -191,7 +252,7 @@ public class CircularityFlow {
      * @return The calculated value of M.
      */
     public double calculateM() {
-        M = V + Ri;
+        M = CircularityKernel.calculateM(V, Ri);
 
         return M;
     }
@@ -209,14 +270,7 @@ public class CircularityFlow {
      * @throws DivideByZeroException If the reference circularity (R) is zero, resulting in division by zero.
      */
     public double calculateEp() throws DivideByZeroException {
-        if (R == 0) {
-            throw new DivideByZeroException("Ep Division by zero");
-        }
-
-        double tmpR = Math.abs(R);
-
-        Ep = 1 - (Wc / tmpR);
-        Ep = Math.round(Ep * 100.0) / 100.0;
+        Ep = CircularityKernel.calculateEp(R, Wc);
 
         return Ep;
     }
@@ -234,12 +288,7 @@ public class CircularityFlow {
      * @throws DivideByZeroException If the volume (V) is zero, resulting in division by zero.
      */
     public double calculateEs() throws DivideByZeroException {
-        if (V == 0) {
-            throw new DivideByZeroException("Es Division by zero");
-        }
-
-        Es = 1 - (Wf / V);
-        Es = Math.round(Es * 100.0) / 100.0;
+        Es = CircularityKernel.calculateEs(V, Wf);
 
         return Es;
     }
@@ -263,14 +312,7 @@ public class CircularityFlow {
      * @throws InvalidAlgorithmParameterException If lavg or uavg is negative, indicating an invalid input value.
      */
     public double calculateX(int l, double lavg, int u, double uavg) throws DivideByZeroException, InvalidAlgorithmParameterException {
-        if (lavg == 0 || uavg == 0) {
-            throw new DivideByZeroException("X Division by zero");
-        }
-        if (lavg < 0 || uavg < 0) {
-            throw new InvalidAlgorithmParameterException("Invalid input value");
-        }
-        x = (l / lavg) * (u / uavg);
-        x = Math.round(x * 100.0) / 100.0;
+        x = CircularityKernel.calculateX(l, lavg, u, uavg);
 
         return x;
     }
@@ -295,12 +337,7 @@ public class CircularityFlow {
      * @throws InvalidAlgorithmParameterException If invalid input values are provided for calculating X.
      */
     public double calculateFx(int l, double lavg, int u, double uavg) throws DivideByZeroException, InvalidAlgorithmParameterException {
-        x = calculateX(l, lavg, u, uavg);
-        if (x == 0) {
-            throw new DivideByZeroException("Fx Division by zero");
-        }
-        fx = 0.9 / x;
-        fx = Math.round(fx * 100.0) / 100.0;
+        fx = CircularityKernel.calculateFx(calculateX(l, lavg, u, uavg));
 
         return fx;
     }
@@ -325,27 +362,16 @@ public class CircularityFlow {
      * @throws InvalidAlgorithmParameterException If there are invalid algorithm parameters during the calculation.
      */
     public double calculateLFI() throws DivideByZeroException, InvalidAlgorithmParameterException, InvalidAttributeValueException {
-        double x = 2 * getV() - getRr();
-        double y = 2 * calculateM() + ((getWf() - getWc()) / 2);
-        if (y == 0) {
-            throw new DivideByZeroException("LFI Division by zero");
-        }
-        LFI = x / y;
-        LFI = Math.round(LFI * 100.0) / 100.0;
-
-        if (LFI < 0 || LFI > 1) {
-            throw new InvalidAttributeValueException("LFI should be beetwen 0 and 1");
-        }
-        if (getWf() - getWc() < 0) {
-            throw new InvalidAttributeValueException("Wc can't be bigger than Wf");
-        }
+        calculateM();
+        LFI = CircularityKernel.calculateLFI(V, Rr, Ri, Wc, Wf);
 
         return LFI;
     }
 
     /**
      * Calculates the Mass Circularity Index (MCIp) for a given scenario.
-     * The MCIp is computed based on various parameters including lower (l) and upper (u) bounds with their averages (lavg and uavg),
+     * The MCIp is computed by {@link CircularityKernel#calculateMCIp(double, double, double, double, double, double, int, double, int, double)}
+     * based on various parameters including lower (l) and upper (u) bounds with their averages (lavg and uavg),
      * reference circularity (R), reference circularity (Rr), circularity weight (Wc), and functional weight (Wf).
      *
      * <p>The method validates several conditions related to the input parameters before proceeding with the MCIp calculation.
@@ -369,33 +395,42 @@ public class CircularityFlow {
      * @throws InvalidAlgorithmParameterException If there are invalid algorithm parameters during the calculation.
      */
     public double calculateMCIp(int l, double lavg, int u, double uavg) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
-        if (R == 0 && Rr != 0) {
-            throw new InvalidAttributeValueException("R is equal to 0, Rr can't be different than 0!");
-        }
-        if (R >= calculateW()) {
-            throw new InvalidAttributeValueException("R can't be bigger or equal to W");
-        }
-        if (Rr + Wc != Math.abs(R)) {
-            throw new InvalidAttributeValueException("Rr + Wc should equal R");
-        }
-        if (calculateW() > calculateM()) {
-            throw new InvalidAttributeValueException("W can't be bigger than M");
-        }
-        if (calculateM() < V) {
-            throw new InvalidAttributeValueException("M can't be smaller than V");
-        }
-
-        MCIp = 1 - (calculateLFI() * calculateFx(l, lavg, u, uavg));
-
-        if (MCIp < 0 || MCIp > 1) {
-            throw new InvalidAttributeValueException("MCIp should be beetwen 0 and 1");
-        }
+        return calculateMCIp(CircularityKernel.calculateUtility(l, lavg, u, uavg));
+    }
 
-        MCIp = Math.round(MCIp * 100.0) / 100.0;
+    /**
+     * Calculates the Mass Circularity Index (MCIp) like {@link #calculateMCIp(int, double, int, double)}, with X and
+     * F(X) taken from a utility context calculated once for all the flows of a product.
+     *
+     * @param utility The utility context of the calculation, see {@link CircularityCalculator#getUtility()}.
+     * @return The calculated value of MCIp.
+     * @throws DivideByZeroException              If a divide by zero scenario is encountered during the calculation.
+     * @throws InvalidAttributeValueException     If there is an invalid attribute value, or if the MCIp is outside the range [0, 1].
+     * @throws InvalidAlgorithmParameterException If the bounds of the utility context are invalid.
+     */
+    public double calculateMCIp(CircularityKernel.Utility utility) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        CircularityKernel.Result result = CircularityKernel.calculateMCIp(V, R, Rr, Ri, Wc, Wf, utility);
+        W = result.w();
+        M = result.m();
+        x = result.x();
+        fx = result.fx();
+        LFI = result.lfi();
+        MCIp = result.mcip();
 
         return MCIp;
     }
 
+    /**
+     * Checks whether the MCIp of the flow can be calculated with a utility context, without throwing and without
+     * changing the flow. The checks and their order are the ones of {@link #calculateMCIp(CircularityKernel.Utility)}.
+     *
+     * @param utility The utility context of the calculation.
+     * @return {@link FlowStatus#valid}, or the first check that fails.
+     */
+    public FlowStatus validate(CircularityKernel.Utility utility) {
+        return CircularityKernel.validate(V, R, Rr, Ri, Wc, Wf, utility);
+    }
+
     @Override
     public String toString() {
         if (((Double) this.MCIp).isNaN()) { //if it has not yet been calculated
@@ -0,0 +1,322 @@
+package esii.grupo19;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.util.Arrays;
+
+import javax.management.InvalidAttributeValueException;
+
+import enums.FlowStatus;
+import exceptions.DivideByZeroException;
+
+/**
+ * The CircularityFlowBatch class holds the introduced values of many Circularity Flows as parallel columns,
+ * one array per value, and calculates W, M, Ep, Es, LFI and MCIp for all of them at once in plain loops over
+ * the columns. It is meant for products with thousands of flows, where one {@link CircularityFlow} object per
+ * flow spreads the values over the heap.
+ *
+ * <p>The values are the ones of {@link CircularityKernel}, calculated in the same way and rounded to two
+ * decimal places. When a flow is invalid, the exception of the first invalid flow, in the order the flows were
+ * added, is thrown with the same message as {@link CircularityFlow}.
+ *
+ * <p>Usage:
+ * {@code
+ * CircularityFlowBatch batch = CircularityFlowBatch.of(circularityCalculator.getCircularityFlows());
+ * double mci = batch.calculateCircularity(circularityCalculator.getUtility());
+ * }
+ */
+public final class CircularityFlowBatch {
+    private static final int MIN_CAPACITY = 8;
+
+    private String[] flowNames;
+    private double[] v;
+    private double[] r;
+    private double[] rr;
+    private double[] ri;
+    private double[] wc;
+    private double[] wf;
+    private int size;
+
+    /**
+     * Constructs an empty batch.
+     *
+     * @param capacity The number of flows the batch holds before growing.
+     * @throws IllegalArgumentException If capacity is negative.
+     */
+    public CircularityFlowBatch(int capacity) throws IllegalArgumentException {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative.");
+        }
+        this.flowNames = new String[capacity];
+        this.v = new double[capacity];
+        this.r = new double[capacity];
+        this.rr = new double[capacity];
+        this.ri = new double[capacity];
+        this.wc = new double[capacity];
+        this.wf = new double[capacity];
+    }
+
+    public CircularityFlowBatch() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates a batch with the introduced values of some Circularity Flows, in iteration order.
+     *
+     * @param circularityFlows The Circularity Flows to be copied.
+     * @return The batch.
+     * @throws IllegalArgumentException If circularityFlows is null.
+     */
+    public static CircularityFlowBatch of(Iterable<CircularityFlow> circularityFlows) throws IllegalArgumentException {
+        if (circularityFlows == null) {
+            throw new IllegalArgumentException("Circularity Flows must not be null.");
+        }
+        CircularityFlowBatch batch = new CircularityFlowBatch();
+        for (CircularityFlow circularityFlow : circularityFlows) {
+            batch.add(circularityFlow);
+        }
+        return batch;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds the introduced values of a Circularity Flow at the end of the batch.
+     *
+     * @param circularityFlow The Circularity Flow to be copied.
+     * @throws IllegalArgumentException If circularityFlow is null.
+     */
+    public void add(CircularityFlow circularityFlow) throws IllegalArgumentException {
+        if (circularityFlow == null) {
+            throw new IllegalArgumentException("Circularity Flow must not be null.");
+        }
+        add(circularityFlow.getFlowName(), circularityFlow.getV(), circularityFlow.getR(), circularityFlow.getRr(),
+                circularityFlow.getRi(), circularityFlow.getWc(), circularityFlow.getWf());
+    }
+
+    /**
+     * Adds a flow at the end of the batch.
+     */
+    public void add(String flowName, double v, double r, double rr, double ri, double wc, double wf) {
+        if (size == this.v.length) {
+            grow();
+        }
+        this.flowNames[size] = flowName;
+        this.v[size] = v;
+        this.r[size] = r;
+        this.rr[size] = rr;
+        this.ri[size] = ri;
+        this.wc[size] = wc;
+        this.wf[size] = wf;
+        size++;
+    }
+
+    /**
+     * Creates a Circularity Flow with the introduced values of a flow of the batch.
+     *
+     * @param index The position of the flow in the batch.
+     * @return A new Circularity Flow.
+     * @throws IndexOutOfBoundsException If index is outside the batch.
+     */
+    public CircularityFlow getCircularityFlow(int index) throws IndexOutOfBoundsException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return new CircularityFlow(flowNames[index], v[index], r[index], rr[index], ri[index], wc[index], wf[index]);
+    }
+
+    /**
+     * Calculates W = V - Rr for every flow.
+     *
+     * @return The W of each flow, in batch order.
+     */
+    public double[] calculateW() {
+        double[] w = new double[size];
+        for (int i = 0; i < size; i++) {
+            w[i] = v[i] - rr[i];
+        }
+        return w;
+    }
+
+    /**
+     * Calculates M = V + Ri for every flow.
+     *
+     * @return The M of each flow, in batch order.
+     */
+    public double[] calculateM() {
+        double[] m = new double[size];
+        for (int i = 0; i < size; i++) {
+            m[i] = v[i] + ri[i];
+        }
+        return m;
+    }
+
+    /**
+     * Calculates Ep = 1 - (Wc / |R|) for every flow, rounded to two decimal places.
+     *
+     * @return The Ep of each flow, in batch order.
+     * @throws DivideByZeroException If the R of a flow is zero.
+     */
+    public double[] calculateEp() throws DivideByZeroException {
+        double[] ep = new double[size];
+        boolean invalid = false;
+        for (int i = 0; i < size; i++) {
+            ep[i] = round(1 - (wc[i] / Math.abs(r[i])));
+            invalid |= r[i] == 0;
+        }
+        if (invalid) {
+            for (int i = 0; i < size; i++) {
+                CircularityKernel.calculateEp(r[i], wc[i]);
+            }
+        }
+        return ep;
+    }
+
+    /**
+     * Calculates Es = 1 - (Wf / V) for every flow, rounded to two decimal places.
+     *
+     * @return The Es of each flow, in batch order.
+     * @throws DivideByZeroException If the V of a flow is zero.
+     */
+    public double[] calculateEs() throws DivideByZeroException {
+        double[] es = new double[size];
+        boolean invalid = false;
+        for (int i = 0; i < size; i++) {
+            es[i] = round(1 - (wf[i] / v[i]));
+            invalid |= v[i] == 0;
+        }
+        if (invalid) {
+            for (int i = 0; i < size; i++) {
+                CircularityKernel.calculateEs(v[i], wf[i]);
+            }
+        }
+        return es;
+    }
+
+    /**
+     * Calculates the Linear Flow Index of every flow, rounded to two decimal places.
+     *
+     * @return The LFI of each flow, in batch order.
+     * @throws DivideByZeroException          If the denominator of a flow is zero.
+     * @throws InvalidAttributeValueException If the LFI of a flow is outside the range [0, 1], or if its Wc is
+     *                                        greater than its Wf.
+     */
+    public double[] calculateLFI() throws DivideByZeroException, InvalidAttributeValueException {
+        double[] lfi = new double[size];
+        boolean invalid = false;
+        for (int i = 0; i < size; i++) {
+            double y = 2 * (v[i] + ri[i]) + ((wf[i] - wc[i]) / 2);
+            lfi[i] = round((2 * v[i] - rr[i]) / y);
+            invalid |= y == 0 || lfi[i] < 0 || lfi[i] > 1 || wf[i] - wc[i] < 0;
+        }
+        if (invalid) {
+            for (int i = 0; i < size; i++) {
+                CircularityKernel.calculateLFI(v[i], rr[i], ri[i], wc[i], wf[i]);
+            }
+        }
+        return lfi;
+    }
+
+    /**
+     * Calculates the MCIp of every flow, with the checks of
+     * {@link CircularityKernel#calculateMCIp(double, double, double, double, double, double, CircularityKernel.Utility)}.
+     *
+     * @param utility The utility context of the calculation.
+     * @return The MCIp of each flow, in batch order.
+     * @throws DivideByZeroException              If a divide by zero scenario is encountered for a flow.
+     * @throws InvalidAttributeValueException     If the values of a flow are inconsistent, or if its MCIp is
+     *                                            outside the range [0, 1].
+     * @throws InvalidAlgorithmParameterException If the bounds of the utility context are invalid.
+     */
+    public double[] calculateMCIp(CircularityKernel.Utility utility) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        double[] mcip = new double[size];
+        calculateMCIp(utility, mcip);
+        return mcip;
+    }
+
+    /**
+     * Checks every flow of the batch without throwing, see
+     * {@link CircularityKernel#validate(double, double, double, double, double, double, CircularityKernel.Utility)}.
+     *
+     * @param utility The utility context of the calculation.
+     * @return The status of each flow, in batch order.
+     */
+    public FlowStatus[] validate(CircularityKernel.Utility utility) {
+        FlowStatus[] status = new FlowStatus[size];
+        for (int i = 0; i < size; i++) {
+            status[i] = CircularityKernel.validate(v[i], r[i], rr[i], ri[i], wc[i], wf[i], utility);
+        }
+        return status;
+    }
+
+    /**
+     * Calculates the Mass Circularity Index of the flows of the batch, as the average of their MCIp weighted by
+     * their total input M. The sums are made in batch order, so the result is the same as the one of
+     * {@link CircularityCalculator#calculateCircularity()} for the same flows.
+     *
+     * @param utility The utility context of the calculation.
+     * @return The Circularity value of the flows.
+     * @throws DivideByZeroException              If the total input of the flows is zero, or if a divide by zero
+     *                                            scenario is encountered for a flow.
+     * @throws InvalidAttributeValueException     If a flow has invalid values.
+     * @throws InvalidAlgorithmParameterException If the bounds of the utility context are invalid.
+     * @throws IllegalArgumentException           If the result is outside the range [0, 1].
+     */
+    public double calculateCircularity(CircularityKernel.Utility utility) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        double[] mcip = new double[size];
+        double[] m = calculateMCIp(utility, mcip);
+        double x = 0;
+        double y = 0;
+        for (int i = 0; i < size; i++) {
+            x += mcip[i] * m[i];
+            y += m[i];
+        }
+        return CircularityCalculator.calculateCircularity(x, y);
+    }
+
+    /**
+     * Fills the MCIp column and returns the M column, which the MCI reduction needs too.
+     */
+    private double[] calculateMCIp(CircularityKernel.Utility utility, double[] mcip) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        double[] m = new double[size];
+        double fx = utility.fx();
+        // NaN comparisons are false, so invalid bounds have to be flagged on their own
+        boolean invalid = !utility.isValid() && size > 0;
+        for (int i = 0; i < size; i++) {
+            double w = v[i] - rr[i];
+            m[i] = v[i] + ri[i];
+            double y = 2 * m[i] + ((wf[i] - wc[i]) / 2);
+            double lfi = round((2 * v[i] - rr[i]) / y);
+            double value = 1 - (lfi * fx);
+            invalid |= (r[i] == 0 && rr[i] != 0) || r[i] >= w || rr[i] + wc[i] != Math.abs(r[i]) || w > m[i]
+                    || m[i] < v[i] || y == 0 || lfi < 0 || lfi > 1 || wf[i] - wc[i] < 0 || value < 0 || value > 1;
+            mcip[i] = round(value);
+        }
+        if (invalid) {
+            // Throw the exception of the first invalid flow
+            for (int i = 0; i < size; i++) {
+                FlowStatus status = CircularityKernel.validate(v[i], r[i], rr[i], ri[i], wc[i], wf[i], utility);
+                if (!status.isValid()) {
+                    CircularityKernel.raise(status);
+                }
+            }
+        }
+        return m;
+    }
+
+    private void grow() {
+        int capacity = Math.max(MIN_CAPACITY, v.length * 2);
+        flowNames = Arrays.copyOf(flowNames, capacity);
+        v = Arrays.copyOf(v, capacity);
+        r = Arrays.copyOf(r, capacity);
+        rr = Arrays.copyOf(rr, capacity);
+        ri = Arrays.copyOf(ri, capacity);
+        wc = Arrays.copyOf(wc, capacity);
+        wf = Arrays.copyOf(wf, capacity);
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
@@ -0,0 +1,303 @@
+package esii.grupo19;
+
+import java.security.InvalidAlgorithmParameterException;
+
+import javax.management.InvalidAttributeValueException;
+
+import enums.FlowStatus;
+import exceptions.DivideByZeroException;
+
+/**
+ * The CircularityKernel class holds the formulas of the Mass Circularity Index as static methods without any
+ * state. Every method only depends on its arguments, so it can be called from any number of threads at once.
+ *
+ * <p>{@link CircularityFlow} keeps the values it calculates with these methods, and {@link CircularityCalculator}
+ * uses them directly in {@link CircularityCalculator#evaluateCircularity()}. The values, the rounding to two
+ * decimal places and the exceptions, including the order in which they are checked, are the ones of
+ * {@link CircularityFlow}.
+ *
+ * <p>{@link #validate(double, double, double, double, double, double, Utility)} makes the same checks as
+ * {@link #calculateMCIp(double, double, double, double, double, double, Utility)} and returns the first one that
+ * fails as a {@link FlowStatus} instead of throwing, for callers that expect many invalid flows.
+ *
+ * <p>Usage:
+ * {@code
+ * CircularityKernel.Result result = CircularityKernel.calculateMCIp(v, r, rr, ri, wc, wf, l, lavg, u, uavg);
+ * double mcip = result.mcip();
+ * }
+ */
+public final class CircularityKernel {
+
+    /**
+     * The values calculated for a Circularity Flow by {@link #calculateMCIp}.
+     *
+     * @param w    The total waste, V - Rr.
+     * @param m    The total input, V + Ri.
+     * @param x    The utility X.
+     * @param fx   The utility factor F(X).
+     * @param lfi  The Linear Flow Index.
+     * @param mcip The MCIp of the flow.
+     */
+    public record Result(double w, double m, double x, double fx, double lfi, double mcip) {
+    }
+
+    /**
+     * The utility X and factor F(X) of a calculation, which only depend on its L, U, Lavg and Uavg and are
+     * therefore the same for every Circularity Flow of a product. Created by {@link #calculateUtility}.
+     *
+     * <p>Bounds for which X or F(X) can't be calculated still give a context, with NaN as X and F(X) and the
+     * reason as status, so that {@link #calculateMCIp(double, double, double, double, double, double, Utility)}
+     * reports the checks of each flow before the error of the bounds, as {@link CircularityFlow} does.
+     *
+     * @param l      The lower bound value.
+     * @param lavg   The average value for lower bounds.
+     * @param u      The upper bound value.
+     * @param uavg   The average value for upper bounds.
+     * @param x      The utility X, or NaN if it can't be calculated.
+     * @param fx     The utility factor F(X), or NaN if it can't be calculated.
+     * @param status {@link FlowStatus#valid}, or the reason X or F(X) can't be calculated.
+     */
+    public record Utility(int l, double lavg, int u, double uavg, double x, double fx, FlowStatus status) {
+
+        /**
+         * Checks whether X and F(X) could be calculated from the bounds.
+         *
+         * @return {@code true} if X and F(X) are known.
+         */
+        public boolean isValid() {
+            return status.isValid();
+        }
+    }
+
+    private CircularityKernel() {
+    }
+
+    /**
+     * Calculates the total waste W = V - Rr.
+     */
+    public static double calculateW(double v, double rr) {
+        return v - rr;
+    }
+
+    /**
+     * Calculates the total input M = V + Ri.
+     */
+    public static double calculateM(double v, double ri) {
+        return v + ri;
+    }
+
+    /**
+     * Calculates Ep = 1 - (Wc / |R|), rounded to two decimal places.
+     *
+     * @throws DivideByZeroException If R is zero.
+     */
+    public static double calculateEp(double r, double wc) throws DivideByZeroException {
+        if (r == 0) {
+            throw new DivideByZeroException("Ep Division by zero");
+        }
+        return round(1 - (wc / Math.abs(r)));
+    }
+
+    /**
+     * Calculates Es = 1 - (Wf / V), rounded to two decimal places.
+     *
+     * @throws DivideByZeroException If V is zero.
+     */
+    public static double calculateEs(double v, double wf) throws DivideByZeroException {
+        if (v == 0) {
+            throw new DivideByZeroException("Es Division by zero");
+        }
+        return round(1 - (wf / v));
+    }
+
+    /**
+     * Calculates X = (l / lavg) * (u / uavg), rounded to two decimal places.
+     *
+     * @throws DivideByZeroException              If lavg or uavg is zero.
+     * @throws InvalidAlgorithmParameterException If lavg or uavg is negative.
+     */
+    public static double calculateX(int l, double lavg, int u, double uavg) throws DivideByZeroException, InvalidAlgorithmParameterException {
+        if (lavg == 0 || uavg == 0) {
+            throw new DivideByZeroException("X Division by zero");
+        }
+        if (lavg < 0 || uavg < 0) {
+            throw new InvalidAlgorithmParameterException("Invalid input value");
+        }
+        return round((l / lavg) * (u / uavg));
+    }
+
+    /**
+     * Calculates F(X) = 0.9 / X, rounded to two decimal places.
+     *
+     * @param x The utility X, as returned by {@link #calculateX(int, double, int, double)}.
+     * @throws DivideByZeroException If X is zero.
+     */
+    public static double calculateFx(double x) throws DivideByZeroException {
+        if (x == 0) {
+            throw new DivideByZeroException("Fx Division by zero");
+        }
+        return round(0.9 / x);
+    }
+
+    /**
+     * Calculates X and F(X) once for a set of bounds, to be used for every Circularity Flow of a calculation.
+     * Invalid bounds don't throw here; the error is thrown by the first flow calculated with the context.
+     *
+     * @return The utility context of the bounds.
+     */
+    public static Utility calculateUtility(int l, double lavg, int u, double uavg) {
+        if (lavg == 0 || uavg == 0) {
+            return new Utility(l, lavg, u, uavg, Double.NaN, Double.NaN, FlowStatus.xDivisionByZero);
+        }
+        if (lavg < 0 || uavg < 0) {
+            return new Utility(l, lavg, u, uavg, Double.NaN, Double.NaN, FlowStatus.invalidBounds);
+        }
+        double x = round((l / lavg) * (u / uavg));
+        if (x == 0) {
+            return new Utility(l, lavg, u, uavg, x, Double.NaN, FlowStatus.fxDivisionByZero);
+        }
+        return new Utility(l, lavg, u, uavg, x, round(0.9 / x), FlowStatus.valid);
+    }
+
+    /**
+     * Calculates LFI = (2V - Rr) / (2M + (Wf - Wc) / 2), rounded to two decimal places.
+     *
+     * @throws DivideByZeroException          If the denominator is zero.
+     * @throws InvalidAttributeValueException If the LFI is outside the range [0, 1], or if Wc is greater than Wf.
+     */
+    public static double calculateLFI(double v, double rr, double ri, double wc, double wf) throws DivideByZeroException, InvalidAttributeValueException {
+        double x = 2 * v - rr;
+        double y = 2 * calculateM(v, ri) + ((wf - wc) / 2);
+        if (y == 0) {
+            throw new DivideByZeroException("LFI Division by zero");
+        }
+        double lfi = round(x / y);
+        if (lfi < 0 || lfi > 1) {
+            throw new InvalidAttributeValueException("LFI should be beetwen 0 and 1");
+        }
+        if (wf - wc < 0) {
+            throw new InvalidAttributeValueException("Wc can't be bigger than Wf");
+        }
+        return lfi;
+    }
+
+    /**
+     * Calculates the MCIp of a Circularity Flow from its introduced values and the utility parameters,
+     * with the checks of {@link CircularityFlow#calculateMCIp(int, double, int, double)}.
+     *
+     * @return The MCIp, rounded to two decimal places, and the values calculated on the way.
+     * @throws DivideByZeroException              If a divide by zero scenario is encountered during the calculation.
+     * @throws InvalidAttributeValueException     If the values of the flow are inconsistent, or if the MCIp is
+     *                                            outside the range [0, 1].
+     * @throws InvalidAlgorithmParameterException If lavg or uavg is negative.
+     */
+    public static Result calculateMCIp(double v, double r, double rr, double ri, double wc, double wf,
+                                       int l, double lavg, int u, double uavg) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        return calculateMCIp(v, r, rr, ri, wc, wf, calculateUtility(l, lavg, u, uavg));
+    }
+
+    /**
+     * Calculates the MCIp of a Circularity Flow with X and F(X) taken from a utility context, so that they are
+     * calculated once per calculation instead of once per flow. The result and the exceptions are the same as
+     * {@link #calculateMCIp(double, double, double, double, double, double, int, double, int, double)} with the
+     * bounds of the context.
+     *
+     * @param utility The utility context, as returned by {@link #calculateUtility(int, double, int, double)}.
+     * @return The MCIp, rounded to two decimal places, and the values calculated on the way.
+     * @throws DivideByZeroException              If a divide by zero scenario is encountered during the calculation.
+     * @throws InvalidAttributeValueException     If the values of the flow are inconsistent, or if the MCIp is
+     *                                            outside the range [0, 1].
+     * @throws InvalidAlgorithmParameterException If lavg or uavg is negative.
+     */
+    public static Result calculateMCIp(double v, double r, double rr, double ri, double wc, double wf,
+                                       Utility utility) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        double w = calculateW(v, rr);
+        double m = calculateM(v, ri);
+        double y = 2 * m + ((wf - wc) / 2);
+        double lfi = round((2 * v - rr) / y);
+        double mcip = 1 - (lfi * utility.fx());
+        FlowStatus status = check(v, r, rr, wc, wf, w, m, y, lfi, mcip, utility);
+        if (!status.isValid()) {
+            raise(status);
+        }
+        return new Result(w, m, utility.x(), utility.fx(), lfi, round(mcip));
+    }
+
+    /**
+     * Makes the checks of {@link #calculateMCIp(double, double, double, double, double, double, Utility)} without
+     * throwing.
+     *
+     * @param utility The utility context, as returned by {@link #calculateUtility(int, double, int, double)}.
+     * @return {@link FlowStatus#valid}, or the first check that fails.
+     */
+    public static FlowStatus validate(double v, double r, double rr, double ri, double wc, double wf, Utility utility) {
+        double w = calculateW(v, rr);
+        double m = calculateM(v, ri);
+        double y = 2 * m + ((wf - wc) / 2);
+        double lfi = round((2 * v - rr) / y);
+        return check(v, r, rr, wc, wf, w, m, y, lfi, 1 - (lfi * utility.fx()), utility);
+    }
+
+    /**
+     * Throws the exception of {@link CircularityFlow} for an invalid status.
+     *
+     * @param status The status of a flow that failed validation.
+     * @throws IllegalArgumentException If status is valid.
+     */
+    static void raise(FlowStatus status) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        switch (status) {
+            case valid:
+                throw new IllegalArgumentException("Status is valid");
+            case lfiDivisionByZero:
+            case xDivisionByZero:
+            case fxDivisionByZero:
+                throw new DivideByZeroException(status.getMessage());
+            case invalidBounds:
+                throw new InvalidAlgorithmParameterException(status.getMessage());
+            default:
+                throw new InvalidAttributeValueException(status.getMessage());
+        }
+    }
+
+    /**
+     * Checks the values of a Circularity Flow in the order of {@link CircularityFlow#calculateMCIp(int, double, int, double)}.
+     */
+    private static FlowStatus check(double v, double r, double rr, double wc, double wf, double w, double m,
+                                    double y, double lfi, double mcip, Utility utility) {
+        if (r == 0 && rr != 0) {
+            return FlowStatus.rrWithoutR;
+        }
+        if (r >= w) {
+            return FlowStatus.rNotBelowW;
+        }
+        if (rr + wc != Math.abs(r)) {
+            return FlowStatus.unbalancedR;
+        }
+        if (w > m) {
+            return FlowStatus.wAboveM;
+        }
+        if (m < v) {
+            return FlowStatus.mBelowV;
+        }
+        if (y == 0) {
+            return FlowStatus.lfiDivisionByZero;
+        }
+        if (lfi < 0 || lfi > 1) {
+            return FlowStatus.lfiOutOfRange;
+        }
+        if (wf - wc < 0) {
+            return FlowStatus.wcAboveWf;
+        }
+        if (!utility.isValid()) {
+            return utility.status();
+        }
+        if (mcip < 0 || mcip > 1) {
+            return FlowStatus.mcipOutOfRange;
+        }
+        return FlowStatus.valid;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+}
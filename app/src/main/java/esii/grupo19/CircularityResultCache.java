@@ -0,0 +1,174 @@
+package esii.grupo19;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * The CircularityResultCache class keeps the MCI and the Circularity Flows calculated by
+ * {@link CircularityCalculator#calculateCircularity()}, so that repeated calculations of an unchanged product are
+ * answered without reading the ProductSystem again.
+ *
+ * <p>Results are stored by ProductSystem, product name, L, U, Lavg, Uavg and {@link ProductSystem#getVersion()}.
+ * Any change reported by the ProductSystem changes its version, so results calculated before the change are no
+ * longer found and are eventually evicted. The cache holds at most {@code maxSize} results and evicts the least
+ * recently used one when it is full. Calculations that throw an exception are not stored.
+ *
+ * <p>The cache can be shared by several calculators and used from several threads.
+ *
+ * <p>Usage:
+ * {@code
+ * CircularityResultCache cache = new CircularityResultCache(128);
+ * circularityCalculator.setResultCache(cache);
+ * double mci = circularityCalculator.calculateCircularity();
+ * long hits = cache.getHits();
+ * }
+ */
+public class CircularityResultCache {
+    private final int maxSize;
+    private final LinkedHashMap<Key, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Constructs an empty cache.
+     *
+     * @param maxSize The maximum number of results kept.
+     * @throws IllegalArgumentException If maxSize is not positive.
+     */
+    public CircularityResultCache(int maxSize) throws IllegalArgumentException {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Size must be positive.");
+        }
+        this.maxSize = maxSize;
+        // Access order keeps the least recently used result first
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                if (size() > CircularityResultCache.this.maxSize) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Removes every stored result. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Looks up the result for the current product, parameters and ProductSystem version of a calculator and,
+     * if found, sets it as the result and Circularity Flows of the calculator.
+     *
+     * @param calculator The calculator to be answered.
+     * @return {@code true} if a stored result was found.
+     */
+    synchronized boolean load(CircularityCalculator calculator) {
+        Entry entry = entries.get(new Key(calculator, calculator.getProductSystem().getVersion()));
+        if (entry == null) {
+            misses++;
+            return false;
+        }
+        hits++;
+        calculator.circularityFlows.clear();
+        for (CircularityFlow circularityFlow : entry.circularityFlows) {
+            calculator.circularityFlows.add(new CircularityFlow(circularityFlow));
+        }
+        calculator.setResult(entry.result);
+        return true;
+    }
+
+    /**
+     * Stores the result and Circularity Flows just calculated by a calculator.
+     *
+     * @param calculator The calculator whose result is stored.
+     * @param version    The version of the ProductSystem read before the calculation started.
+     */
+    synchronized void store(CircularityCalculator calculator, long version) {
+        LinkedList<CircularityFlow> copies = new LinkedList<>();
+        for (CircularityFlow circularityFlow : calculator.circularityFlows) {
+            copies.add(new CircularityFlow(circularityFlow));
+        }
+        entries.put(new Key(calculator, version), new Entry(calculator.getResult(), copies));
+    }
+
+    /**
+     * A product and its calculation parameters, on a given version of a ProductSystem.
+     * ProductSystems are compared by identity.
+     */
+    private static final class Key {
+        private final ProductSystem productSystem;
+        private final long version;
+        private final String productName;
+        private final int l;
+        private final int u;
+        private final double lavg;
+        private final double uavg;
+
+        Key(CircularityCalculator calculator, long version) {
+            this.productSystem = calculator.getProductSystem();
+            this.version = version;
+            this.productName = calculator.getProductName();
+            this.l = calculator.getL();
+            this.u = calculator.getU();
+            this.lavg = calculator.getLavg();
+            this.uavg = calculator.getUavg();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return productSystem == key.productSystem && version == key.version && l == key.l && u == key.u
+                    && Double.compare(lavg, key.lavg) == 0 && Double.compare(uavg, key.uavg) == 0
+                    && productName.equals(key.productName);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(System.identityHashCode(productSystem), version, productName, l, u, lavg, uavg);
+        }
+    }
+
+    private static final class Entry {
+        private final double result;
+        private final LinkedList<CircularityFlow> circularityFlows;
+
+        Entry(double result, LinkedList<CircularityFlow> circularityFlows) {
+            this.result = result;
+            this.circularityFlows = circularityFlows;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+package esii.grupo19;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+
+import enums.ResultColumn;
+
+/**
+ * The CircularityResults class holds the results of the Circularity Flows of several products in a columnar
+ * binary file, meant to be memory-mapped and scanned by analytics without parsing the text of
+ * {@link CircularityCalculator#toCsvString()}. Each row is a Circularity Flow, and each metric of
+ * {@link ResultColumn} is a contiguous column of doubles. A metric that has not been calculated for a flow, such
+ * as Ep and Es, which {@link CircularityCalculator#calculateCircularity()} does not calculate, is stored as NaN.
+ *
+ * <p>Layout, in big-endian order:
+ * <ul>
+ *     <li>header: the magic number {@code CRES}, the format version, the number of rows and the number of rows
+ *     of a row group, as four ints;</li>
+ *     <li>dictionary: the number of distinct product and flow names, then each name as its UTF-8 length and
+ *     bytes;</li>
+ *     <li>names: the dictionary index of the product name of every row, then the one of the flow name of every
+ *     row, as ints, -1 for null, padded with zeros to a multiple of eight bytes;</li>
+ *     <li>statistics: for each row group, the minimum and maximum of each column ignoring NaN, as doubles, NaN if
+ *     every value is NaN;</li>
+ *     <li>columns: the values of each column for every row, as doubles, in the order of {@link ResultColumn}.</li>
+ * </ul>
+ * Only the header and the dictionary are decoded when the file is mapped; the names, statistics and columns are
+ * read in place. Statistics let a scan skip the row groups whose range of values can't match.
+ *
+ * <p>Usage:
+ * {@code
+ * dataExporter.toBinaryCircularityResults(calculators, "results.bin");
+ * CircularityResults results = parser.loadFromBinaryResults("results.bin");
+ * DoubleBuffer mcip = results.getColumn(ResultColumn.MCIp);
+ * }
+ */
+public final class CircularityResults {
+    static final int MAGIC = 0x43524553;
+    static final int VERSION = 1;
+    static final int ROW_GROUP_SIZE = 4096;
+    private static final ResultColumn[] COLUMNS = ResultColumn.values();
+
+    private final int size;
+    private final int rowGroupSize;
+    private final String[] names;
+    private final IntBuffer productNames;
+    private final IntBuffer flowNames;
+    private final DoubleBuffer statistics;
+    private final DoubleBuffer[] columns;
+
+    private CircularityResults(int size, int rowGroupSize, String[] names, IntBuffer productNames, IntBuffer flowNames,
+                               DoubleBuffer statistics, DoubleBuffer[] columns) {
+        this.size = size;
+        this.rowGroupSize = rowGroupSize;
+        this.names = names;
+        this.productNames = productNames;
+        this.flowNames = flowNames;
+        this.statistics = statistics;
+        this.columns = columns;
+    }
+
+    /**
+     * @return The number of rows, one per Circularity Flow.
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getRowGroupSize() {
+        return rowGroupSize;
+    }
+
+    public int getRowGroupCount() {
+        return rowGroupCount(size, rowGroupSize);
+    }
+
+    public String getProductName(int row) throws IndexOutOfBoundsException {
+        return name(productNames.get(checkRow(row)));
+    }
+
+    public String getFlowName(int row) throws IndexOutOfBoundsException {
+        return name(flowNames.get(checkRow(row)));
+    }
+
+    public double get(ResultColumn column, int row) throws IndexOutOfBoundsException {
+        return columns[column.ordinal()].get(checkRow(row));
+    }
+
+    /**
+     * Returns a column read in place from the file.
+     *
+     * @param column The metric of the column.
+     * @return A read-only buffer with the value of every row, positioned at the first row.
+     */
+    public DoubleBuffer getColumn(ResultColumn column) {
+        return columns[column.ordinal()].duplicate();
+    }
+
+    /**
+     * @return The smallest value of the column in the rows of a row group, ignoring NaN, or NaN if every value is NaN.
+     * @throws IndexOutOfBoundsException If the row group does not exist.
+     */
+    public double getMin(ResultColumn column, int rowGroup) throws IndexOutOfBoundsException {
+        return statistics.get(statistic(column, rowGroup));
+    }
+
+    /**
+     * @return The largest value of the column in the rows of a row group, ignoring NaN, or NaN if every value is NaN.
+     * @throws IndexOutOfBoundsException If the row group does not exist.
+     */
+    public double getMax(ResultColumn column, int rowGroup) throws IndexOutOfBoundsException {
+        return statistics.get(statistic(column, rowGroup) + 1);
+    }
+
+    /**
+     * Writes the results of the Circularity Flows of the calculators to the channel, the calculators in iteration
+     * order and the flows of each calculator in list order.
+     *
+     * @param circularityCalculators The calculators to be written.
+     * @param channel                The channel to write to. It is not closed.
+     * @throws IOException           If an I/O error occurs.
+     */
+    static void write(Collection<CircularityCalculator> circularityCalculators, WritableByteChannel channel) throws IOException {
+        int size = 0;
+        for (CircularityCalculator circularityCalculator : circularityCalculators) {
+            size += circularityCalculator.getCircularityFlows().size();
+        }
+        HashMap<String, Integer> indexes = new HashMap<>();
+        ArrayList<String> strings = new ArrayList<>();
+        int[] productNames = new int[size];
+        int[] flowNames = new int[size];
+        double[][] values = new double[COLUMNS.length][size];
+        int row = 0;
+        for (CircularityCalculator circularityCalculator : circularityCalculators) {
+            int productName = index(indexes, strings, circularityCalculator.getProductName());
+            for (CircularityFlow circularityFlow : circularityCalculator.getCircularityFlows()) {
+                productNames[row] = productName;
+                flowNames[row] = index(indexes, strings, circularityFlow.getFlowName());
+                for (ResultColumn column : COLUMNS) {
+                    values[column.ordinal()][row] = circularityFlow.getResult(column);
+                }
+                row++;
+            }
+        }
+
+        BinarySnapshot.Output out = new BinarySnapshot.Output(channel);
+        out.putInt(MAGIC);
+        out.putInt(VERSION);
+        out.putInt(size);
+        out.putInt(ROW_GROUP_SIZE);
+        long position = 16;
+        out.putInt(strings.size());
+        position += 4;
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.putInt(bytes.length);
+            out.putBytes(bytes);
+            position += 4 + bytes.length;
+        }
+        for (int index : productNames) {
+            out.putInt(index);
+        }
+        for (int index : flowNames) {
+            out.putInt(index);
+        }
+        position += 8L * size;
+        for (; position % 8 != 0; position++) {
+            out.putByte(0);
+        }
+
+        for (int rowGroup = 0; rowGroup < rowGroupCount(size, ROW_GROUP_SIZE); rowGroup++) {
+            int from = rowGroup * ROW_GROUP_SIZE;
+            int to = Math.min(size, from + ROW_GROUP_SIZE);
+            for (double[] column : values) {
+                double min = Double.NaN;
+                double max = Double.NaN;
+                for (int i = from; i < to; i++) {
+                    if (Double.isNaN(column[i])) {
+                        continue;
+                    }
+                    if (Double.isNaN(min) || column[i] < min) {
+                        min = column[i];
+                    }
+                    if (Double.isNaN(max) || column[i] > max) {
+                        max = column[i];
+                    }
+                }
+                out.putDouble(min);
+                out.putDouble(max);
+            }
+        }
+        for (double[] column : values) {
+            for (double value : column) {
+                out.putDouble(value);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Maps a results file into memory. The mapping stays valid after the channel is closed.
+     *
+     * @param channel The channel of the file, open for reading. It is not closed.
+     * @return The results of the file.
+     * @throws IOException If an I/O error occurs, if the file does not hold results, or if its version is not
+     *                     supported.
+     */
+    static CircularityResults read(FileChannel channel) throws IOException {
+        if (channel.size() > Integer.MAX_VALUE) {
+            throw new IOException("Results file too large");
+        }
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        try {
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Invalid results file");
+            }
+            int version = buffer.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported results version: " + version);
+            }
+            int size = buffer.getInt();
+            int rowGroupSize = buffer.getInt();
+            int count = buffer.getInt();
+            if (size < 0 || rowGroupSize <= 0 || count < 0) {
+                throw new IOException("Invalid results file");
+            }
+            String[] names = new String[count];
+            for (int i = 0; i < count; i++) {
+                int length = buffer.getInt();
+                if (length < 0 || length > buffer.remaining()) {
+                    throw new IOException("Invalid results file");
+                }
+                byte[] bytes = new byte[length];
+                buffer.get(bytes);
+                names[i] = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            long position = buffer.position();
+            long statisticsPosition = (position + 8L * size + 7) & ~7L;
+            long statisticsLength = 2L * COLUMNS.length * rowGroupCount(size, rowGroupSize);
+            long columnsPosition = statisticsPosition + 8 * statisticsLength;
+            if (columnsPosition + 8L * COLUMNS.length * size != buffer.limit()) {
+                throw new IOException("Invalid results file");
+            }
+            IntBuffer productNames = buffer.slice((int) position, 4 * size).asIntBuffer();
+            IntBuffer flowNames = buffer.slice((int) position + 4 * size, 4 * size).asIntBuffer();
+            DoubleBuffer statistics = buffer.slice((int) statisticsPosition, (int) (8 * statisticsLength)).asDoubleBuffer();
+            DoubleBuffer[] columns = new DoubleBuffer[COLUMNS.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = buffer.slice((int) columnsPosition + 8 * i * size, 8 * size).asDoubleBuffer();
+            }
+            return new CircularityResults(size, rowGroupSize, names, productNames, flowNames, statistics, columns);
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Invalid results file", e);
+        }
+    }
+
+    private static int rowGroupCount(int size, int rowGroupSize) {
+        return (int) ((size + (long) rowGroupSize - 1) / rowGroupSize);
+    }
+
+    private static int index(HashMap<String, Integer> indexes, ArrayList<String> strings, String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer index = indexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            indexes.put(value, index);
+            strings.add(value);
+        }
+        return index;
+    }
+
+    private String name(int index) {
+        return index == -1 ? null : names[index];
+    }
+
+    private int checkRow(int row) throws IndexOutOfBoundsException {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Index: " + row + ", Size: " + size);
+        }
+        return row;
+    }
+
+    private int statistic(ResultColumn column, int rowGroup) throws IndexOutOfBoundsException {
+        if (rowGroup < 0 || rowGroup >= getRowGroupCount()) {
+            throw new IndexOutOfBoundsException("Row group: " + rowGroup + ", Count: " + getRowGroupCount());
+        }
+        return 2 * (rowGroup * COLUMNS.length + column.ordinal());
+    }
+}
@@ -0,0 +1,295 @@
+package esii.grupo19;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import enums.*;
+
+/**
+ * The CircularityValidator class checks every product of a ProductSystem at once and reports all the problems
+ * that would make {@link CircularityCalculator#calculateCircularity()} fail, instead of stopping at the first one.
+ *
+ * <p>For each process it reports missing process flows, process flows referencing a flow or a process that does
+ * not exist, processes without a type, flows with an invalid type, process flows without a state and process
+ * flows whose unit can't be converted to the unit of their flow, see {@link UnitConverter}. The
+ * Circularity Flows of each product are then checked with the rules of
+ * {@link CircularityFlow#calculateMCIp(int, double, int, double)}, see {@link FlowStatus}. The messages are the ones
+ * of the exceptions thrown by the calculation.
+ *
+ * <p>The ProductSystem is read once, from a {@link ProductSystem#snapshot()}, and processes are grouped by
+ * {@link Process#getProductName()}; processes without a product name are skipped. When a {@link ForkJoinPool} is
+ * set, the products are checked in parallel on that pool. The report is the same in both modes.
+ *
+ * <p>Usage:
+ * {@code
+ * CircularityValidator validator = new CircularityValidator(u, l, lavg, uavg, productSystem);
+ * validator.setForkJoinPool(ForkJoinPool.commonPool());
+ * LinkedHashMap<String, LinkedList<CircularityValidator.Violation>> report = validator.validate();
+ * }
+ */
+public class CircularityValidator {
+    private int U;
+    private int L;
+    private double Lavg;
+    private double Uavg;
+    private ProductSystem productSystem;
+    private ForkJoinPool forkJoinPool;
+
+    /**
+     * A problem found by the validator.
+     *
+     * @param productName The product the problem was found in.
+     * @param processName The process the problem was found in, or null for problems of a Circularity Flow.
+     * @param flowName    The flow the problem refers to, or null for problems of a process.
+     * @param status      The failing check of a Circularity Flow, or null for problems of the data.
+     * @param message     The message of the exception the calculation throws for the problem.
+     */
+    public record Violation(String productName, String processName, String flowName, FlowStatus status, String message) {
+
+        @Override
+        public String toString() {
+            return productName + (processName == null ? "" : "/" + processName)
+                    + (flowName == null ? "" : "/" + flowName) + ": " + message;
+        }
+    }
+
+    public CircularityValidator(int u, int l, double lavg, double uavg, ProductSystem productSystem) {
+        this.productSystem = productSystem;
+        this.U = u;
+        this.L = l;
+        this.Lavg = lavg;
+        this.Uavg = uavg;
+    }
+
+    public int getU() {
+        return U;
+    }
+
+    public void setU(int u) {
+        U = u;
+    }
+
+    public int getL() {
+        return L;
+    }
+
+    public void setL(int l) {
+        L = l;
+    }
+
+    public double getLavg() {
+        return Lavg;
+    }
+
+    public void setLavg(double lavg) {
+        Lavg = lavg;
+    }
+
+    public double getUavg() {
+        return Uavg;
+    }
+
+    public void setUavg(double uavg) {
+        Uavg = uavg;
+    }
+
+    public ProductSystem getProductSystem() {
+        return productSystem;
+    }
+
+    public void setProductSystem(ProductSystem productSystem) {
+        this.productSystem = productSystem;
+    }
+
+    public ForkJoinPool getForkJoinPool() {
+        return forkJoinPool;
+    }
+
+    /**
+     * Sets the pool used to check the products in parallel.
+     *
+     * @param forkJoinPool The pool used by {@link #validate()}, or null to check the products sequentially.
+     */
+    public void setForkJoinPool(ForkJoinPool forkJoinPool) {
+        this.forkJoinPool = forkJoinPool;
+    }
+
+    /**
+     * Checks every product of the ProductSystem.
+     *
+     * @return The problems of each product that has any, with products in order of first appearance and the
+     * problems of a product in the order its processes and flows are read. Empty if every product can be calculated.
+     * @throws IllegalArgumentException If the ProductSystem is null.
+     */
+    public LinkedHashMap<String, LinkedList<Violation>> validate() {
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        ProductSystemSnapshot snapshot = productSystem.snapshot();
+        HashMap<String, Flow> flowsByName = new HashMap<>();
+        HashMap<String, Process> processesByName = new HashMap<>();
+        LinkedHashMap<String, LinkedList<Process>> products = new LinkedHashMap<>();
+        for (Flow flow : snapshot.flows()) {
+            flowsByName.putIfAbsent(flow.getName(), flow);
+        }
+        for (Process process : snapshot.processes()) {
+            processesByName.putIfAbsent(process.getName(), process);
+            if (process.getProductName() != null) {
+                products.computeIfAbsent(process.getProductName(), k -> new LinkedList<>()).add(process);
+            }
+        }
+
+        Check check = new Check(flowsByName, processesByName, CircularityKernel.calculateUtility(L, Lavg, U, Uavg));
+        String[] productNames = products.keySet().toArray(new String[0]);
+        // Filled by index, so that the parallel tasks keep the order of the products
+        List<LinkedList<Violation>> violations = new ArrayList<>(Collections.nCopies(productNames.length, null));
+        if (forkJoinPool == null) {
+            for (int i = 0; i < productNames.length; i++) {
+                violations.set(i, check.product(productNames[i], products.get(productNames[i])));
+            }
+        } else {
+            forkJoinPool.invoke(new ProductTask(check, products, productNames, violations, 0, productNames.length));
+        }
+
+        LinkedHashMap<String, LinkedList<Violation>> report = new LinkedHashMap<>();
+        for (int i = 0; i < productNames.length; i++) {
+            if (!violations.get(i).isEmpty()) {
+                report.put(productNames[i], violations.get(i));
+            }
+        }
+        return report;
+    }
+
+    /**
+     * The checks of a single product, reading lookups shared by every product.
+     */
+    private static final class Check {
+        private final HashMap<String, Flow> flowsByName;
+        private final HashMap<String, Process> processesByName;
+        private final CircularityKernel.Utility utility;
+
+        Check(HashMap<String, Flow> flowsByName, HashMap<String, Process> processesByName, CircularityKernel.Utility utility) {
+            this.flowsByName = flowsByName;
+            this.processesByName = processesByName;
+            this.utility = utility;
+        }
+
+        LinkedList<Violation> product(String productName, LinkedList<Process> processes) {
+            LinkedList<Violation> violations = new LinkedList<>();
+            LinkedHashMap<String, CircularityFlow> circularityFlows = new LinkedHashMap<>();
+            for (Process process : processes) {
+                process(productName, process, circularityFlows, violations);
+            }
+            if (circularityFlows.isEmpty()) {
+                if (violations.isEmpty()) {
+                    violations.add(new Violation(productName, null, null, null, "There are no processes with this name: " + productName));
+                }
+                return violations;
+            }
+            double m = 0;
+            for (CircularityFlow circularityFlow : circularityFlows.values()) {
+                FlowStatus status = circularityFlow.validate(utility);
+                if (!status.isValid()) {
+                    violations.add(new Violation(productName, null, circularityFlow.getFlowName(), status, status.getMessage()));
+                }
+                m += circularityFlow.getV() + circularityFlow.getRi();
+            }
+            if (violations.isEmpty() && m == 0) {
+                violations.add(new Violation(productName, null, null, null, "MCI Division by zero"));
+            }
+            return violations;
+        }
+
+        private void process(String productName, Process process, LinkedHashMap<String, CircularityFlow> circularityFlows,
+                             LinkedList<Violation> violations) {
+            if (process.getProcessFlows().isEmpty()) {
+                violations.add(new Violation(productName, process.getName(), null, null, "Empty ProcessFlow list"));
+                return;
+            }
+            for (ProcessFlow processFlow : process.getProcessFlows()) {
+                String flowName = processFlow.getNameFlow();
+                if (flowName == null) {
+                    violations.add(new Violation(productName, process.getName(), null, null, "Flow name is null"));
+                    continue;
+                }
+                Flow flow = flowsByName.get(flowName);
+                if (flow == null) {
+                    violations.add(new Violation(productName, process.getName(), flowName, null, "Flow does not exist"));
+                    continue;
+                }
+                if (flow.getType() == FlowType.energy) {
+                    continue;
+                }
+                if (flow.getType() != FlowType.material && flow.getType() != FlowType.service) {
+                    violations.add(new Violation(productName, process.getName(), flowName, null, "Invalid flow type"));
+                    continue;
+                }
+                Process owner = processesByName.get(processFlow.getNameProcess());
+                if (owner == null) {
+                    violations.add(new Violation(productName, process.getName(), flowName, null, "Process does not exist"));
+                    continue;
+                }
+                if (owner.getProcessType() == null) {
+                    violations.add(new Violation(productName, process.getName(), flowName, null, "Process type is null"));
+                    continue;
+                }
+                if (processFlow.getState() == null) {
+                    violations.add(new Violation(productName, process.getName(), flowName, null, "Invalid processFlow state"));
+                    continue;
+                }
+                CircularityFlow circularityFlow = circularityFlows.get(flowName);
+                if (circularityFlow != null && !UnitConverter.isCompatible(processFlow.getUnit(), circularityFlow.getUnit())) {
+                    violations.add(new Violation(productName, process.getName(), flowName, null, "Incompatible units"));
+                    continue;
+                }
+                if (circularityFlow == null) {
+                    circularityFlow = new CircularityFlow(flowName);
+                    circularityFlows.put(flowName, circularityFlow);
+                }
+                CircularityAggregator.accumulate(circularityFlow, processFlow, owner.getProcessType());
+            }
+        }
+    }
+
+    /**
+     * Fork-join task checking the products in the range [from, to), splitting the range in halves.
+     */
+    private static final class ProductTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+        private final Check check;
+        private final LinkedHashMap<String, LinkedList<Process>> products;
+        private final String[] productNames;
+        private final List<LinkedList<Violation>> violations;
+        private final int from;
+        private final int to;
+
+        ProductTask(Check check, LinkedHashMap<String, LinkedList<Process>> products, String[] productNames,
+                    List<LinkedList<Violation>> violations, int from, int to) {
+            this.check = check;
+            this.products = products;
+            this.productNames = productNames;
+            this.violations = violations;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ProductTask(check, products, productNames, violations, from, middle),
+                        new ProductTask(check, products, productNames, violations, middle, to));
+                return;
+            }
+            for (int i = from; i < to; i++) {
+                violations.set(i, check.product(productNames[i], products.get(productNames[i])));
+            }
+        }
+    }
+}
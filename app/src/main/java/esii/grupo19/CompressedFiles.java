@@ -0,0 +1,102 @@
+package esii.grupo19;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The CompressedFiles class opens the files read by {@link Parser} and written by {@link DataExporter}, compressing
+ * them with gzip when their name ends in {@value #GZIP_EXTENSION}. The data is compressed and decompressed while it
+ * is streamed, so no uncompressed copy of the file is ever written to disk or held in memory.
+ *
+ * <p>Text is always written and read in UTF-8, whether it is compressed or not.
+ *
+ * <p>Usage:
+ * {@code
+ * try (BufferedWriter writer = CompressedFiles.newWriter("productSystem.csv.gz")) {
+ *     productSystem.writeCsv(writer);
+ * }
+ * }
+ */
+final class CompressedFiles {
+    static final String GZIP_EXTENSION = ".gz";
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private CompressedFiles() {
+    }
+
+    /**
+     * Checks whether a file is compressed, from its name.
+     *
+     * @return {@code true} if the name ends in {@value #GZIP_EXTENSION}.
+     */
+    static boolean isCompressed(String fileName) {
+        return fileName.endsWith(GZIP_EXTENSION);
+    }
+
+    /**
+     * Opens a file for writing, creating or truncating it.
+     *
+     * @return A stream writing to the file, compressing the bytes if the file is compressed.
+     */
+    static OutputStream newOutputStream(String fileName) throws IOException {
+        OutputStream outputStream = Files.newOutputStream(Path.of(fileName));
+        if (!isCompressed(fileName)) {
+            return outputStream;
+        }
+        try {
+            return new GZIPOutputStream(outputStream, BUFFER_SIZE);
+        } catch (IOException e) {
+            outputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a file for reading.
+     *
+     * @return A stream reading the file, decompressing the bytes if the file is compressed.
+     * @throws IOException If the file cannot be read, or if it is compressed and is not in the gzip format.
+     */
+    static InputStream newInputStream(String fileName) throws IOException {
+        InputStream inputStream = Files.newInputStream(Path.of(fileName));
+        if (!isCompressed(fileName)) {
+            return inputStream;
+        }
+        try {
+            return new GZIPInputStream(inputStream, BUFFER_SIZE);
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a text file for writing in UTF-8, through a buffer.
+     */
+    static BufferedWriter newWriter(String fileName) throws IOException {
+        if (!isCompressed(fileName)) {
+            return Files.newBufferedWriter(Path.of(fileName), StandardCharsets.UTF_8);
+        }
+        return new BufferedWriter(new OutputStreamWriter(newOutputStream(fileName), StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Opens a text file for reading in UTF-8, through a buffer if it is not compressed.
+     */
+    static Reader newReader(String fileName) throws IOException {
+        if (!isCompressed(fileName)) {
+            return Files.newBufferedReader(Path.of(fileName), StandardCharsets.UTF_8);
+        }
+        return new InputStreamReader(newInputStream(fileName), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,416 @@
+package esii.grupo19;
+
+import java.util.LinkedList;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import exceptions.ElementNotFoundException;
+
+/**
+ * The ConcurrentProductSystem class is a ProductSystem that can be read from many threads while other threads
+ * add and remove flows and processes.
+ *
+ * <p>The flows and processes are kept in {@link PersistentList}s, and every change publishes a new pair of lists
+ * through a single volatile field. Reads never lock: they take the lists published last, which no later change
+ * alters, so iterating over them never throws {@link java.util.ConcurrentModificationException} and always sees
+ * the flows and processes of one moment. The id and name indexes are published with the lists, and are complete
+ * before the lists that hold their elements. Changes are made one at a time under a lock, and adding a flow or a
+ * process takes amortized constant time.
+ *
+ * <p>Listeners are called after the lock is released, in the order of the changes, one change at a time, so a
+ * slow listener does not block other writers and a listener may change the ProductSystem itself.
+ *
+ * <p>Unlike in a ProductSystem, {@link #getFlows()} and {@link #getProcesses()} return a new list on each call;
+ * changing it does not change the ProductSystem. {@link #getFlowCount()} and {@link #getProcessCount()} count
+ * them without copying. The flows, processes and process flows themselves are not
+ * thread-safe, so a process should be given its process flows before it is added, or be replaced with
+ * {@link #removeProcess(String)} and {@link #addProcess(Process)}.
+ *
+ * <p>Usage:
+ * {@code
+ * ConcurrentProductSystem productSystem = new ConcurrentProductSystem();
+ * productSystem.addProcess(process);        // ingestion thread
+ * productSystem.getProcessByName("name");   // request threads
+ * }
+ */
+public class ConcurrentProductSystem extends ProductSystem {
+    private final Object lock;
+    private volatile Elements elements;
+    // Listener calls of the changes made under the lock, in order, called once the lock is released
+    private final ConcurrentLinkedQueue<Runnable> events;
+    private final AtomicLong version;
+
+    public ConcurrentProductSystem() {
+        this.lock = new Object();
+        this.elements = new Elements(PersistentList.empty(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+                PersistentList.empty(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        this.events = new ConcurrentLinkedQueue<>();
+        this.version = new AtomicLong();
+    }
+
+    /**
+     * Retrieves a copy of the current flows.
+     *
+     * @return A new list with the flows, in the order they were added.
+     */
+    @Override
+    public LinkedList<Flow> getFlows() {
+        return elements.flows.toLinkedList();
+    }
+
+    @Override
+    public void setFlows(LinkedList<Flow> flows) {
+        if (flows == null) {
+            throw new IllegalArgumentException("Flows must not be null.");
+        }
+        synchronized (lock) {
+            PersistentList<Flow> previous = elements.flows;
+            elements = elements.withFlows(PersistentList.of(flows));
+            for (Flow flow : previous) {
+                if (flow.getProductSystem() == this) {
+                    flow.setProductSystem(null);
+                }
+            }
+            for (Flow flow : elements.flows) {
+                flow.setProductSystem(this);
+            }
+            for (Flow flow : previous) {
+                events.add(() -> fireFlowRemoved(flow));
+            }
+            for (Flow flow : elements.flows) {
+                events.add(() -> fireFlowAdded(flow));
+            }
+        }
+        fireEvents();
+    }
+
+    /**
+     * Retrieves a copy of the current processes.
+     *
+     * @return A new list with the processes, in the order they were added.
+     */
+    @Override
+    public LinkedList<Process> getProcesses() {
+        return elements.processes.toLinkedList();
+    }
+
+    @Override
+    public void setProcesses(LinkedList<Process> processes) {
+        if (processes == null) {
+            throw new IllegalArgumentException("Processes must not be null.");
+        }
+        synchronized (lock) {
+            PersistentList<Process> previous = elements.processes;
+            elements = elements.withProcesses(PersistentList.of(processes));
+            for (Process process : previous) {
+                release(process);
+            }
+            for (Process process : elements.processes) {
+                link(process);
+            }
+            for (Process process : previous) {
+                events.add(() -> fireProcessRemoved(process));
+            }
+            for (Process process : elements.processes) {
+                events.add(() -> fireProcessAdded(process));
+            }
+        }
+        fireEvents();
+    }
+
+    @Override
+    public int getFlowCount() {
+        return elements.flows.size();
+    }
+
+    @Override
+    public int getProcessCount() {
+        return elements.processes.size();
+    }
+
+    /**
+     * Takes a snapshot of the flows and processes in constant time, by sharing the lists published last.
+     *
+     * @return The snapshot, holding the same flow and process objects.
+     */
+    @Override
+    public ProductSystemSnapshot snapshot() {
+        long current = version.get();
+        Elements published = elements;
+        return new ProductSystemSnapshot(published.flows, published.processes, current);
+    }
+
+    @Override
+    Contents contents() {
+        Elements published = elements;
+        return new Contents(published.flows, published.processes);
+    }
+
+    @Override
+    public long getVersion() {
+        return version.get();
+    }
+
+    @Override
+    void changed() {
+        version.incrementAndGet();
+    }
+
+    @Override
+    public Flow getFlowByName(String name) throws IllegalArgumentException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null.");
+        }
+        return elements.flowsByName.get(name);
+    }
+
+    @Override
+    public Process getProcessByName(String name) throws IllegalArgumentException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null.");
+        }
+        return elements.processesByName.get(name);
+    }
+
+    @Override
+    public Flow getFlowById(UUID id) throws IllegalArgumentException {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must not be null.");
+        }
+        return elements.flowsById.get(id);
+    }
+
+    @Override
+    public Process getProcessById(UUID id) throws IllegalArgumentException {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must not be null.");
+        }
+        return elements.processesById.get(id);
+    }
+
+    @Override
+    public void addFlow(Flow flow) throws IllegalArgumentException {
+        if (flow == null) {
+            throw new IllegalArgumentException("Flow must not be null.");
+        }
+        synchronized (lock) {
+            Elements current = elements;
+            if (current.flowsById.get(flow.getId()) == flow) {
+                throw new IllegalArgumentException("Flow already exists.");
+            }
+            index(current.flowsById, current.flowsByName, flow);
+            elements = new Elements(current.flows.append(flow), current.flowsById, current.flowsByName,
+                    current.processes, current.processesById, current.processesByName);
+            flow.setProductSystem(this);
+            events.add(() -> fireFlowAdded(flow));
+        }
+        fireEvents();
+    }
+
+    @Override
+    public void addProcess(Process process) throws IllegalArgumentException {
+        if (process == null) {
+            throw new IllegalArgumentException("Process must not be null.");
+        }
+        synchronized (lock) {
+            Elements current = elements;
+            if (current.processesById.get(process.getId()) == process) {
+                throw new IllegalArgumentException("Process already exists.");
+            }
+            index(current.processesById, current.processesByName, process);
+            elements = new Elements(current.flows, current.flowsById, current.flowsByName,
+                    current.processes.append(process), current.processesById, current.processesByName);
+            link(process);
+            events.add(() -> fireProcessAdded(process));
+        }
+        fireEvents();
+    }
+
+    @Override
+    public Flow removeFlow(String name) throws IllegalArgumentException, ElementNotFoundException {
+        LinkedList<Flow> removed = new LinkedList<Flow>();
+        synchronized (lock) {
+            if (elements.flows.isEmpty()) {
+                throw new IllegalArgumentException("Empty list");
+            }
+            if (name == null) {
+                throw new IllegalArgumentException("Name must not be null.");
+            }
+            PersistentList<Flow> current = elements.flows.without(flow -> {
+                if (flow.getName().equals(name)) {
+                    removed.add(flow);
+                    return true;
+                }
+                return false;
+            });
+            if (removed.isEmpty()) {
+                throw new ElementNotFoundException("Flow not found");
+            }
+            // Removing copies the list, so the indexes are rebuilt, rather than changed under the readers
+            elements = elements.withFlows(current);
+            for (Flow flow : removed) {
+                if (flow.getProductSystem() == this) {
+                    flow.setProductSystem(null);
+                }
+                events.add(() -> fireFlowRemoved(flow));
+            }
+        }
+        fireEvents();
+        return removed.getLast();
+    }
+
+    @Override
+    public Process removeProcess(String name) throws IllegalArgumentException, ElementNotFoundException {
+        LinkedList<Process> removed = new LinkedList<Process>();
+        synchronized (lock) {
+            if (elements.processes.isEmpty()) {
+                throw new IllegalArgumentException("Empty list");
+            }
+            if (name == null) {
+                throw new IllegalArgumentException("Name must not be null.");
+            }
+            PersistentList<Process> current = elements.processes.without(process -> {
+                if (process.getName().equals(name)) {
+                    removed.add(process);
+                    return true;
+                }
+                return false;
+            });
+            if (removed.isEmpty()) {
+                throw new ElementNotFoundException("Process not found");
+            }
+            // Removing copies the list, so the indexes are rebuilt, rather than changed under the readers
+            elements = elements.withProcesses(current);
+            for (Process process : removed) {
+                release(process);
+                events.add(() -> fireProcessRemoved(process));
+            }
+        }
+        fireEvents();
+        return removed.getLast();
+    }
+
+    @Override
+    void flowRenamed(Flow flow, String previous) {
+        synchronized (lock) {
+            Elements current = elements;
+            if (previous != null && current.flowsByName.get(previous) == flow) {
+                Flow first = firstFlow(current.flows, previous);
+                if (first != null) {
+                    current.flowsByName.put(previous, first);
+                } else {
+                    current.flowsByName.remove(previous, flow);
+                }
+            }
+            if (flow.getName() != null) {
+                current.flowsByName.put(flow.getName(), current.flowsByName.containsKey(flow.getName())
+                        ? firstFlow(current.flows, flow.getName()) : flow);
+            }
+        }
+    }
+
+    @Override
+    void processRenamed(Process process, String previous) {
+        synchronized (lock) {
+            Elements current = elements;
+            if (previous != null && current.processesByName.get(previous) == process) {
+                Process first = firstProcess(current.processes, previous);
+                if (first != null) {
+                    current.processesByName.put(previous, first);
+                } else {
+                    current.processesByName.remove(previous, process);
+                }
+            }
+            if (process.getName() != null) {
+                current.processesByName.put(process.getName(), current.processesByName.containsKey(process.getName())
+                        ? firstProcess(current.processes, process.getName()) : process);
+            }
+        }
+    }
+
+    private static Flow firstFlow(PersistentList<Flow> flows, String name) {
+        for (Flow flow : flows) {
+            if (name.equals(flow.getName())) {
+                return flow;
+            }
+        }
+        return null;
+    }
+
+    private static Process firstProcess(PersistentList<Process> processes, String name) {
+        for (Process process : processes) {
+            if (name.equals(process.getName())) {
+                return process;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Calls the listeners of the changes made so far, in order. The calls are made one at a time, by whichever
+     * thread takes the queue first; a listener that changes this ProductSystem calls the listeners of its own
+     * change before returning.
+     */
+    private void fireEvents() {
+        synchronized (events) {
+            Runnable event;
+            while ((event = events.poll()) != null) {
+                event.run();
+            }
+        }
+    }
+
+    private static void index(ConcurrentHashMap<UUID, Flow> byId, ConcurrentHashMap<String, Flow> byName, Flow flow) {
+        byId.put(flow.getId(), flow);
+        byName.putIfAbsent(flow.getName(), flow);
+    }
+
+    private static void index(ConcurrentHashMap<UUID, Process> byId, ConcurrentHashMap<String, Process> byName, Process process) {
+        byId.put(process.getId(), process);
+        byName.putIfAbsent(process.getName(), process);
+    }
+
+    /**
+     * The flows and processes published together by a change, with their indexes. Adding an element puts it in
+     * the indexes before publishing the lists holding it, and the other changes publish new indexes.
+     */
+    private static final class Elements {
+        private final PersistentList<Flow> flows;
+        private final ConcurrentHashMap<UUID, Flow> flowsById;
+        private final ConcurrentHashMap<String, Flow> flowsByName;
+        private final PersistentList<Process> processes;
+        private final ConcurrentHashMap<UUID, Process> processesById;
+        private final ConcurrentHashMap<String, Process> processesByName;
+
+        Elements(PersistentList<Flow> flows, ConcurrentHashMap<UUID, Flow> flowsById, ConcurrentHashMap<String, Flow> flowsByName,
+                 PersistentList<Process> processes, ConcurrentHashMap<UUID, Process> processesById,
+                 ConcurrentHashMap<String, Process> processesByName) {
+            this.flows = flows;
+            this.flowsById = flowsById;
+            this.flowsByName = flowsByName;
+            this.processes = processes;
+            this.processesById = processesById;
+            this.processesByName = processesByName;
+        }
+
+        Elements withFlows(PersistentList<Flow> flows) {
+            ConcurrentHashMap<UUID, Flow> byId = new ConcurrentHashMap<>();
+            ConcurrentHashMap<String, Flow> byName = new ConcurrentHashMap<>();
+            for (Flow flow : flows) {
+                index(byId, byName, flow);
+            }
+            return new Elements(flows, byId, byName, processes, processesById, processesByName);
+        }
+
+        Elements withProcesses(PersistentList<Process> processes) {
+            ConcurrentHashMap<UUID, Process> byId = new ConcurrentHashMap<>();
+            ConcurrentHashMap<String, Process> byName = new ConcurrentHashMap<>();
+            for (Process process : processes) {
+                index(byId, byName, process);
+            }
+            return new Elements(flows, flowsById, flowsByName, processes, byId, byName);
+        }
+    }
+}
@@ -0,0 +1,307 @@
+package esii.grupo19;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * The CsvTokenizer class reads comma-separated records from a character stream without allocating a
+ * {@code String[]} per line. Characters are read through a reusable buffer, the current line is kept in a
+ * reusable line buffer, and only the start and end offsets of its fields are recorded. Strings are created
+ * only for the fields that are asked for, and numbers are parsed directly from the line buffer.
+ *
+ * <p>Records follow the rules used by {@link Parser} so far, that is {@code BufferedReader.readLine()} followed by
+ * {@code line.split(",")} and {@code trim()} on every value:
+ * <ul>
+ *     <li>lines end with {@code \n}, {@code \r} or {@code \r\n};</li>
+ *     <li>a line without commas has a single field, even when it is empty;</li>
+ *     <li>trailing empty fields are dropped;</li>
+ *     <li>field values are trimmed of leading and trailing whitespace.</li>
+ * </ul>
+ *
+ * <p>Usage:
+ * {@code
+ * try (CsvTokenizer tokenizer = new CsvTokenizer(new FileReader("example.csv"))) {
+ *     while (tokenizer.nextRecord()) {
+ *         String name = tokenizer.getField(0);
+ *         double quantity = tokenizer.getDouble(2);
+ *     }
+ * }
+ * }
+ */
+public class CsvTokenizer implements Closeable {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Powers of ten that are exactly representable as doubles
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+    // Largest mantissa whose conversion to double is exact (2^53)
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private final Reader reader;
+    private final char[] buffer;
+    private int position;
+    private int limit;
+    private boolean skipLineFeed;
+    private char[] line;
+    private int lineLength;
+    private int[] starts;
+    private int[] ends;
+    private int fieldCount;
+
+    /**
+     * Creates a tokenizer reading from the given character stream.
+     *
+     * @param reader The stream to be read. It is closed when the tokenizer is closed.
+     * @throws IllegalArgumentException If the reader is null.
+     */
+    public CsvTokenizer(Reader reader) {
+        if (reader == null) {
+            throw new IllegalArgumentException("Reader must not be null.");
+        }
+        this.reader = reader;
+        this.buffer = new char[BUFFER_SIZE];
+        this.line = new char[256];
+        this.starts = new int[16];
+        this.ends = new int[16];
+    }
+
+    /**
+     * Advances to the next record of the stream.
+     *
+     * @return {@code true} if a record was read, or {@code false} at the end of the stream.
+     * @throws IOException If an I/O error occurs.
+     */
+    public boolean nextRecord() throws IOException {
+        if (!readLine()) {
+            return false;
+        }
+        splitLine();
+        return true;
+    }
+
+    /**
+     * Retrieves the number of fields of the current record.
+     *
+     * @return The number of fields of the current record.
+     */
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Retrieves the trimmed value of a field of the current record.
+     *
+     * @param index The index of the field.
+     * @return The value of the field, without leading and trailing whitespace.
+     * @throws IndexOutOfBoundsException If the record has no field with that index.
+     */
+    public String getField(int index) {
+        checkIndex(index);
+        return new String(line, starts[index], ends[index] - starts[index]);
+    }
+
+    /**
+     * Parses a field of the current record as a double, with the same results as {@link Double#parseDouble(String)}.
+     * Plain decimal numbers are converted directly from the line buffer; other notations fall back to
+     * {@link Double#parseDouble(String)}.
+     *
+     * @param index The index of the field.
+     * @return The parsed value.
+     * @throws NumberFormatException     If the field is not a valid number.
+     * @throws IndexOutOfBoundsException If the record has no field with that index.
+     */
+    public double getDouble(int index) {
+        checkIndex(index);
+        int start = starts[index];
+        int end = ends[index];
+        int i = start;
+        boolean negative = false;
+        if (i < end && (line[i] == '-' || line[i] == '+')) {
+            negative = line[i] == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean exact = true;
+        while (i < end && line[i] >= '0' && line[i] <= '9') {
+            mantissa = mantissa * 10 + (line[i] - '0');
+            exact &= mantissa < MAX_EXACT_MANTISSA;
+            digits++;
+            i++;
+        }
+        if (i < end && line[i] == '.') {
+            i++;
+            while (i < end && line[i] >= '0' && line[i] <= '9') {
+                mantissa = mantissa * 10 + (line[i] - '0');
+                exact &= mantissa < MAX_EXACT_MANTISSA;
+                exponent--;
+                digits++;
+                i++;
+            }
+        }
+        if (digits > 0 && i < end && (line[i] == 'e' || line[i] == 'E')) {
+            i++;
+            boolean negativeExponent = false;
+            if (i < end && (line[i] == '-' || line[i] == '+')) {
+                negativeExponent = line[i] == '-';
+                i++;
+            }
+            int exponentDigits = 0;
+            int value = 0;
+            while (i < end && line[i] >= '0' && line[i] <= '9' && value < 1000) {
+                value = value * 10 + (line[i] - '0');
+                exponentDigits++;
+                i++;
+            }
+            exponent += negativeExponent ? -value : value;
+            exact &= exponentDigits > 0;
+        }
+        if (digits > 0 && i == end && exact && exponent >= -22 && exponent <= 22) {
+            double value = (double) mantissa;
+            value = exponent < 0 ? value / POWERS_OF_TEN[-exponent] : value * POWERS_OF_TEN[exponent];
+            return negative ? -value : value;
+        }
+        return Double.parseDouble(new String(line, start, end - start));
+    }
+
+    /**
+     * Matches a field of the current record against the names of the given enum constants, with the same results
+     * as {@code Enum.valueOf} but without creating a String for the field.
+     *
+     * @param index  The index of the field.
+     * @param values The constants of the enum.
+     * @param <E>    The type of the enum.
+     * @return The constant whose name is equal to the field.
+     * @throws IllegalArgumentException  If no constant has that name.
+     * @throws IndexOutOfBoundsException If the record has no field with that index.
+     */
+    public <E extends Enum<E>> E getEnum(int index, E[] values) {
+        checkIndex(index);
+        int start = starts[index];
+        int length = ends[index] - start;
+        for (E value : values) {
+            if (matches(value.name(), start, length)) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("No enum constant " + getField(index));
+    }
+
+    private boolean matches(String name, int start, int length) {
+        if (name.length() != length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (name.charAt(i) != line[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= fieldCount) {
+            throw new IndexOutOfBoundsException("Field " + index + " out of " + fieldCount);
+        }
+    }
+
+    /**
+     * Reads the next line into the line buffer, without its terminator.
+     *
+     * @return {@code false} if the end of the stream was reached before any character.
+     */
+    private boolean readLine() throws IOException {
+        lineLength = 0;
+        boolean read = false;
+        while (true) {
+            if (position >= limit) {
+                limit = reader.read(buffer, 0, buffer.length);
+                position = 0;
+                if (limit <= 0) {
+                    limit = 0;
+                    return read;
+                }
+            }
+            if (skipLineFeed) {
+                skipLineFeed = false;
+                if (buffer[position] == '\n') {
+                    position++;
+                    continue;
+                }
+            }
+            read = true;
+            int start = position;
+            while (position < limit && buffer[position] != '\n' && buffer[position] != '\r') {
+                position++;
+            }
+            append(start, position);
+            if (position < limit) {
+                skipLineFeed = buffer[position] == '\r';
+                position++;
+                return true;
+            }
+        }
+    }
+
+    private void append(int start, int end) {
+        int length = end - start;
+        if (lineLength + length > line.length) {
+            char[] larger = new char[Math.max(line.length * 2, lineLength + length)];
+            System.arraycopy(line, 0, larger, 0, lineLength);
+            line = larger;
+        }
+        System.arraycopy(buffer, start, line, lineLength, length);
+        lineLength += length;
+    }
+
+    /**
+     * Records the trimmed bounds of the fields of the line buffer, dropping trailing empty fields
+     * the same way as {@code String.split(",")}.
+     */
+    private void splitLine() {
+        fieldCount = 0;
+        int start = 0;
+        // Number of fields up to the last one that is not empty before trimming
+        int keptFields = 0;
+        for (int i = 0; i <= lineLength; i++) {
+            if (i == lineLength || line[i] == ',') {
+                addField(start, i);
+                if (i > start) {
+                    keptFields = fieldCount;
+                }
+                start = i + 1;
+            }
+        }
+        if (fieldCount > 1) {
+            fieldCount = keptFields;
+        }
+    }
+
+    private void addField(int start, int end) {
+        if (fieldCount == starts.length) {
+            int[] largerStarts = new int[starts.length * 2];
+            int[] largerEnds = new int[ends.length * 2];
+            System.arraycopy(starts, 0, largerStarts, 0, fieldCount);
+            System.arraycopy(ends, 0, largerEnds, 0, fieldCount);
+            starts = largerStarts;
+            ends = largerEnds;
+        }
+        while (start < end && line[start] <= ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] <= ' ') {
+            end--;
+        }
+        starts[fieldCount] = start;
+        ends[fieldCount] = end;
+        fieldCount++;
+    }
+}
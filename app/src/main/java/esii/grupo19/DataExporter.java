@@ -1,7 +1,29 @@
 package esii.grupo19;
 
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * The DataExporter class provides methods for exporting circularity-related data to various file formats,
@@ -13,18 +35,22 @@ import java.io.IOException;
  *
  * <p>This class ensures that the exported data is consistent and conforms to the specified file formats.
  * It includes methods for writing Circularity System and Circularity Calculator data to CSV and JSON files.
+ *
+ * <p>Files whose name ends in {@code .gz} are compressed with gzip while they are written, and can be read back
+ * by {@link Parser}, see {@link CompressedFiles}.
  */
 public class DataExporter {
 
     /**
      * Writes Circularity System data to a CSV (Comma-Separated Values) file.
-     * The method takes a ProductSystem object and a file name as input, generates a CSV string
-     * representation using the ProductSystem's toCsvString method, and writes it to the specified file.
+     * The method takes a ProductSystem object and a file name as input, and streams the rows of the
+     * ProductSystem's CSV representation to the specified file in UTF-8 through a buffered writer, so the memory
+     * used does not grow with the size of the ProductSystem.
      *
      * <p>Before performing the write operation, the method checks that the provided ProductSystem and file name
      * are not null. If either is null, it throws an IllegalArgumentException.
      *
-     * <p>Uses a try-with-resources block to automatically close the FileWriter after writing.
+     * <p>Uses a try-with-resources block to automatically close the writer after writing.
      *
      * @param productSystem The Circularity System data to be written to the CSV file.
      * @param fileName      The name of the CSV file to be created or overwritten.
@@ -35,8 +61,8 @@ public class DataExporter {
         if (productSystem == null || fileName == null) {
             throw new IllegalArgumentException("ProductSystem or fileName must not be null. must not be null.");
         }
-        try (FileWriter writer = new FileWriter(fileName)) {
-            writer.write(productSystem.toCsvString());
+        try (BufferedWriter writer = CompressedFiles.newWriter(fileName)) {
+            productSystem.writeCsv(writer);
             System.out.println("Arquivo CSV criado com sucesso!");
 
         } catch (IOException e) {
@@ -45,6 +71,23 @@ public class DataExporter {
 
     }
 
+    /**
+     * Writes Circularity System data as UTF-8 CSV rows to an output stream, with the same text as
+     * {@link #toCsvProductSystem(ProductSystem, String)}. The rows are streamed through a buffer.
+     *
+     * @param productSystem The Circularity System data to be written.
+     * @param outputStream  The stream to which the CSV rows are written. It is flushed but not closed.
+     * @throws IOException              If an error occurs while writing to the stream.
+     * @throws IllegalArgumentException If the provided ProductSystem or outputStream is null.
+     */
+    public void toCsvProductSystem(ProductSystem productSystem, OutputStream outputStream) throws IOException, IllegalArgumentException {
+        if (productSystem == null || outputStream == null) {
+            throw new IllegalArgumentException("ProductSystem or outputStream must not be null.");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        productSystem.writeCsv(writer);
+    }
+
     /**
      * Writes Circularity System data to a JSON (JavaScript Object Notation) file.
      * The method takes a ProductSystem object and a file name as input, and uses the ProductSystem's
@@ -66,15 +109,58 @@ public class DataExporter {
 
     }
 
+    /**
+     * Writes Circularity System data as a UTF-8 JSON document to an output stream.
+     * The document is the same as the one written by {@link #toJsonProductSystem(ProductSystem, String)}, and is
+     * streamed through a buffer, so exporting a large ProductSystem does not require memory for the whole document.
+     *
+     * @param productSystem The Circularity System data to be written.
+     * @param outputStream  The stream to which the JSON document is written. It is flushed but not closed.
+     * @throws IOException              If an error occurs while writing to the stream.
+     * @throws IllegalArgumentException If the provided ProductSystem or outputStream is null.
+     */
+    public void toJsonProductSystem(ProductSystem productSystem, OutputStream outputStream) throws IOException, IllegalArgumentException {
+        if (productSystem == null || outputStream == null) {
+            throw new IllegalArgumentException("ProductSystem or outputStream must not be null.");
+        }
+        BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        productSystem.writeJson(writer);
+    }
+
+    /**
+     * Writes Circularity System data to a binary snapshot file, which {@link Parser#loadFromBinary(String)} reads
+     * back much faster than a CSV or JSON file. The snapshot keeps the ids of the flows, processes and process flows.
+     *
+     * @param productSystem The Circularity System data to be written to the snapshot.
+     * @param fileName      The name of the snapshot file to be created or overwritten.
+     * @throws IOException              If an error occurs while writing to the file.
+     * @throws IllegalArgumentException If the provided ProductSystem or fileName is null.
+     */
+    public void toBinaryProductSystem(ProductSystem productSystem, String fileName) throws IOException, IllegalArgumentException {
+        if (productSystem == null || fileName == null) {
+            throw new IllegalArgumentException("ProductSystem or fileName must not be null.");
+        }
+        if (CompressedFiles.isCompressed(fileName)) {
+            try (WritableByteChannel channel = Channels.newChannel(CompressedFiles.newOutputStream(fileName))) {
+                BinarySnapshot.write(productSystem, channel);
+            }
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            BinarySnapshot.write(productSystem, channel);
+        }
+    }
+
     /**
      * Writes Circularity Calculator data to a CSV (Comma-Separated Values) file.
-     * The method takes a CircularityCalculator object and a file name as input, generates a CSV string
-     * representation using the CircularityCalculator's toCsvString method, and writes it to the specified file.
+     * The method takes a CircularityCalculator object and a file name as input, and streams the rows of the
+     * CircularityCalculator's CSV representation to the specified file in UTF-8 through a buffered writer.
      *
      * <p>Before performing the write operation, the method checks that the provided CircularityCalculator
      * and file name are not null. If either is null, it throws an IllegalArgumentException.
      *
-     * <p>Uses a try-with-resources block to automatically close the FileWriter after writing.
+     * <p>Uses a try-with-resources block to automatically close the writer after writing.
      *
      * @param circularityCalculator The Circularity Calculator data to be written to the CSV file.
      * @param fileName              The name of the CSV file to be created or overwritten.
@@ -85,8 +171,8 @@ public class DataExporter {
         if (circularityCalculator == null || fileName == null) {
             throw new IllegalArgumentException("Circularity Calculator or fileName must not be null.");
         }
-        try (FileWriter writer = new FileWriter(fileName)) {
-            writer.write(circularityCalculator.toCsvString());
+        try (BufferedWriter writer = CompressedFiles.newWriter(fileName)) {
+            circularityCalculator.writeCsv(writer);
             System.out.println("Arquivo CSV criado com sucesso!");
 
         } catch (IOException e) {
@@ -94,4 +180,210 @@ public class DataExporter {
         }
     }
 
+    /**
+     * Writes the results of the Circularity Flows of several products to a columnar binary file, which
+     * {@link Parser#loadFromBinaryResults(String)} maps into memory to be scanned without parsing. See
+     * {@link CircularityResults} for the layout. The file is never compressed, so that it can be mapped.
+     *
+     * @param circularityCalculators The calculators whose Circularity Flows are written, one row per flow. The
+     *                               metrics not calculated yet are written as NaN.
+     * @param fileName               The name of the results file to be created or overwritten.
+     * @throws IOException              If an error occurs while writing to the file.
+     * @throws IllegalArgumentException If the provided calculators, a calculator, or fileName is null.
+     */
+    public void toBinaryCircularityResults(Collection<CircularityCalculator> circularityCalculators, String fileName) throws IOException, IllegalArgumentException {
+        if (circularityCalculators == null || fileName == null) {
+            throw new IllegalArgumentException("Circularity Calculators or fileName must not be null.");
+        }
+        for (CircularityCalculator circularityCalculator : circularityCalculators) {
+            if (circularityCalculator == null) {
+                throw new IllegalArgumentException("Circularity Calculators or fileName must not be null.");
+            }
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            CircularityResults.write(circularityCalculators, channel);
+        }
+    }
+
+    /**
+     * Writes the Circularity Calculator data of several products to one CSV file per product, named after the
+     * product, in the given directory. The text of each file is the same as the one written by
+     * {@link #toCsvCircularityCalculator(CircularityCalculator, String)}.
+     *
+     * <p>The CSV of each ProductSystem is serialized once, to a temporary file in the directory, and its bytes are
+     * copied into the file of every calculator using it, so it is never held in memory. The files are
+     * written concurrently on the given executor, whose number of threads bounds the number of files being
+     * written at once. Each file is first written to a temporary file in the same directory and then moved over
+     * the target, so a file is never seen half written; temporary files of failed writes are deleted.
+     *
+     * <p>Usage:
+     * {@code
+     * ExecutorService executor = Executors.newFixedThreadPool(4);
+     * LinkedList<Path> files = dataExporter.toCsvCircularityCalculators(calculators, "results", executor);
+     * }
+     *
+     * @param circularityCalculators The calculators to be exported, each for a different product.
+     * @param directory              The existing directory where the files are written.
+     * @param executor               The executor writing the files, or null to write them one after the other.
+     *                               It is not shut down.
+     * @return The files written, in the order of the calculators.
+     * @throws IOException              If an error occurs while writing a file; the other files are still written.
+     * @throws IllegalArgumentException If the calculators or directory are null, if a calculator or its product
+     *                                  name is null, if a product name does not name a file directly in the
+     *                                  directory, if two calculators have the same product name ignoring case,
+     *                                  or if a calculator has no Circularity Flows.
+     */
+    public LinkedList<Path> toCsvCircularityCalculators(Collection<CircularityCalculator> circularityCalculators, String directory,
+                                                        ExecutorService executor) throws IOException, IllegalArgumentException {
+        if (circularityCalculators == null || directory == null) {
+            throw new IllegalArgumentException("Circularity Calculators or directory must not be null.");
+        }
+        Path base = Path.of(directory);
+        // Case-insensitive, as two names differing only in case are the same file on some file systems
+        HashSet<String> productNames = new HashSet<>();
+        LinkedList<Path> files = new LinkedList<>();
+        for (CircularityCalculator circularityCalculator : circularityCalculators) {
+            if (circularityCalculator == null || circularityCalculator.getProductName() == null) {
+                throw new IllegalArgumentException("Circularity Calculator or product name must not be null.");
+            }
+            String productName = circularityCalculator.getProductName();
+            Path file = productFile(base, productName);
+            if (!productNames.add(productName.toLowerCase(Locale.ROOT))) {
+                throw new IllegalArgumentException("Duplicate product name: " + productName);
+            }
+            if (circularityCalculator.getCircularityFlows().isEmpty()) {
+                throw new IllegalArgumentException("Empty Circularity Flow list");
+            }
+            files.add(file);
+        }
+
+        Exception error;
+        // Serialize each ProductSystem once
+        IdentityHashMap<ProductSystem, Path> productSystems = new IdentityHashMap<>();
+        try {
+            for (CircularityCalculator circularityCalculator : circularityCalculators) {
+                ProductSystem productSystem = circularityCalculator.getProductSystem();
+                if (!productSystems.containsKey(productSystem)) {
+                    Path productSystemCsv = Files.createTempFile(base, "productSystem", ".tmp");
+                    productSystems.put(productSystem, productSystemCsv);
+                    try (BufferedWriter writer = Files.newBufferedWriter(productSystemCsv, StandardCharsets.UTF_8)) {
+                        productSystem.writeCsv(writer);
+                    }
+                }
+            }
+
+            LinkedList<Callable<Path>> tasks = new LinkedList<>();
+            Iterator<Path> fileIterator = files.iterator();
+            for (CircularityCalculator circularityCalculator : circularityCalculators) {
+                Path file = fileIterator.next();
+                Path productSystemCsv = productSystems.get(circularityCalculator.getProductSystem());
+                tasks.add(() -> {
+                    writeAtomically(file, circularityCalculator, productSystemCsv);
+                    return file;
+                });
+            }
+
+            error = run(tasks, executor);
+        } finally {
+            for (Path productSystemCsv : productSystems.values()) {
+                Files.deleteIfExists(productSystemCsv);
+            }
+        }
+        if (error instanceof IOException) {
+            throw (IOException) error;
+        }
+        if (error instanceof RuntimeException) {
+            throw (RuntimeException) error;
+        }
+        if (error != null) {
+            throw new IOException("Error writing to file", error);
+        }
+        return files;
+    }
+
+    /**
+     * Runs the tasks on the executor, or one after the other if it is null, waiting for all of them.
+     *
+     * @return The error of the first failing task, in task order, or null if none failed.
+     * @throws IOException If interrupted while waiting for the tasks.
+     */
+    private static Exception run(LinkedList<Callable<Path>> tasks, ExecutorService executor) throws IOException {
+        Exception error = null;
+        if (executor == null) {
+            for (Callable<Path> task : tasks) {
+                try {
+                    task.call();
+                } catch (Exception e) {
+                    error = error == null ? e : error;
+                }
+            }
+            return error;
+        }
+        LinkedList<Future<Path>> futures = new LinkedList<>();
+        for (Callable<Path> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        // Wait for every file before reporting the first error
+        for (Future<Path> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                error = error == null ? (Exception) e.getCause() : error;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while writing files", e);
+            }
+        }
+        return error;
+    }
+
+    /**
+     * Resolves the CSV file of a product in the directory.
+     *
+     * @throws IllegalArgumentException If the product name would place the file outside the directory or in one
+     *                                  of its subdirectories.
+     */
+    private static Path productFile(Path directory, String productName) throws IllegalArgumentException {
+        Path file;
+        try {
+            file = directory.resolve(productName + ".csv");
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Invalid product name: " + productName, e);
+        }
+        Path parent = file.toAbsolutePath().normalize().getParent();
+        if (!directory.toAbsolutePath().normalize().equals(parent)
+                || !file.getFileName().toString().equals(productName + ".csv")) {
+            throw new IllegalArgumentException("Invalid product name: " + productName);
+        }
+        return file;
+    }
+
+    /**
+     * Writes the CSV of a calculator to a temporary file next to the target, then moves it over the target.
+     *
+     * @param productSystemCsv The file holding the CSV of the ProductSystem of the calculator, in UTF-8, whose
+     *                         bytes are copied as they are.
+     */
+    private static void writeAtomically(Path file, CircularityCalculator circularityCalculator, Path productSystemCsv) throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        Path temporary = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (OutputStream outputStream = Files.newOutputStream(temporary);
+                 BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8))) {
+                circularityCalculator.writeCsv(writer, productSystemWriter -> {
+                    // The text written so far goes first
+                    productSystemWriter.flush();
+                    Files.copy(productSystemCsv, outputStream);
+                });
+            }
+            try {
+                Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
 }
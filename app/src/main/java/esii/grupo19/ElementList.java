@@ -0,0 +1,332 @@
+package esii.grupo19;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.ListIterator;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.UnaryOperator;
+
+/**
+ * The ElementList class is the list of flows or of processes of a ProductSystem, as returned by
+ * {@link ProductSystem#getFlows()} and {@link ProductSystem#getProcesses()}. It can be changed like any
+ * LinkedList, including through its iterators and sublists; after each change made that way, the ProductSystem
+ * is told so that its name and id indexes match the list again.
+ *
+ * <p>The ProductSystem changes the list with {@link #append}, {@link #delete} and {@link #deleteIf}, which do not
+ * tell it, since it updates its indexes itself.
+ *
+ * <p>Usage:
+ * {@code
+ * productSystem.getFlows().add(flow);   // productSystem.getFlowByName(flow.getName()) finds it
+ * }
+ */
+final class ElementList<E> extends LinkedList<E> {
+    private static final long serialVersionUID = 1L;
+    // Called after every change made through the LinkedList methods
+    private final transient Runnable changed;
+    // Depth of the changes in progress, so that a change made of others is reported once
+    private transient int changing;
+
+    ElementList(Runnable changed) {
+        this.changed = changed;
+    }
+
+    ElementList(Collection<? extends E> values, Runnable changed) {
+        this.changed = changed;
+        for (E value : values) {
+            super.add(value);
+        }
+    }
+
+    void append(E value) {
+        super.add(value);
+    }
+
+    boolean delete(E value) {
+        return super.remove(value);
+    }
+
+    /**
+     * Removes the elements matching the filter.
+     *
+     * @return The removed elements, in list order.
+     */
+    LinkedList<E> deleteIf(Predicate<? super E> filter) {
+        LinkedList<E> removed = new LinkedList<E>();
+        ListIterator<E> iterator = super.listIterator(0);
+        while (iterator.hasNext()) {
+            E value = iterator.next();
+            if (filter.test(value)) {
+                removed.add(value);
+                iterator.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * Runs a change, then reports it to the ProductSystem unless it is part of another change.
+     */
+    private <T> T change(Supplier<T> operation) {
+        changing++;
+        try {
+            return operation.get();
+        } finally {
+            changing--;
+            if (changing == 0 && changed != null) {
+                changed.run();
+            }
+        }
+    }
+
+    private void change(Runnable operation) {
+        change(() -> {
+            operation.run();
+            return null;
+        });
+    }
+
+    @Override
+    public boolean add(E value) {
+        return change(() -> super.add(value));
+    }
+
+    @Override
+    public void add(int index, E value) {
+        change(() -> super.add(index, value));
+    }
+
+    @Override
+    public boolean addAll(Collection<? extends E> values) {
+        return change(() -> super.addAll(values));
+    }
+
+    @Override
+    public boolean addAll(int index, Collection<? extends E> values) {
+        return change(() -> super.addAll(index, values));
+    }
+
+    @Override
+    public void addFirst(E value) {
+        change(() -> super.addFirst(value));
+    }
+
+    @Override
+    public void addLast(E value) {
+        change(() -> super.addLast(value));
+    }
+
+    @Override
+    public boolean offer(E value) {
+        return change(() -> super.offer(value));
+    }
+
+    @Override
+    public boolean offerFirst(E value) {
+        return change(() -> super.offerFirst(value));
+    }
+
+    @Override
+    public boolean offerLast(E value) {
+        return change(() -> super.offerLast(value));
+    }
+
+    @Override
+    public void push(E value) {
+        change(() -> super.push(value));
+    }
+
+    @Override
+    public E set(int index, E value) {
+        return change(() -> super.set(index, value));
+    }
+
+    @Override
+    public E remove() {
+        return change(() -> super.remove());
+    }
+
+    @Override
+    public E remove(int index) {
+        return change(() -> super.remove(index));
+    }
+
+    @Override
+    public boolean remove(Object value) {
+        return change(() -> super.remove(value));
+    }
+
+    @Override
+    public E removeFirst() {
+        return change(() -> super.removeFirst());
+    }
+
+    @Override
+    public E removeLast() {
+        return change(() -> super.removeLast());
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object value) {
+        return change(() -> super.removeFirstOccurrence(value));
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object value) {
+        return change(() -> super.removeLastOccurrence(value));
+    }
+
+    @Override
+    public E poll() {
+        return change(() -> super.poll());
+    }
+
+    @Override
+    public E pollFirst() {
+        return change(() -> super.pollFirst());
+    }
+
+    @Override
+    public E pollLast() {
+        return change(() -> super.pollLast());
+    }
+
+    @Override
+    public E pop() {
+        return change(() -> super.pop());
+    }
+
+    @Override
+    public void clear() {
+        change(() -> super.clear());
+    }
+
+    @Override
+    public boolean removeIf(Predicate<? super E> filter) {
+        return change(() -> super.removeIf(filter));
+    }
+
+    @Override
+    public boolean removeAll(Collection<?> values) {
+        return change(() -> super.removeAll(values));
+    }
+
+    @Override
+    public boolean retainAll(Collection<?> values) {
+        return change(() -> super.retainAll(values));
+    }
+
+    @Override
+    public void replaceAll(UnaryOperator<E> operator) {
+        change(() -> super.replaceAll(operator));
+    }
+
+    @Override
+    public void sort(Comparator<? super E> comparator) {
+        change(() -> super.sort(comparator));
+    }
+
+    @Override
+    protected void removeRange(int from, int to) {
+        change(() -> super.removeRange(from, to));
+    }
+
+    @Override
+    public ListIterator<E> listIterator(int index) {
+        return new ReportingIterator(super.listIterator(index));
+    }
+
+    @Override
+    public Iterator<E> descendingIterator() {
+        Iterator<E> iterator = super.descendingIterator();
+        return new Iterator<E>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public E next() {
+                return iterator.next();
+            }
+
+            @Override
+            public void remove() {
+                change(iterator::remove);
+            }
+        };
+    }
+
+    /**
+     * @return A new LinkedList with the elements, which can be changed without changing the ProductSystem.
+     */
+    @Override
+    public Object clone() {
+        return new LinkedList<E>(this);
+    }
+
+    /**
+     * List iterator reporting the changes made through it.
+     */
+    private final class ReportingIterator implements ListIterator<E> {
+        private final ListIterator<E> iterator;
+
+        ReportingIterator(ListIterator<E> iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return iterator.hasNext();
+        }
+
+        @Override
+        public E next() {
+            return iterator.next();
+        }
+
+        @Override
+        public boolean hasPrevious() {
+            return iterator.hasPrevious();
+        }
+
+        @Override
+        public E previous() {
+            return iterator.previous();
+        }
+
+        @Override
+        public int nextIndex() {
+            return iterator.nextIndex();
+        }
+
+        @Override
+        public int previousIndex() {
+            return iterator.previousIndex();
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super E> action) {
+            iterator.forEachRemaining(action);
+        }
+
+        @Override
+        public void remove() {
+            change(iterator::remove);
+        }
+
+        @Override
+        public void set(E value) {
+            change(() -> iterator.set(value));
+        }
+
+        @Override
+        public void add(E value) {
+            change(() -> iterator.add(value));
+        }
+    }
+}
@@ -9,6 +9,10 @@ public class Flow {
     private String name;
     private FlowType flowType;
     private String comment;
+    // ProductSystem this flow was last added to, which is notified of its changes
+    private ProductSystem productSystem;
+    // Number of changes made through the setters
+    private long version;
 
     /**
      * Constructs a new Flow object with the specified attributes.
@@ -22,7 +26,19 @@ public class Flow {
      * @param comment  Additional comments or information about the flow.
      */
     public Flow(String name, FlowType flowType, String comment) {
-        this.id = UUID.randomUUID();
+        this(UUID.randomUUID(), name, flowType, comment);
+    }
+
+    /**
+     * Constructs a Flow with a known id, used when loading a Flow that was saved before.
+     *
+     * @param id       The id of the flow.
+     * @param name     The distinctive name of the flow.
+     * @param flowType The nature of the flow.
+     * @param comment  Additional comments or information about the flow.
+     */
+    Flow(UUID id, String name, FlowType flowType, String comment) {
+        this.id = id;
         this.name = name;
         this.flowType = flowType;
         this.comment = comment;
@@ -38,6 +54,35 @@ public class Flow {
         return id;
     }
 
+    /**
+     * Gets the version of the Flow.
+     * <p>
+     * The version is increased by every setter, so it changes whenever the Flow changes.
+     *
+     * @return The number of changes made to the Flow.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    ProductSystem getProductSystem() {
+        return productSystem;
+    }
+
+    void setProductSystem(ProductSystem productSystem) {
+        this.productSystem = productSystem;
+    }
+
+    /**
+     * Records a change made through a setter and reports it to the ProductSystem of the Flow.
+     */
+    private void changed() {
+        version++;
+        if (productSystem != null) {
+            productSystem.fireFlowChanged(this);
+        }
+    }
+
     /**
      * Gets the name of the Flow.
      *
@@ -55,7 +100,12 @@ public class Flow {
      * @param name The new name to be assigned to the Flow.
      */
     public void setName(String name) {
+        String previous = this.name;
         this.name = name;
+        if (productSystem != null) {
+            productSystem.flowRenamed(this, previous);
+        }
+        changed();
     }
 
     /**
@@ -77,6 +127,7 @@ public class Flow {
 
     public void setType(FlowType flowType) {
         this.flowType = flowType;
+        changed();
     }
 
     /**
@@ -97,6 +148,7 @@ public class Flow {
      */
     public void setComment(String comment) {
         this.comment = comment;
+        changed();
     }
 
     /**
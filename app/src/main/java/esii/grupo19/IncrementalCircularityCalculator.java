@@ -0,0 +1,490 @@
+package esii.grupo19;
+
+import java.security.InvalidAlgorithmParameterException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.ListIterator;
+
+import javax.management.InvalidAttributeValueException;
+
+import enums.*;
+import exceptions.DivideByZeroException;
+
+/**
+ * The IncrementalCircularityCalculator class is a CircularityCalculator that keeps its Circularity Flows up to date
+ * while the ProductSystem is edited, instead of rebuilding them on every call to {@link #calculateCircularity()}.
+ * It registers itself as a {@link ProductSystemListener} of its ProductSystem, until it is closed.
+ *
+ * <p>For every Circularity Flow it keeps the process flows that contributed to it, in the order in which a full
+ * rebuild visits them. Adding a process flow to a process of the product adds its quantity to the matching
+ * V, R, Rr, Ri, Wc or Wf value; removing or changing one sums the contributions of its flow again. Only the flows changed since
+ * the last calculation have their MCIp calculated again, and the total is then added up from the stored values.
+ * The sums are made in the same order as a full rebuild, so the MCI, the Circularity Flows and the exceptions
+ * are the same as the ones of a CircularityCalculator.
+ *
+ * <p>Adding, removing or changing flows and processes, changing the flow, process or state of a process flow, and
+ * changes that would reorder the Circularity Flows, cause a full rebuild on the next calculation. Changes made
+ * directly to the lists returned by the getters are not reported, so {@link #invalidate()} must be called after them.
+ *
+ * <p>Usage:
+ * {@code
+ * IncrementalCircularityCalculator calculator = new IncrementalCircularityCalculator("productName", u, l, lavg, uavg, productSystem);
+ * double mci = calculator.calculateCircularity();
+ * process.addProcessFlow(processFlow);
+ * double updated = calculator.calculateCircularity();
+ * calculator.close();
+ * }
+ */
+public class IncrementalCircularityCalculator extends CircularityCalculator implements ProductSystemListener, AutoCloseable {
+    private final LinkedHashMap<String, Accumulator> accumulators;
+    // Position of each process of the product in the process list at the last rebuild
+    private final HashMap<Process, Integer> processOrder;
+    private CircularityAggregator aggregator;
+    private boolean invalidated;
+    // Whether this calculator stopped listening to its ProductSystem
+    private boolean closed;
+    // Parameters used for the stored MCIp values
+    private int calculatedU;
+    private int calculatedL;
+    private double calculatedLavg;
+    private double calculatedUavg;
+
+    public IncrementalCircularityCalculator(String productName, int u, int l, double lavg, double uavg, ProductSystem productSystem) {
+        super(productName, u, l, lavg, uavg, productSystem);
+        this.accumulators = new LinkedHashMap<>();
+        this.processOrder = new HashMap<>();
+        this.invalidated = true;
+        if (productSystem != null) {
+            productSystem.addListener(this);
+        }
+    }
+
+    @Override
+    public void setProductSystem(ProductSystem productSystem) {
+        if (getProductSystem() != null) {
+            getProductSystem().removeListener(this);
+        }
+        super.setProductSystem(productSystem);
+        if (productSystem != null) {
+            productSystem.addListener(this);
+        }
+        closed = false;
+        invalidate();
+    }
+
+    /**
+     * Stops listening to the changes of the ProductSystem, so that the ProductSystem no longer holds this
+     * calculator. Later calculations rebuild the Circularity Flows every time, like a CircularityCalculator,
+     * until a ProductSystem is set again.
+     */
+    @Override
+    public void close() {
+        if (getProductSystem() != null) {
+            getProductSystem().removeListener(this);
+        }
+        closed = true;
+        invalidate();
+    }
+
+    @Override
+    public void setProductName(String productName) {
+        super.setProductName(productName);
+        invalidate();
+    }
+
+    /**
+     * Discards the stored Circularity Flows, so the next calculation rebuilds them from the ProductSystem.
+     * Must be called after changing the lists returned by the getters of the ProductSystem or of its processes.
+     */
+    public void invalidate() {
+        invalidated = true;
+    }
+
+    /**
+     * Checks whether the next calculation rebuilds the Circularity Flows from the ProductSystem.
+     *
+     * @return {@code true} if the Circularity Flows will be rebuilt.
+     */
+    public boolean isInvalidated() {
+        return invalidated;
+    }
+
+    @Override
+    public void searchCircularityFlow() {
+        if (getProductName() == null) {
+            throw new IllegalArgumentException("Product name is null");
+        }
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        if (productSystem.getProcessCount() == 0) {
+            throw new IllegalArgumentException("Empty Process list");
+        }
+        rebuild();
+        publish();
+    }
+
+    @Override
+    public double calculateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        if (getProductName() == null) {
+            throw new IllegalArgumentException("Product name is null");
+        }
+        if (productSystem == null) {
+            throw new IllegalArgumentException("ProductSystem is null");
+        }
+        if (productSystem.getProcessCount() == 0) {
+            throw new IllegalArgumentException("Empty Process list");
+        }
+        if (productSystem.getFlowCount() == 0) {
+            throw new IllegalArgumentException("Empty Flow list");
+        }
+        if (invalidated || closed) {
+            rebuild();
+        }
+        publish();
+        if (calculatedU != getU() || calculatedL != getL()
+                || Double.compare(calculatedLavg, getLavg()) != 0 || Double.compare(calculatedUavg, getUavg()) != 0) {
+            for (Accumulator accumulator : accumulators.values()) {
+                accumulator.dirty = true;
+            }
+            calculatedU = getU();
+            calculatedL = getL();
+            calculatedLavg = getLavg();
+            calculatedUavg = getUavg();
+        }
+
+        double x = 0;
+        double y = 0;
+        CircularityKernel.Utility utility = getUtility();
+        for (Accumulator accumulator : accumulators.values()) {
+            if (accumulator.dirty) {
+                accumulator.evaluate(utility);
+            }
+            if (accumulator.error != null) {
+                rethrow(accumulator.error);
+            }
+            x += accumulator.weighted;
+            y += accumulator.m;
+        }
+        setResult(calculateCircularity(x, y));
+        return getResult();
+    }
+
+    @Override
+    public void flowAdded(Flow flow) {
+        invalidate();
+    }
+
+    @Override
+    public void flowRemoved(Flow flow) {
+        invalidate();
+    }
+
+    @Override
+    public void processAdded(Process process) {
+        invalidate();
+    }
+
+    @Override
+    public void processRemoved(Process process) {
+        invalidate();
+    }
+
+    @Override
+    public void processFlowAdded(Process process, ProcessFlow processFlow) {
+        if (invalidated || !isOfProduct(process)) {
+            return;
+        }
+        try {
+            addContribution(process, processFlow);
+        } catch (RuntimeException e) {
+            // Process flows edited through their setters can make the stored contributions invalid
+            invalidate();
+        }
+    }
+
+    @Override
+    public void processFlowRemoved(Process process, ProcessFlow processFlow) {
+        if (invalidated || !isOfProduct(process)) {
+            return;
+        }
+        try {
+            removeContribution(process, processFlow);
+        } catch (RuntimeException e) {
+            invalidate();
+        }
+    }
+
+    @Override
+    public void flowChanged(Flow flow) {
+        invalidate();
+    }
+
+    @Override
+    public void processChanged(Process process) {
+        invalidate();
+    }
+
+    @Override
+    public void processFlowChanged(ProcessFlow processFlow) {
+        if (invalidated) {
+            return;
+        }
+        try {
+            updateContribution(processFlow);
+        } catch (RuntimeException e) {
+            invalidate();
+        }
+    }
+
+    private void addContribution(Process process, ProcessFlow processFlow) {
+        Integer order = processOrder.get(process);
+        Flow flow;
+        ProcessType type;
+        try {
+            flow = aggregator.searchFlow(processFlow.getNameFlow());
+            if (flow.getType() == FlowType.energy) {
+                return;
+            }
+            type = aggregator.searchProcessType(processFlow);
+        } catch (IllegalArgumentException e) {
+            // Let the rebuild report the error
+            invalidate();
+            return;
+        }
+        if (order == null || processFlow.getState() == null
+                || (flow.getType() != FlowType.material && flow.getType() != FlowType.service)) {
+            invalidate();
+            return;
+        }
+        Accumulator accumulator = accumulators.get(flow.getName());
+        if (accumulator == null) {
+            // A new Circularity Flow goes last only if no other flow first appears after this process
+            for (Accumulator other : accumulators.values()) {
+                if (other.contributions.getFirst().order > order) {
+                    invalidate();
+                    return;
+                }
+            }
+            accumulator = new Accumulator(new CircularityFlow(flow.getName()));
+            accumulators.put(flow.getName(), accumulator);
+        }
+        // The process flow is the last one of its process, so it goes after every contribution up to its process
+        ListIterator<Contribution> iterator = accumulator.contributions.listIterator(accumulator.contributions.size());
+        boolean last = true;
+        while (iterator.hasPrevious()) {
+            if (iterator.previous().order <= order) {
+                iterator.next();
+                break;
+            }
+            last = false;
+        }
+        iterator.add(new Contribution(process, order, processFlow, type));
+        if (last) {
+            CircularityAggregator.accumulate(accumulator.flow, processFlow, type);
+        } else {
+            accumulator.sum();
+        }
+        accumulator.dirty = true;
+    }
+
+    private void removeContribution(Process process, ProcessFlow processFlow) {
+        if (process.getProcessFlows().isEmpty()) {
+            invalidate();
+            return;
+        }
+        Accumulator accumulator = accumulators.get(processFlow.getNameFlow());
+        if (accumulator == null) {
+            return;
+        }
+        Iterator<Contribution> iterator = accumulator.contributions.iterator();
+        boolean first = true;
+        while (iterator.hasNext()) {
+            Contribution contribution = iterator.next();
+            if (contribution.process == process && contribution.processFlow == processFlow) {
+                iterator.remove();
+                if (accumulator.contributions.isEmpty()) {
+                    accumulators.remove(processFlow.getNameFlow());
+                    if (accumulators.isEmpty()) {
+                        invalidate();
+                    }
+                } else if (first) {
+                    // The flow now first appears later, which may change the order of the Circularity Flows
+                    invalidate();
+                } else {
+                    accumulator.sum();
+                    accumulator.dirty = true;
+                }
+                return;
+            }
+            first = false;
+        }
+    }
+
+    private void updateContribution(ProcessFlow processFlow) {
+        LinkedList<Accumulator> changed = new LinkedList<>();
+        for (Accumulator accumulator : accumulators.values()) {
+            for (Contribution contribution : accumulator.contributions) {
+                if (contribution.processFlow != processFlow) {
+                    continue;
+                }
+                // Only the quantity, unit and direction can change without moving the contribution
+                if (!accumulator.flow.getFlowName().equals(processFlow.getNameFlow())
+                        || !contribution.nameProcess.equals(processFlow.getNameProcess())
+                        || processFlow.getState() == null) {
+                    invalidate();
+                    return;
+                }
+                changed.add(accumulator);
+                break;
+            }
+        }
+        if (changed.isEmpty()) {
+            // A process flow of the product that did not contribute, such as an energy flow, may contribute now
+            if (processFlow.isShared() || processOrder.containsKey(processFlow.getProcess())) {
+                invalidate();
+            }
+            return;
+        }
+        for (Accumulator accumulator : changed) {
+            accumulator.sum();
+            accumulator.dirty = true;
+        }
+    }
+
+    private boolean isOfProduct(Process process) {
+        return getProductName() != null && getProductName().equals(process.getProductName());
+    }
+
+    /**
+     * Rebuilds the Circularity Flows and their contributions from the ProductSystem, the same way as
+     * {@link CircularityAggregator#aggregate(String)}, and throws the same exceptions.
+     */
+    private void rebuild() {
+        invalidated = true;
+        accumulators.clear();
+        processOrder.clear();
+        aggregator = new CircularityAggregator(productSystem);
+        int order = 0;
+        for (Process process : aggregator.processes()) {
+            order++;
+            if (!process.getProductName().equals(getProductName())) {
+                continue;
+            }
+            processOrder.put(process, order);
+            if (process.getProcessFlows().isEmpty()) {
+                throw new IllegalArgumentException("Empty ProcessFlow list");
+            }
+            for (ProcessFlow processFlow : process.getProcessFlows()) {
+                Flow flow = aggregator.searchFlow(processFlow.getNameFlow());
+                if (flow.getType() == FlowType.material || flow.getType() == FlowType.service) {
+                    Accumulator accumulator = accumulators.get(flow.getName());
+                    if (accumulator == null) {
+                        accumulator = new Accumulator(new CircularityFlow(flow.getName()));
+                        accumulators.put(flow.getName(), accumulator);
+                    }
+                    ProcessType type = aggregator.searchProcessType(processFlow);
+                    CircularityAggregator.accumulate(accumulator.flow, processFlow, type);
+                    accumulator.contributions.add(new Contribution(process, order, processFlow, type));
+                } else if (flow.getType() != FlowType.energy) {
+                    throw new IllegalArgumentException("Invalid flow type");
+                }
+            }
+        }
+        if (accumulators.isEmpty()) {
+            throw new IllegalArgumentException("There are no processes with this name: " + getProductName());
+        }
+        invalidated = false;
+    }
+
+    /**
+     * Makes the current Circularity Flows available through {@link #getCircularityFlows()}.
+     */
+    private void publish() {
+        circularityFlows.clear();
+        for (Accumulator accumulator : accumulators.values()) {
+            circularityFlows.add(accumulator.flow);
+        }
+    }
+
+    private static void rethrow(Exception e) throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        if (e instanceof DivideByZeroException) {
+            throw (DivideByZeroException) e;
+        }
+        if (e instanceof InvalidAttributeValueException) {
+            throw (InvalidAttributeValueException) e;
+        }
+        if (e instanceof InvalidAlgorithmParameterException) {
+            throw (InvalidAlgorithmParameterException) e;
+        }
+        throw (RuntimeException) e;
+    }
+
+    /**
+     * A process flow added to a Circularity Flow, with the position of its process and the process type used.
+     */
+    private static class Contribution {
+        private final Process process;
+        private final int order;
+        private final ProcessFlow processFlow;
+        // Process name the type was looked up with
+        private final String nameProcess;
+        private final ProcessType type;
+
+        Contribution(Process process, int order, ProcessFlow processFlow, ProcessType type) {
+            this.process = process;
+            this.order = order;
+            this.processFlow = processFlow;
+            this.nameProcess = processFlow.getNameProcess();
+            this.type = type;
+        }
+    }
+
+    /**
+     * A Circularity Flow with its contributions and its last calculated MCIp and M, or the error raised by them.
+     */
+    private static class Accumulator {
+        private final CircularityFlow flow;
+        private final LinkedList<Contribution> contributions;
+        private boolean dirty;
+        private double weighted;
+        private double m;
+        private Exception error;
+
+        Accumulator(CircularityFlow flow) {
+            this.flow = flow;
+            this.contributions = new LinkedList<>();
+            this.dirty = true;
+        }
+
+        /**
+         * Sums the contributions again, in order.
+         */
+        void sum() {
+            flow.setV(0);
+            flow.setR(0);
+            flow.setRr(0);
+            flow.setRi(0);
+            flow.setWc(0);
+            flow.setWf(0);
+            flow.setUnit(null);
+            for (Contribution contribution : contributions) {
+                CircularityAggregator.accumulate(flow, contribution.processFlow, contribution.type);
+            }
+        }
+
+        void evaluate(CircularityKernel.Utility utility) {
+            try {
+                double mcip = flow.calculateMCIp(utility);
+                m = flow.getM();
+                weighted = mcip * m;
+                error = null;
+            } catch (DivideByZeroException | InvalidAttributeValueException | InvalidAlgorithmParameterException | RuntimeException e) {
+                error = e;
+            }
+            dirty = false;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package esii.grupo19;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.UUID;
+
+import enums.*;
+import org.json.simple.parser.ContentHandler;
+
+/**
+ * The JsonProductSystemHandler class builds a ProductSystem from the events of json-simple's streaming parser,
+ * for documents written by {@link ProductSystem#writeJson(java.io.Writer)}. Only the values of the flow, process,
+ * contact or process flow being read are kept; each one is added to the ProductSystem as soon as its object ends,
+ * so the document tree is never built in memory.
+ *
+ * <p>The stored ids are kept. A process flow whose id was already read, which happens when a process flow is
+ * shared by processes with the same name, is linked as the same ProcessFlow instance. Members with unknown
+ * names are ignored.
+ *
+ * <p>Usage:
+ * {@code
+ * JsonProductSystemHandler handler = new JsonProductSystemHandler();
+ * new JSONParser().parse(reader, handler);
+ * ProductSystem productSystem = handler.getProductSystem();
+ * }
+ */
+class JsonProductSystemHandler implements ContentHandler {
+    // Nesting depths of the objects of the document: root, flow or process, contact or process flow list, process flow
+    private static final int ROOT = 1;
+    private static final int ENTITY = 3;
+    private static final int CHILD = 4;
+    private static final int PROCESS_FLOW = 5;
+
+    private final ProductSystem productSystem;
+    private final HashMap<UUID, ProcessFlow> processFlowsById;
+    // Name of the current member of the object at each depth
+    private final String[] keys;
+    private int depth;
+    private HashMap<String, Object> entity;
+    private HashMap<String, Object> contact;
+    private boolean hasContact;
+    private HashMap<String, Object> processFlow;
+    private LinkedList<ProcessFlow> processFlows;
+
+    JsonProductSystemHandler() {
+        this.productSystem = new ProductSystem();
+        this.processFlowsById = new HashMap<>();
+        this.keys = new String[PROCESS_FLOW + 1];
+    }
+
+    /**
+     * Retrieves the ProductSystem built from the parsed document.
+     *
+     * @return The ProductSystem with every flow, process and process flow read so far.
+     */
+    ProductSystem getProductSystem() {
+        return productSystem;
+    }
+
+    @Override
+    public void startJSON() {
+        depth = 0;
+    }
+
+    @Override
+    public void endJSON() {
+    }
+
+    @Override
+    public boolean startObject() {
+        depth++;
+        if (depth == ENTITY && isIn("flows", "processes")) {
+            entity = new HashMap<>();
+            contact = null;
+            hasContact = false;
+            processFlows = new LinkedList<>();
+        } else if (depth == CHILD && entity != null && "contact".equals(keys[ENTITY])) {
+            contact = new HashMap<>();
+            hasContact = true;
+        } else if (depth == PROCESS_FLOW && entity != null && "processFlows".equals(keys[ENTITY])) {
+            processFlow = new HashMap<>();
+        }
+        setKey(null);
+        return true;
+    }
+
+    @Override
+    public boolean endObject() {
+        if (depth == PROCESS_FLOW && processFlow != null) {
+            processFlows.add(createProcessFlow(processFlow));
+            processFlow = null;
+        } else if (depth == ENTITY && entity != null) {
+            if ("flows".equals(keys[ROOT])) {
+                productSystem.addFlow(createFlow(entity));
+            } else {
+                Process process = createProcess(entity, hasContact ? createContact(contact) : null);
+                productSystem.addProcess(process);
+                for (ProcessFlow linked : processFlows) {
+                    process.addProcessFlow(linked);
+                }
+            }
+            entity = null;
+            processFlows = null;
+        }
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean startObjectEntry(String key) {
+        setKey(key);
+        return true;
+    }
+
+    @Override
+    public boolean endObjectEntry() {
+        return true;
+    }
+
+    @Override
+    public boolean startArray() {
+        depth++;
+        setKey(null);
+        return true;
+    }
+
+    @Override
+    public boolean endArray() {
+        depth--;
+        return true;
+    }
+
+    @Override
+    public boolean primitive(Object value) {
+        if (depth == ENTITY && entity != null) {
+            entity.put(keys[ENTITY], value);
+            if ("contact".equals(keys[ENTITY])) {
+                hasContact = value != null;
+            }
+        } else if (depth == CHILD && contact != null && "contact".equals(keys[ENTITY])) {
+            contact.put(keys[CHILD], value);
+        } else if (depth == PROCESS_FLOW && processFlow != null) {
+            processFlow.put(keys[PROCESS_FLOW], value);
+        }
+        return true;
+    }
+
+    private boolean isIn(String... sections) {
+        for (String section : sections) {
+            if (section.equals(keys[ROOT])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void setKey(String key) {
+        if (depth < keys.length) {
+            keys[depth] = key;
+        }
+    }
+
+    private Flow createFlow(HashMap<String, Object> values) {
+        UUID id = getId(values);
+        if (productSystem.getFlowById(id) != null) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+        return new Flow(id, getString(values, "name"), getEnum(values, "type", FlowType.class), getString(values, "comment"));
+    }
+
+    private Process createProcess(HashMap<String, Object> values, Contact contact) {
+        UUID id = getId(values);
+        if (productSystem.getProcessById(id) != null) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+        return new Process(id, getString(values, "name"), getString(values, "productName"),
+                getEnum(values, "processType", ProcessType.class), getString(values, "operator"),
+                getString(values, "location"), getString(values, "references"), contact, getString(values, "comment"));
+    }
+
+    private Contact createContact(HashMap<String, Object> values) {
+        return new Contact(getString(values, "name"), getString(values, "email"), getString(values, "phone"), getString(values, "adress"));
+    }
+
+    private ProcessFlow createProcessFlow(HashMap<String, Object> values) {
+        UUID id = getId(values);
+        ProcessFlow existing = processFlowsById.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        Object quantity = values.get("flowQuantity");
+        if (!(quantity instanceof Number)) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+        ProcessFlow created = new ProcessFlow(id, getString(values, "nameFlow"), getString(values, "nameProcess"),
+                ((Number) quantity).doubleValue(), getEnum(values, "unit", Unit.class),
+                getEnum(values, "ioflow", IOFlow.class), getEnum(values, "state", State.class));
+        processFlowsById.put(id, created);
+        return created;
+    }
+
+    /**
+     * Reads the stored id of an object, or creates a new one if the object has none.
+     */
+    private static UUID getId(HashMap<String, Object> values) {
+        Object id = values.get("id");
+        if (id == null) {
+            return UUID.randomUUID();
+        }
+        try {
+            return UUID.fromString(id.toString());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+    }
+
+    private static String getString(HashMap<String, Object> values, String key) {
+        Object value = values.get(key);
+        return value == null ? null : value.toString();
+    }
+
+    private static <E extends Enum<E>> E getEnum(HashMap<String, Object> values, String key, Class<E> type) {
+        Object value = values.get(key);
+        if (value == null) {
+            return null;
+        }
+        try {
+            return Enum.valueOf(type, value.toString());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package esii.grupo19;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import org.json.simple.JSONValue;
+
+/**
+ * The JsonWriter class writes a JSON document token by token to a Writer, without building it in memory first.
+ * It only keeps track of whether the current object or array already has members, so its memory use does not
+ * depend on the size of the document.
+ *
+ * <p>Strings are escaped with {@link JSONValue#escape(String)} and numbers are written the same way as json-simple
+ * writes them, so the values are the ones a json-simple {@code JSONObject} would produce.
+ *
+ * <p>Usage:
+ * {@code
+ * JsonWriter json = new JsonWriter(writer);
+ * json.beginObject();
+ * json.name("flows").beginArray();
+ * json.beginObject().name("name").value("plastic").endObject();
+ * json.endArray();
+ * json.endObject();
+ * }
+ */
+class JsonWriter {
+    private final Writer writer;
+    // Whether the object or array at each depth already has a member
+    private boolean[] hasMembers;
+    private int depth;
+    // Whether the last token written was a name, so the next value needs no separator
+    private boolean afterName;
+
+    JsonWriter(Writer writer) {
+        this.writer = writer;
+        this.hasMembers = new boolean[16];
+    }
+
+    JsonWriter beginObject() throws IOException {
+        open('{');
+        return this;
+    }
+
+    JsonWriter endObject() throws IOException {
+        close('}');
+        return this;
+    }
+
+    JsonWriter beginArray() throws IOException {
+        open('[');
+        return this;
+    }
+
+    JsonWriter endArray() throws IOException {
+        close(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     *
+     * @param name The name of the member.
+     * @return This writer.
+     * @throws IOException If an I/O error occurs.
+     */
+    JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        writer.write(':');
+        afterName = true;
+        return this;
+    }
+
+    /**
+     * Writes a string value, or {@code null} if the value is null.
+     */
+    JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            writer.write("null");
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    /**
+     * Writes the string form of a value, or {@code null} if the value is null.
+     */
+    JsonWriter value(Object value) throws IOException {
+        return value(value == null ? null : value.toString());
+    }
+
+    /**
+     * Writes a number value, or {@code null} if the value is not finite, as json-simple does.
+     */
+    JsonWriter value(double value) throws IOException {
+        separate();
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            writer.write("null");
+        } else {
+            writer.write(Double.toString(value));
+        }
+        return this;
+    }
+
+    void flush() throws IOException {
+        writer.flush();
+    }
+
+    private void open(char bracket) throws IOException {
+        separate();
+        writer.write(bracket);
+        if (++depth == hasMembers.length) {
+            boolean[] larger = new boolean[hasMembers.length * 2];
+            System.arraycopy(hasMembers, 0, larger, 0, hasMembers.length);
+            hasMembers = larger;
+        }
+        hasMembers[depth] = false;
+    }
+
+    private void close(char bracket) throws IOException {
+        if (depth == 0) {
+            throw new IllegalStateException("Nothing to close");
+        }
+        depth--;
+        writer.write(bracket);
+    }
+
+    /**
+     * Writes the comma between the members of an object or array, except for a value following its name.
+     */
+    private void separate() throws IOException {
+        if (afterName) {
+            afterName = false;
+            return;
+        }
+        if (hasMembers[depth]) {
+            writer.write(',');
+        }
+        hasMembers[depth] = true;
+    }
+
+    private void writeString(String value) throws IOException {
+        writer.write('"');
+        writer.write(JSONValue.escape(value));
+        writer.write('"');
+    }
+}
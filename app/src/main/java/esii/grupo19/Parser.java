@@ -2,9 +2,28 @@ package esii.grupo19;
 import enums.*;
 
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.CharArrayReader;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 
 /**
  * The Parser class provides methods for reading CSV files and creating a ProductSystem object
@@ -28,10 +47,35 @@ import java.io.IOException;
  *     <li>For Flows: flowName,flowType,comment</li>
  * </ul>
  *
+ * <p>ProcessFlows are linked to every process with the name they reference. A ProcessFlow may appear before its
+ * process: it is linked when the first process with that name is read, and dropped if no such process exists.
+ *
+ * <p>Lines are read with a {@link CsvTokenizer}, which splits them in place and parses the quantities directly
+ * from its buffer instead of creating an array of Strings for every line.
+ *
+ * <p>JSON files written by {@code ProductSystem.saveToJson} are read back with {@code loadFromJson}.
+ *
+ * <p>Binary snapshots written by {@code DataExporter.toBinaryProductSystem} are read with {@code loadFromBinary},
+ * and results written by {@code DataExporter.toBinaryCircularityResults} are mapped with {@code loadFromBinaryResults}.
+ *
+ * <p>Large files can be read with {@code loadFromCsvParallel}, which parses chunks of the file on several
+ * threads and produces the same ProductSystem.
+ *
+ * <p>Files whose name ends in {@code .gz} are decompressed with gzip while they are read, see {@link CompressedFiles}.
+ *
  * <p>Throws IllegalArgumentException if the file name is null, and IOException if an invalid number of columns
  * or invalid arguments are encountered during parsing.
  */
 public class Parser {
+    // Enum constants matched by the tokenizer, cached to avoid the copy made by values()
+    private static final ProcessType[] PROCESS_TYPES = ProcessType.values();
+    private static final FlowType[] FLOW_TYPES = FlowType.values();
+    private static final Unit[] UNITS = Unit.values();
+    private static final IOFlow[] IO_FLOWS = IOFlow.values();
+    private static final State[] STATES = State.values();
+    // Bounds of the size of the chunks read by loadFromCsvParallel
+    static final long MIN_CHUNK_SIZE = 1 << 20;
+    static final long MAX_CHUNK_SIZE = 64 << 20;
 
     /**
      * Reads a CSV file and returns its content as a String
@@ -43,78 +87,278 @@ public class Parser {
         if (fileName == null) {
             throw new IllegalArgumentException("File name must not be null.");
         }
-            ProductSystem productSystem = new ProductSystem();
-
-            try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
-                String line;
-
-                while ((line = reader.readLine()) != null) {
-                    String[] values = line.split(",");
-                    if (values.length == 11) {
-                        // Process
-                        try {
-                            String processName = values[0].trim();
-                            String productName = values[1].trim();
-                            ProcessType type = ProcessType.valueOf(values[2].trim());
-                            String operator = values[3].trim();
-                            String location = values[4].trim();
-                            String references = values[5].trim();
-                            String name = values[6].trim();
-                            String email = values[7].trim();
-                            String organization = values[8].trim();
-                            String address = values[9].trim();
-                            String comment = values[10].trim();
-                            Contact contact = new Contact(name, email, organization, address);
-                            Process process = new Process(processName, productName, type, operator, location, references, contact, comment);
-                            productSystem.addProcess(process);
-                        } catch (IllegalArgumentException e) {
-                            throw new IllegalArgumentException("Invalid arguments");
-                        }
-
-
-                    } else if (values.length == 6) {
-                        // ProcessFlow
-                        try {
-
-
-                            String flowName = values[0].trim();
-                            String processName = values[1].trim();
-                            double quantity = Double.parseDouble(values[2].trim());
-                            Unit unit = Unit.valueOf(values[3].trim());
-                            IOFlow ioFlow = IOFlow.valueOf(values[4].trim());
-                            State state = State.valueOf(values[5].trim());
-                            ProcessFlow processFlow = new ProcessFlow(flowName, processName, quantity, unit, ioFlow, state);
-                            for (Process process : productSystem.getProcesses()) {
-                                if (process.getName().equals(processName)) {
-                                    process.addProcessFlow(processFlow);
-                                }
-                            }
-                        } catch (IllegalArgumentException e) {
-                            throw new IllegalArgumentException("Invalid arguments");
-                        }
-
-                    } else if (values.length == 3) {
-                        // Flow
-                        try {
-
-
-                            String flowName = values[0].trim();
-                            FlowType flowType = FlowType.valueOf(values[1].trim());
-                            String comment = values[2].trim();
-                            Flow flow = new Flow(flowName, flowType, comment);
-                            productSystem.addFlow(flow);
-                        } catch (IllegalArgumentException e) {
-                            throw new IllegalArgumentException("Invalid arguments");
-                        }
-                    } else {
-                        throw new IOException("Invalid Number of lines");
-                    }
+        ProductSystemBuilder builder = new ProductSystemBuilder();
+
+        try (CsvTokenizer tokenizer = new CsvTokenizer(CompressedFiles.newReader(fileName))) {
+            while (tokenizer.nextRecord()) {
+                addRecord(builder, parseRecord(tokenizer));
+            }
+        }
+
+        return builder.build();
+    }
+
+    /**
+     * Reads a JSON file written by {@link ProductSystem#saveToJson(String)} and returns the ProductSystem it describes.
+     * The file is read with json-simple's streaming parser, so the document tree is never built in memory, and the
+     * ids stored in the file are kept.
+     *
+     * @param fileName name of the JSON file
+     * @return The ProductSystem described by the file.
+     * @throws IllegalArgumentException If the file name is null, or if a value of the file is invalid.
+     * @throws IOException              If the file cannot be read or is not valid JSON.
+     */
+    public ProductSystem loadFromJson(String fileName) throws IOException {
+        if (fileName == null) {
+            throw new IllegalArgumentException("File name must not be null.");
+        }
+        JsonProductSystemHandler handler = new JsonProductSystemHandler();
+        try (Reader reader = CompressedFiles.newReader(fileName)) {
+            new JSONParser().parse(reader, handler);
+        } catch (ParseException e) {
+            throw new IOException("Invalid JSON: " + e.getMessage(), e);
+        }
+        return handler.getProductSystem();
+    }
+
+    /**
+     * Reads a binary snapshot written by {@link DataExporter#toBinaryProductSystem(ProductSystem, String)} and returns
+     * the ProductSystem it holds, with its ids. The file is read sequentially through a single buffer.
+     *
+     * @param fileName name of the snapshot file
+     * @return The ProductSystem stored in the snapshot.
+     * @throws IllegalArgumentException If the file name is null.
+     * @throws IOException              If the file cannot be read, is not a snapshot, or has an unsupported version.
+     */
+    public ProductSystem loadFromBinary(String fileName) throws IOException {
+        if (fileName == null) {
+            throw new IllegalArgumentException("File name must not be null.");
+        }
+        if (CompressedFiles.isCompressed(fileName)) {
+            try (ReadableByteChannel channel = Channels.newChannel(CompressedFiles.newInputStream(fileName))) {
+                return BinarySnapshot.read(channel);
+            }
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            return BinarySnapshot.read(channel);
+        }
+    }
+
+    /**
+     * Maps a results file written by {@link DataExporter#toBinaryCircularityResults(java.util.Collection, String)}
+     * into memory. Only the names of the products and flows are decoded; the metrics are read in place.
+     *
+     * @param fileName name of the results file
+     * @return The results stored in the file.
+     * @throws IllegalArgumentException If the file name is null.
+     * @throws IOException              If the file cannot be read, does not hold results, or has an unsupported version.
+     */
+    public CircularityResults loadFromBinaryResults(String fileName) throws IOException {
+        if (fileName == null) {
+            throw new IllegalArgumentException("File name must not be null.");
+        }
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            return CircularityResults.read(channel);
+        }
+    }
+
+    /**
+     * Reads a CSV file in parallel on the common fork-join pool.
+     *
+     * @param fileName name of the CSV file
+     * @return The ProductSystem described by the file, the same as the one returned by {@link #loadFromCsv(String)}.
+     * @throws IOException If the file cannot be read or if a line has an invalid number of columns.
+     * @see #loadFromCsvParallel(String, ForkJoinPool)
+     */
+    public ProductSystem loadFromCsvParallel(String fileName) throws IOException {
+        return loadFromCsvParallel(fileName, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads a CSV file in parallel. The file is memory-mapped in newline-aligned chunks that are parsed on the
+     * given pool, and the parsed records are then merged into the ProductSystem in file order. The result and the
+     * exception thrown for an invalid line are the same as with {@link #loadFromCsv(String)}: when several lines
+     * are invalid, the error of the first one is thrown.
+     *
+     * <p>The file is decoded as UTF-8, like with {@link #loadFromCsv(String)}, which lets chunks be split on line
+     * terminator bytes. Compressed files are read sequentially.
+     *
+     * @param fileName name of the CSV file
+     * @param pool     The pool on which the chunks are parsed.
+     * @return The ProductSystem described by the file.
+     * @throws IllegalArgumentException If the file name or the pool is null, or if a line has invalid arguments.
+     * @throws IOException              If the file cannot be read or if a line has an invalid number of columns.
+     */
+    public ProductSystem loadFromCsvParallel(String fileName, ForkJoinPool pool) throws IOException {
+        if (fileName == null) {
+            throw new IllegalArgumentException("File name must not be null.");
+        }
+        if (pool == null) {
+            throw new IllegalArgumentException("Pool must not be null.");
+        }
+        if (CompressedFiles.isCompressed(fileName)) {
+            return loadFromCsv(fileName);
+        }
+        LinkedList<Callable<CsvChunk>> tasks = new LinkedList<>();
+        try (FileChannel channel = FileChannel.open(Path.of(fileName), StandardOpenOption.READ)) {
+            long size = channel.size();
+            long chunkSize = Math.min(MAX_CHUNK_SIZE, Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L)));
+            long start = 0;
+            while (start < size) {
+                long end = nextLineStart(channel, Math.min(size, start + chunkSize), size);
+                if (end - start > Integer.MAX_VALUE) {
+                    throw new IOException("Line too long");
                 }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                tasks.add(() -> parseChunk(buffer));
+                start = end;
             }
+        }
 
-            return productSystem;
+        ProductSystemBuilder builder = new ProductSystemBuilder();
+        for (Future<CsvChunk> future : pool.invokeAll(tasks)) {
+            CsvChunk chunk;
+            try {
+                chunk = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while parsing " + fileName);
+            } catch (ExecutionException e) {
+                throw new IOException(e.getCause());
+            }
+            for (Object record : chunk.records) {
+                addRecord(builder, record);
+            }
+            if (chunk.error instanceof IOException) {
+                throw (IOException) chunk.error;
+            }
+            if (chunk.error != null) {
+                throw (RuntimeException) chunk.error;
+            }
         }
+        return builder.build();
+    }
 
+    /**
+     * Finds the start of the line following the given position, that is the position after the next line terminator.
+     *
+     * @return The start of the next line, or the size of the file if there is no line terminator after the position.
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer window = ByteBuffer.allocate(8192);
+        boolean carriageReturn = false;
+        while (position < size) {
+            window.clear();
+            int read = channel.read(window, position);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                byte b = window.get(i);
+                if (carriageReturn) {
+                    return b == '\n' ? position + i + 1 : position + i;
+                }
+                if (b == '\n') {
+                    return position + i + 1;
+                }
+                carriageReturn = b == '\r';
+            }
+            position += read;
+        }
+        return size;
+    }
 
+    /**
+     * Decodes and parses a chunk of the file. Parsing stops at the first invalid line, whose error is kept
+     * with the records read before it.
+     */
+    private static CsvChunk parseChunk(MappedByteBuffer buffer) throws IOException {
+        CharBuffer chars = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE)
+                .decode(buffer);
+        CsvChunk chunk = new CsvChunk();
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(), chars.remaining()))) {
+            while (tokenizer.nextRecord()) {
+                chunk.records.add(parseRecord(tokenizer));
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            chunk.error = e;
+        }
+        return chunk;
     }
 
+    /**
+     * Creates the Process, ProcessFlow or Flow described by the current record of the tokenizer,
+     * according to its number of columns.
+     *
+     * @throws IllegalArgumentException If the record has invalid arguments.
+     * @throws IOException              If the record has an invalid number of columns.
+     */
+    private static Object parseRecord(CsvTokenizer tokenizer) throws IOException {
+        int columns = tokenizer.getFieldCount();
+        try {
+            if (columns == 11) {
+                // Process
+                String processName = tokenizer.getField(0);
+                String productName = tokenizer.getField(1);
+                ProcessType type = tokenizer.getEnum(2, PROCESS_TYPES);
+                String operator = tokenizer.getField(3);
+                String location = tokenizer.getField(4);
+                String references = tokenizer.getField(5);
+                String name = tokenizer.getField(6);
+                String email = tokenizer.getField(7);
+                String organization = tokenizer.getField(8);
+                String address = tokenizer.getField(9);
+                String comment = tokenizer.getField(10);
+                Contact contact = new Contact(name, email, organization, address);
+                return new Process(processName, productName, type, operator, location, references, contact, comment);
+            } else if (columns == 6) {
+                // ProcessFlow
+                String flowName = tokenizer.getField(0);
+                String processName = tokenizer.getField(1);
+                double quantity = tokenizer.getDouble(2);
+                Unit unit = tokenizer.getEnum(3, UNITS);
+                IOFlow ioFlow = tokenizer.getEnum(4, IO_FLOWS);
+                State state = tokenizer.getEnum(5, STATES);
+                return new ProcessFlow(flowName, processName, quantity, unit, ioFlow, state);
+            } else if (columns == 3) {
+                // Flow
+                String flowName = tokenizer.getField(0);
+                FlowType flowType = tokenizer.getEnum(1, FLOW_TYPES);
+                String comment = tokenizer.getField(2);
+                return new Flow(flowName, flowType, comment);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+        throw new IOException("Invalid Number of lines");
+    }
+
+    /**
+     * Adds a record created by {@link #parseRecord(CsvTokenizer)} to the ProductSystem being built.
+     *
+     * @throws IllegalArgumentException If the record cannot be added.
+     */
+    private static void addRecord(ProductSystemBuilder builder, Object record) {
+        try {
+            if (record instanceof Process) {
+                builder.addProcess((Process) record);
+            } else if (record instanceof ProcessFlow) {
+                builder.addProcessFlow((ProcessFlow) record);
+            } else {
+                builder.addFlow((Flow) record);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid arguments");
+        }
+    }
+
+    /**
+     * The records parsed from a chunk of a file, followed by the error of its first invalid line, if any.
+     */
+    private static class CsvChunk {
+        private final LinkedList<Object> records = new LinkedList<>();
+        private Exception error;
+    }
+}
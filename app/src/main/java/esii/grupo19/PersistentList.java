@@ -0,0 +1,143 @@
+package esii.grupo19;
+
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+/**
+ * The PersistentList class is an immutable list whose versions share their elements. Appending returns a new list
+ * in amortized constant time, writing the element after the last one in the array of this list when no other
+ * version has used that slot yet; every older version keeps its size and never reads past it. Removing copies the
+ * remaining elements into a new array.
+ *
+ * <p>A list can be read from any thread once it has been safely published, for instance through a volatile field.
+ * Lists are only meant to be appended to by one writer at a time. As a {@link java.util.Collection}, a list is
+ * read-only: its mutators throw {@link UnsupportedOperationException}.
+ *
+ * <p>Usage:
+ * {@code
+ * PersistentList<Flow> flows = PersistentList.empty();
+ * PersistentList<Flow> added = flows.append(flow);
+ * }
+ */
+final class PersistentList<E> extends AbstractCollection<E> {
+    private static final int MIN_CAPACITY = 8;
+    private static final PersistentList<Object> EMPTY = new PersistentList<>(new Object[0], 0, new AtomicInteger());
+
+    private final Object[] elements;
+    private final int size;
+    // Number of slots of the array already written, shared by every version over the same array
+    private final AtomicInteger filled;
+
+    private PersistentList(Object[] elements, int size, AtomicInteger filled) {
+        this.elements = elements;
+        this.size = size;
+        this.filled = filled;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <E> PersistentList<E> empty() {
+        return (PersistentList<E>) EMPTY;
+    }
+
+    /**
+     * Creates a list with the elements of an iterable, in iteration order.
+     */
+    static <E> PersistentList<E> of(Iterable<? extends E> values) {
+        PersistentList<E> list = empty();
+        for (E value : values) {
+            list = list.append(value);
+        }
+        return list;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @SuppressWarnings("unchecked")
+    E get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+        }
+        return (E) elements[index];
+    }
+
+    /**
+     * Returns a list with the element added at the end. This list is not changed.
+     */
+    PersistentList<E> append(E value) {
+        if (size < elements.length && filled.compareAndSet(size, size + 1)) {
+            elements[size] = value;
+            return new PersistentList<>(elements, size + 1, filled);
+        }
+        Object[] copy = new Object[Math.max(MIN_CAPACITY, size * 2)];
+        System.arraycopy(elements, 0, copy, 0, size);
+        copy[size] = value;
+        return new PersistentList<>(copy, size + 1, new AtomicInteger(size + 1));
+    }
+
+    /**
+     * Returns a list without the elements that match the filter, or this list if none matches.
+     */
+    PersistentList<E> without(Predicate<? super E> filter) {
+        Object[] copy = null;
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            E value = get(i);
+            if (filter.test(value)) {
+                if (copy == null) {
+                    copy = new Object[Math.max(MIN_CAPACITY, size)];
+                    System.arraycopy(elements, 0, copy, 0, i);
+                    kept = i;
+                }
+            } else if (copy != null) {
+                copy[kept++] = value;
+            }
+        }
+        if (copy == null) {
+            return this;
+        }
+        return new PersistentList<>(copy, kept, new AtomicInteger(kept));
+    }
+
+    /**
+     * Copies the elements into a new LinkedList, which the caller can change freely.
+     */
+    LinkedList<E> toLinkedList() {
+        LinkedList<E> list = new LinkedList<>();
+        for (E value : this) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    @Override
+    public Iterator<E> iterator() {
+        return new Iterator<E>() {
+            private int index;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public E next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return get(index++);
+            }
+        };
+    }
+}
@@ -2,6 +2,9 @@ package esii.grupo19;
 import enums.ProcessType;
 import exceptions.ElementNotFoundException;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.UUID;
 
@@ -16,9 +19,21 @@ public class Process implements ProcessADT {
     Contact contact;
     String comment;
     LinkedList<ProcessFlow> processFlows;
+    // ProductSystem this process was last added to, which is notified of its process flow changes
+    ProductSystem productSystem;
+    // Number of changes made through the setters and to the process flow list
+    long version;
 
 
     public Process(String name,String productName, ProcessType processType, String operator, String location, String references, Contact contact, String comment) {
+        this(UUID.randomUUID(), name, productName, processType, operator, location, references, contact, comment);
+    }
+
+    /**
+     * Constructs a Process with a known id, used when loading a Process that was saved before.
+     */
+    Process(UUID id, String name, String productName, ProcessType processType, String operator, String location, String references, Contact contact, String comment) {
+        this.id = id;
         this.name = name;
         this.productName = productName;
         this.processType = processType;
@@ -28,7 +43,6 @@ public class Process implements ProcessADT {
         this.contact = contact;
         this.comment = comment;
         this.processFlows = new LinkedList<ProcessFlow>();
-        this.id = UUID.randomUUID();
     }
 
 
@@ -38,10 +52,60 @@ public class Process implements ProcessADT {
         if(processFlow ==null){
             throw new IllegalArgumentException("Input is null");
         }
-        if(processFlows.contains(processFlow)){
+        // A process flow owned by this process is already in the list, and one that was never owned or shared
+        // is in no list at all, so the list is only scanned for process flows shared with other processes
+        if(processFlow.getProcess() == this
+                || ((processFlow.getProcess() != null || processFlow.isShared()) && processFlows.contains(processFlow))){
             throw new IllegalArgumentException("This Input already exists");
         }
+        claim(processFlow);
         this.processFlows.add(processFlow);
+        version++;
+        if (productSystem != null) {
+            processFlow.setProductSystem(productSystem);
+            productSystem.fireProcessFlowAdded(this, processFlow);
+        }
+    }
+
+    /**
+     * Retrieves the version of this Process, which is increased by every setter and by every change
+     * made to its process flow list through this Process.
+     *
+     * @return The number of changes made to this Process.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Records a change made through a setter and reports it to the ProductSystem of this Process.
+     */
+    private void changed() {
+        version++;
+        if (productSystem != null) {
+            productSystem.fireProcessChanged(this);
+        }
+    }
+
+    /**
+     * Records that a process flow was added to this process, making it the owner or marking the process flow as shared.
+     */
+    private void claim(ProcessFlow processFlow) {
+        if(processFlow.getProcess() == null){
+            processFlow.setProcess(this);
+        } else if(processFlow.getProcess() != this){
+            processFlow.setShared(true);
+        }
+    }
+
+    /**
+     * Detaches a process flow that is no longer in any process from the ProductSystem, so that its later changes
+     * are no longer reported there. A shared process flow may still be in another process, so it stays attached.
+     */
+    private void release(ProcessFlow processFlow) {
+        if (processFlow.getProcess() == null && !processFlow.isShared() && processFlow.getProductSystem() == productSystem) {
+            processFlow.setProductSystem(null);
+        }
     }
 
     @Override
@@ -54,16 +118,28 @@ public class Process implements ProcessADT {
             throw new IllegalArgumentException("Id must not be null.");
         }
 
-        ProcessFlow remove = null;
-        for (ProcessFlow processFlow : this.processFlows) {
+        LinkedList<ProcessFlow> removed = new LinkedList<ProcessFlow>();
+        Iterator<ProcessFlow> iterator = this.processFlows.iterator();
+        while (iterator.hasNext()) {
+            ProcessFlow processFlow = iterator.next();
             if(processFlow.getId().equals(id)){
-                remove = processFlow;
-                this.processFlows.remove(processFlow);
+                removed.add(processFlow);
+                iterator.remove();
+                if(processFlow.getProcess() == this){
+                    processFlow.setProcess(null);
+                }
+                release(processFlow);
             }
-        }if(remove == null){
+        }if(removed.isEmpty()){
             throw new ElementNotFoundException("ProcessFlow not found");
         }
-        return remove;
+        version++;
+        if (productSystem != null) {
+            for (ProcessFlow processFlow : removed) {
+                productSystem.fireProcessFlowRemoved(this, processFlow);
+            }
+        }
+        return removed.getLast();
     }
 
     @Override
@@ -99,6 +175,7 @@ public class Process implements ProcessADT {
      */
     public void setProductName(String productName) {
         this.productName = productName;
+        changed();
     }
 
     /**
@@ -120,6 +197,7 @@ public class Process implements ProcessADT {
      */
     public void setProcessType(ProcessType processType) {
         this.processType = processType;
+        changed();
     }
 
     /**
@@ -153,7 +231,12 @@ public class Process implements ProcessADT {
      * @param name A String representing the new name to be set for the Process.
      */
     public void setName(String name) {
+        String previous = this.name;
         this.name = name;
+        if (productSystem != null) {
+            productSystem.processRenamed(this, previous);
+        }
+        changed();
     }
 
 
@@ -178,6 +261,7 @@ public class Process implements ProcessADT {
      */
     public void setComment(String comment) {
         this.comment = comment;
+        changed();
     }
 
 
@@ -202,6 +286,7 @@ public class Process implements ProcessADT {
      */
     public void setContact(Contact contact) {
         this.contact = contact;
+        changed();
     }
 
 
@@ -215,6 +300,7 @@ public class Process implements ProcessADT {
      */
     public void setLocation(String location) {
         this.location = location;
+        changed();
     }
     /**
      * Retrieves the location associated with this Process.
@@ -248,6 +334,7 @@ public class Process implements ProcessADT {
      */
     public void setOperator(String operator) {
         this.operator = operator;
+        changed();
     }
 
     /**
@@ -269,6 +356,7 @@ public class Process implements ProcessADT {
      */
     public void setReferences(String references) {
         this.references = references;
+        changed();
     }
 
     /**
@@ -289,7 +377,73 @@ public class Process implements ProcessADT {
      * @param processFlows A LinkedList of ProcessFlow objects representing the new process flows to be set for the Process.
      */
     public void setProcessFlows(LinkedList<ProcessFlow> processFlows) {
+        LinkedList<ProcessFlow> previous = this.processFlows;
+        if (previous != null) {
+            for (ProcessFlow processFlow : previous) {
+                if (processFlow != null && processFlow.getProcess() == this) {
+                    processFlow.setProcess(null);
+                }
+            }
+        }
         this.processFlows = processFlows;
+        version++;
+        if (processFlows != null) {
+            for (ProcessFlow processFlow : processFlows) {
+                if (processFlow != null) {
+                    claim(processFlow);
+                    if (productSystem != null) {
+                        processFlow.setProductSystem(productSystem);
+                    }
+                }
+            }
+        }
+        if (previous != null) {
+            for (ProcessFlow processFlow : previous) {
+                if (processFlow != null) {
+                    release(processFlow);
+                }
+            }
+        }
+        if (productSystem != null) {
+            if (previous != null) {
+                for (ProcessFlow processFlow : previous) {
+                    productSystem.fireProcessFlowRemoved(this, processFlow);
+                }
+            }
+            if (processFlows != null) {
+                for (ProcessFlow processFlow : processFlows) {
+                    productSystem.fireProcessFlowAdded(this, processFlow);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the same text as {@link #toCSVString()} to a writer, one value at a time.
+     *
+     * @param writer The writer to which the process is written.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    void writeCsv(Writer writer) throws IOException {
+        writer.write(String.valueOf(name));
+        writer.write(',');
+        writer.write(String.valueOf(productName));
+        writer.write(',');
+        writer.write(String.valueOf(processType));
+        writer.write(',');
+        writer.write(String.valueOf(operator));
+        writer.write(',');
+        writer.write(String.valueOf(location));
+        writer.write(',');
+        writer.write(String.valueOf(references));
+        writer.write(',');
+        writer.write(contact.toCSVString());
+        writer.write(',');
+        writer.write(String.valueOf(comment));
+        writer.write(",\n");
+        for (ProcessFlow processFlow : processFlows) {
+            writer.write(processFlow.toCSVString());
+        }
     }
 
     public String toCSVString() {
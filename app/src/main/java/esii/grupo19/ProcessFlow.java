@@ -12,6 +12,14 @@ public class ProcessFlow {
     private Unit unit;
     private IOFlow ioflow;
     private State state;
+    // Process this process flow was first added to, used by Process to detect duplicates without a list scan
+    private Process process;
+    // Whether this process flow was ever added to more than one process
+    private boolean shared;
+    // ProductSystem this process flow was last linked to through a process, which is notified of its changes
+    private ProductSystem productSystem;
+    // Number of changes made through the setters
+    private long version;
 
     /**
      * @param nameFlow     Name of the flow to associate with the process
@@ -22,7 +30,14 @@ public class ProcessFlow {
      * @param state        State of the flow (virgin, recycled, waste).
      */
     public ProcessFlow(String nameFlow, String nameProcess, double flowQuantity, Unit unit, IOFlow ioflow, State state) {
-        this.id = UUID.randomUUID();
+        this(UUID.randomUUID(), nameFlow, nameProcess, flowQuantity, unit, ioflow, state);
+    }
+
+    /**
+     * Constructs a ProcessFlow with a known id, used when loading a ProcessFlow that was saved before.
+     */
+    ProcessFlow(UUID id, String nameFlow, String nameProcess, double flowQuantity, Unit unit, IOFlow ioflow, State state) {
+        this.id = id;
         this.nameFlow = nameFlow;
         this.nameProcess = nameProcess;
         this.flowQuantity = flowQuantity;
@@ -31,16 +46,71 @@ public class ProcessFlow {
         this.state = state;
     }
 
+    /**
+     * Retrieves the process this process flow was first added to with {@link Process#addProcessFlow(ProcessFlow)}.
+     *
+     * @return The owning process, or null if the process flow was never added or was removed from its owner.
+     */
+    Process getProcess() {
+        return process;
+    }
+
+    void setProcess(Process process) {
+        this.process = process;
+    }
+
+    /**
+     * Checks whether this process flow was ever added to more than one process, in which case its owner
+     * alone does not tell which processes hold it.
+     *
+     * @return {@code true} if the process flow was shared between processes.
+     */
+    boolean isShared() {
+        return shared;
+    }
+
+    void setShared(boolean shared) {
+        this.shared = shared;
+    }
+
     public UUID getId() {
         return id;
     }
 
+    /**
+     * Retrieves the version of this process flow, which is increased by every setter.
+     *
+     * @return The number of changes made to this process flow.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    ProductSystem getProductSystem() {
+        return productSystem;
+    }
+
+    void setProductSystem(ProductSystem productSystem) {
+        this.productSystem = productSystem;
+    }
+
+    /**
+     * Records a change made through a setter and reports it to the ProductSystem of this process flow.
+     */
+    private void changed() {
+        version++;
+        if (productSystem != null) {
+            productSystem.fireProcessFlowChanged(this);
+        }
+    }
+
     public String getNameFlow() {
         return nameFlow;
     }
 
     public void setNameFlow(String nameFlow) {
         this.nameFlow = nameFlow;
+        changed();
     }
 
     public String getNameProcess() {
@@ -49,6 +119,7 @@ public class ProcessFlow {
 
     public void setNameProcess(String nameProcess) {
         this.nameProcess = nameProcess;
+        changed();
     }
 
     public double getFlowQuantity() {
@@ -57,6 +128,7 @@ public class ProcessFlow {
 
     public void setFlowQuantity(double flowQuantity) {
         this.flowQuantity = flowQuantity;
+        changed();
     }
 
     public Unit getUnit() {
@@ -65,6 +137,7 @@ public class ProcessFlow {
 
     public void setUnit(Unit unit) {
         this.unit = unit;
+        changed();
     }
 
     public IOFlow getIOFlow() {
@@ -73,6 +146,7 @@ public class ProcessFlow {
 
     public void setIOFlow(IOFlow ioflow) {
         this.ioflow = ioflow;
+        changed();
     }
 
     public State getState() {
@@ -81,6 +155,7 @@ public class ProcessFlow {
 
     public void setState(State state) {
         this.state = state;
+        changed();
     }
 
     @Override
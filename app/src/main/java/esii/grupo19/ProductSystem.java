@@ -1,44 +1,522 @@
 package esii.grupo19;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import exceptions.ElementNotFoundException;
 
-import org.json.simple.JSONObject;
-import org.json.simple.JSONArray;
-
-import java.io.FileWriter;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
 
 
 public class ProductSystem {
 
     // The default directory where the files will be saved
     private static final String DEFAULT_DIRECTORY = System.getProperty("user.home");
-    private LinkedList<Flow> flows;
-    private LinkedList<Process> processes;
+    private ElementList<Flow> flows;
+    private ElementList<Process> processes;
+    // Hash indexes over the lists above, kept in step by every change; the lists keep the insertion order
+    private HashMap<UUID, Flow> flowsById;
+    private HashMap<String, Flow> flowsByName;
+    private HashMap<UUID, Process> processesById;
+    private HashMap<String, Process> processesByName;
+    private final CopyOnWriteArrayList<ProductSystemListener> listeners;
+    // Number of changes made to this ProductSystem, its flows, its processes and their process flows
+    private long version;
 
     public ProductSystem() {
-        this.flows = new LinkedList<Flow>();
-        this.processes = new LinkedList<Process>();
+        this.flows = new ElementList<Flow>(this::flowListChanged);
+        this.processes = new ElementList<Process>(this::processListChanged);
+        this.flowsById = new HashMap<UUID, Flow>();
+        this.flowsByName = new HashMap<String, Flow>();
+        this.processesById = new HashMap<UUID, Process>();
+        this.processesByName = new HashMap<String, Process>();
+        this.listeners = new CopyOnWriteArrayList<ProductSystemListener>();
     }
 
 
+    /**
+     * Retrieves the flows, in the order they were added.
+     *
+     * @return The list of flows of this ProductSystem. Changes made to it directly keep the name and id indexes
+     * up to date, in linear time, but are neither reported to the listeners nor counted by {@link #getVersion()};
+     * use {@link #addFlow(Flow)}, {@link #removeFlow(String)} and {@link #setFlows(LinkedList)} for that.
+     */
     public LinkedList<Flow> getFlows() {
         return this.flows;
     }
 
+    /**
+     * Replaces the flows with the ones of the given list, which is copied.
+     *
+     * @param flows The new flows. Must not be null.
+     * @throws IllegalArgumentException If the flows parameter is null.
+     */
     public void setFlows(LinkedList<Flow> flows) {
-        this.flows = flows;
+        if (flows == null) {
+            throw new IllegalArgumentException("Flows must not be null.");
+        }
+        ElementList<Flow> previous = this.flows;
+        for (Flow flow : previous) {
+            if (flow.getProductSystem() == this) {
+                flow.setProductSystem(null);
+            }
+        }
+        this.flows = new ElementList<Flow>(flows, this::flowListChanged);
+        reindexFlows();
+        for (Flow flow : this.flows) {
+            flow.setProductSystem(this);
+        }
+        for (Flow flow : previous) {
+            fireFlowRemoved(flow);
+        }
+        for (Flow flow : this.flows) {
+            fireFlowAdded(flow);
+        }
     }
 
-
+    /**
+     * Retrieves the processes, in the order they were added.
+     *
+     * @return The list of processes of this ProductSystem. Changes made to it directly keep the name and id
+     * indexes up to date, in linear time, but are neither reported to the listeners nor counted by
+     * {@link #getVersion()}; use {@link #addProcess(Process)}, {@link #removeProcess(String)} and
+     * {@link #setProcesses(LinkedList)} for that.
+     */
     public LinkedList<Process> getProcesses() {
         return this.processes;
     }
 
+    /**
+     * Replaces the processes with the ones of the given list, which is copied.
+     *
+     * @param processes The new processes. Must not be null.
+     * @throws IllegalArgumentException If the processes parameter is null.
+     */
     public void setProcesses(LinkedList<Process> processes) {
-        this.processes = processes;
+        if (processes == null) {
+            throw new IllegalArgumentException("Processes must not be null.");
+        }
+        ElementList<Process> previous = this.processes;
+        for (Process process : previous) {
+            release(process);
+        }
+        this.processes = new ElementList<Process>(processes, this::processListChanged);
+        reindexProcesses();
+        for (Process process : this.processes) {
+            link(process);
+        }
+        for (Process process : previous) {
+            fireProcessRemoved(process);
+        }
+        for (Process process : this.processes) {
+            fireProcessAdded(process);
+        }
+    }
+
+    /**
+     * @return The number of flows, without copying them in subclasses whose {@link #getFlows()} returns a copy.
+     */
+    public int getFlowCount() {
+        return this.flows.size();
+    }
+
+    /**
+     * @return The number of processes, without copying them in subclasses whose {@link #getProcesses()} returns
+     * a copy.
+     */
+    public int getProcessCount() {
+        return this.processes.size();
+    }
+
+    /**
+     * Takes a read-only snapshot of the flows and processes of this ProductSystem. The snapshot is not affected
+     * by later additions and removals, so it can be used for long calculations and exports while this
+     * ProductSystem keeps changing.
+     *
+     * <p>The lists of this ProductSystem are copied once; a {@link ConcurrentProductSystem} takes its snapshots in
+     * constant time.
+     *
+     * @return The snapshot, holding the same flow and process objects.
+     */
+    public ProductSystemSnapshot snapshot() {
+        return new ProductSystemSnapshot(PersistentList.of(flows), PersistentList.of(processes), getVersion());
+    }
+
+    /**
+     * The flows and processes written by an export, taken together.
+     */
+    record Contents(Collection<Flow> flows, Collection<Process> processes) {
+    }
+
+    /**
+     * Takes the flows and processes to be written by an export, without copying them. A ProductSystem is not
+     * thread-safe, so its own lists are returned; a {@link ConcurrentProductSystem} returns the lists published
+     * last, which no later change alters.
+     *
+     * @return The flows and processes of this ProductSystem.
+     */
+    Contents contents() {
+        return new Contents(flows, processes);
+    }
+
+    /**
+     * Registers a listener to be called after every change made to this ProductSystem or to its processes.
+     *
+     * @param listener The listener to be registered.
+     * @throws IllegalArgumentException If the listener is null.
+     */
+    public void addListener(ProductSystemListener listener) throws IllegalArgumentException {
+        if (listener == null) {
+            throw new IllegalArgumentException("Listener must not be null.");
+        }
+        listeners.add(listener);
+    }
+
+    /**
+     * Unregisters a listener.
+     *
+     * @param listener The listener to be unregistered.
+     * @return {@code true} if the listener was registered.
+     */
+    public boolean removeListener(ProductSystemListener listener) {
+        return listeners.remove(listener);
+    }
+
+    /**
+     * Retrieves the version of this ProductSystem, which changes whenever a flow, a process or a process flow
+     * is added, removed or changed through its setters. Two calls that return the same version see the same
+     * data, so results calculated from it can be reused.
+     *
+     * <p>Changes made directly to the lists returned by the getters are not counted.
+     *
+     * @return The number of changes made so far.
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Records a change made to this ProductSystem or to one of its elements.
+     */
+    void changed() {
+        version++;
+    }
+
+    void fireFlowAdded(Flow flow) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.flowAdded(flow);
+        }
+    }
+
+    void fireFlowRemoved(Flow flow) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.flowRemoved(flow);
+        }
+    }
+
+    void fireProcessAdded(Process process) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.processAdded(process);
+        }
+    }
+
+    void fireProcessRemoved(Process process) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.processRemoved(process);
+        }
+    }
+
+    void fireProcessFlowAdded(Process process, ProcessFlow processFlow) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.processFlowAdded(process, processFlow);
+        }
+    }
+
+    void fireProcessFlowRemoved(Process process, ProcessFlow processFlow) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.processFlowRemoved(process, processFlow);
+        }
+    }
+
+    void fireFlowChanged(Flow flow) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.flowChanged(flow);
+        }
+    }
+
+    void fireProcessChanged(Process process) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.processChanged(process);
+        }
+    }
+
+    void fireProcessFlowChanged(ProcessFlow processFlow) {
+        changed();
+        for (ProductSystemListener listener : listeners) {
+            listener.processFlowChanged(processFlow);
+        }
+    }
+
+    /**
+     * Attaches a process and its process flows to this ProductSystem, so that they report their changes here.
+     */
+    void link(Process process) {
+        process.productSystem = this;
+        if (process.getProcessFlows() != null) {
+            for (ProcessFlow processFlow : process.getProcessFlows()) {
+                if (processFlow != null) {
+                    processFlow.setProductSystem(this);
+                }
+            }
+        }
+    }
+
+    /**
+     * Detaches a process and the process flows only it holds from this ProductSystem, so that they no longer
+     * report their changes here. A shared process flow may still be in another process, so it stays attached.
+     */
+    void release(Process process) {
+        if (process.productSystem == this) {
+            process.productSystem = null;
+            if (process.getProcessFlows() != null) {
+                for (ProcessFlow processFlow : process.getProcessFlows()) {
+                    if (processFlow != null && !processFlow.isShared() && processFlow.getProductSystem() == this) {
+                        processFlow.setProductSystem(null);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Rebuilds the name and id indexes of the flows from the flow list.
+     * When several flows share a name, the name index keeps the first one.
+     */
+    private void reindexFlows() {
+        flowsById.clear();
+        flowsByName.clear();
+        for (Flow flow : flows) {
+            flowsById.put(flow.getId(), flow);
+            flowsByName.putIfAbsent(flow.getName(), flow);
+        }
+    }
+
+    /**
+     * Rebuilds the name and id indexes of the processes from the process list.
+     * When several processes share a name, the name index keeps the first one.
+     */
+    private void reindexProcesses() {
+        processesById.clear();
+        processesByName.clear();
+        for (Process process : processes) {
+            processesById.put(process.getId(), process);
+            processesByName.putIfAbsent(process.getName(), process);
+        }
+    }
+
+    /**
+     * Brings the indexes and the back-references of the flows in line with the flow list, after it was changed
+     * directly through {@link #getFlows()}.
+     */
+    private void flowListChanged() {
+        HashMap<UUID, Flow> previous = new HashMap<UUID, Flow>(flowsById);
+        reindexFlows();
+        for (Flow flow : flows) {
+            if (flow.getProductSystem() != this) {
+                flow.setProductSystem(this);
+            }
+        }
+        for (Flow flow : previous.values()) {
+            if (flowsById.get(flow.getId()) != flow && flow.getProductSystem() == this) {
+                flow.setProductSystem(null);
+            }
+        }
+    }
+
+    /**
+     * Brings the indexes and the back-references of the processes in line with the process list, after it was
+     * changed directly through {@link #getProcesses()}.
+     */
+    private void processListChanged() {
+        HashMap<UUID, Process> previous = new HashMap<UUID, Process>(processesById);
+        reindexProcesses();
+        for (Process process : processes) {
+            if (process.productSystem != this) {
+                link(process);
+            }
+        }
+        for (Process process : previous.values()) {
+            if (processesById.get(process.getId()) != process) {
+                release(process);
+            }
+        }
+    }
+
+    /**
+     * Removes a flow, already removed from the flow list, from the indexes. A name or id it shared with other
+     * flows is indexed again to the flow the index would hold after {@link #reindexFlows()}.
+     */
+    private void unindex(Flow flow) {
+        if (flowsByName.get(flow.getName()) == flow) {
+            flowsByName.remove(flow.getName());
+            Flow first = firstFlow(flow.getName());
+            if (first != null) {
+                flowsByName.put(first.getName(), first);
+            }
+        }
+        if (flowsById.get(flow.getId()) == flow) {
+            flowsById.remove(flow.getId());
+            for (Flow other : flows) {
+                if (other.getId().equals(flow.getId())) {
+                    flowsById.put(other.getId(), other);
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes a process, already removed from the process list, from the indexes. A name or id it shared with
+     * other processes is indexed again to the process the index would hold after {@link #reindexProcesses()}.
+     */
+    private void unindex(Process process) {
+        if (processesByName.get(process.getName()) == process) {
+            processesByName.remove(process.getName());
+            Process first = firstProcess(process.getName());
+            if (first != null) {
+                processesByName.put(first.getName(), first);
+            }
+        }
+        if (processesById.get(process.getId()) == process) {
+            processesById.remove(process.getId());
+            for (Process other : processes) {
+                if (other.getId().equals(process.getId())) {
+                    processesById.put(other.getId(), other);
+                }
+            }
+        }
+    }
+
+    private Flow firstFlow(String name) {
+        for (Flow flow : flows) {
+            if (Objects.equals(name, flow.getName())) {
+                return flow;
+            }
+        }
+        return null;
+    }
+
+    private Process firstProcess(String name) {
+        for (Process process : processes) {
+            if (Objects.equals(name, process.getName())) {
+                return process;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Updates the name index when a flow of this ProductSystem is renamed. Called by {@link Flow#setName(String)}
+     * before the change is reported. Takes linear time only when the flow shares a name with another flow.
+     */
+    void flowRenamed(Flow flow, String previous) {
+        if (previous != null && flowsByName.get(previous) == flow) {
+            flowsByName.remove(previous);
+            Flow first = firstFlow(previous);
+            if (first != null) {
+                flowsByName.put(previous, first);
+            }
+        }
+        if (flow.getName() != null) {
+            flowsByName.put(flow.getName(), flowsByName.containsKey(flow.getName()) ? firstFlow(flow.getName()) : flow);
+        }
+    }
+
+    /**
+     * Updates the name index when a process of this ProductSystem is renamed. Called by
+     * {@link Process#setName(String)} before the change is reported. Takes linear time only when the process
+     * shares a name with another process.
+     */
+    void processRenamed(Process process, String previous) {
+        if (previous != null && processesByName.get(previous) == process) {
+            processesByName.remove(previous);
+            Process first = firstProcess(previous);
+            if (first != null) {
+                processesByName.put(previous, first);
+            }
+        }
+        if (process.getName() != null) {
+            processesByName.put(process.getName(), processesByName.containsKey(process.getName()) ? firstProcess(process.getName()) : process);
+        }
+    }
+
+    /**
+     * Retrieves the first flow with the specified name, from the name index, in constant time.
+     * The index follows the flows renamed after being added.
+     *
+     * @param name The name of the flow. Must not be null.
+     * @return The first flow with the specified name, or null if there is none.
+     * @throws IllegalArgumentException If the name parameter is null.
+     */
+    public Flow getFlowByName(String name) throws IllegalArgumentException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null.");
+        }
+        return flowsByName.get(name);
+    }
+
+    /**
+     * Retrieves the first process with the specified name, from the name index, in constant time.
+     * The index follows the processes renamed after being added.
+     *
+     * @param name The name of the process. Must not be null.
+     * @return The first process with the specified name, or null if there is none.
+     * @throws IllegalArgumentException If the name parameter is null.
+     */
+    public Process getProcessByName(String name) throws IllegalArgumentException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null.");
+        }
+        return processesByName.get(name);
+    }
+
+    /**
+     * Retrieves the flow with the specified id.
+     *
+     * @param id The id of the flow. Must not be null.
+     * @return The flow with the specified id, or null if there is none.
+     * @throws IllegalArgumentException If the id parameter is null.
+     */
+    public Flow getFlowById(UUID id) throws IllegalArgumentException {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must not be null.");
+        }
+        return flowsById.get(id);
+    }
+
+    /**
+     * Retrieves the process with the specified id.
+     *
+     * @param id The id of the process. Must not be null.
+     * @return The process with the specified id, or null if there is none.
+     * @throws IllegalArgumentException If the id parameter is null.
+     */
+    public Process getProcessById(UUID id) throws IllegalArgumentException {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must not be null.");
+        }
+        return processesById.get(id);
     }
 
     /**
@@ -52,7 +530,7 @@ public class ProductSystem {
     public String listAllFlows() {
         StringBuilder flowNames = new StringBuilder();
 
-        for (Flow flow : this.flows) {
+        for (Flow flow : getFlows()) {
             flowNames.append(flow.getName()).append("\n");
         }
 
@@ -70,7 +548,7 @@ public class ProductSystem {
     public String listAllProcesses() {
         StringBuilder processNames = new StringBuilder();
 
-        for (Process process : this.processes) {
+        for (Process process : getProcesses()) {
             processNames.append(process.getName()).append("\n");
         }
 
@@ -90,12 +568,16 @@ public class ProductSystem {
             throw new IllegalArgumentException("Flow must not be null.");
         }
 
-        // Check if the flow already exists in the linked list
-        if (this.flows.contains(flow)) {
+        // Check if the flow already exists, using the id index instead of scanning the list
+        if (this.flowsById.get(flow.getId()) == flow) {
             throw new IllegalArgumentException("Flow already exists.");
         }
 
-        this.flows.add(flow);
+        this.flows.append(flow);
+        this.flowsById.put(flow.getId(), flow);
+        this.flowsByName.putIfAbsent(flow.getName(), flow);
+        flow.setProductSystem(this);
+        fireFlowAdded(flow);
 
     }
 
@@ -112,12 +594,16 @@ public class ProductSystem {
             throw new IllegalArgumentException("Process must not be null.");
         }
 
-        // Check if the process already exists in the linked list
-        if (this.processes.contains(process)) {
+        // Check if the process already exists, using the id index instead of scanning the list
+        if (this.processesById.get(process.getId()) == process) {
             throw new IllegalArgumentException("Process already exists.");
         }
 
-        this.processes.add(process);
+        this.processes.append(process);
+        this.processesById.put(process.getId(), process);
+        this.processesByName.putIfAbsent(process.getName(), process);
+        link(process);
+        fireProcessAdded(process);
 
     }
 
@@ -141,18 +627,21 @@ public class ProductSystem {
         if (name == null) {
             throw new IllegalArgumentException("Name must not be null.");
         }
-        Flow removed = null;
-        for (Flow flow : this.flows) {
-            if (flow.getName().equals(name)) {
-                removed = flow;
-                this.flows.remove(flow);
+        LinkedList<Flow> removed = this.flows.deleteIf(flow -> flow.getName().equals(name));
+        if (removed.isEmpty()) {
+            throw new ElementNotFoundException("Flow not found");
+        }
+        for (Flow flow : removed) {
+            unindex(flow);
+            if (flow.getProductSystem() == this) {
+                flow.setProductSystem(null);
             }
         }
-        if (removed == null) {
-            throw new ElementNotFoundException("Flow not found");
+        for (Flow flow : removed) {
+            fireFlowRemoved(flow);
         }
 
-        return removed;
+        return removed.getLast();
     }
 
     /**
@@ -175,19 +664,59 @@ public class ProductSystem {
         if (name == null) {
             throw new IllegalArgumentException("Name must not be null.");
         }
-        Process removed = null;
-        for (Process process : this.processes) {
-            if (process.getName().equals(name)) {
-                removed = process;
-                this.processes.remove(process);
+        LinkedList<Process> removed = this.processes.deleteIf(process -> process.getName().equals(name));
+        if (removed.isEmpty()) {
+            throw new ElementNotFoundException("Process not found");
+        }
+        for (Process process : removed) {
+            unindex(process);
+            release(process);
+        }
+        for (Process process : removed) {
+            fireProcessRemoved(process);
+        }
 
-            }
+        return removed.getLast();
+    }
+
+    /**
+     * Removes the flow with the specified id, leaving other flows with the same name in place.
+     * Used by {@link ProductSystemJournal} to replay the removals it recorded.
+     *
+     * @param id The id of the flow to be removed.
+     * @return The removed flow, or null if there is no flow with the specified id.
+     */
+    Flow removeFlowById(UUID id) {
+        Flow flow = this.flowsById.get(id);
+        if (flow == null) {
+            return null;
         }
-        if (removed == null) {
-            throw new ElementNotFoundException("Process not found");
+        this.flows.delete(flow);
+        unindex(flow);
+        if (flow.getProductSystem() == this) {
+            flow.setProductSystem(null);
         }
+        fireFlowRemoved(flow);
+        return flow;
+    }
 
-        return removed;
+    /**
+     * Removes the process with the specified id, leaving other processes with the same name in place.
+     * Used by {@link ProductSystemJournal} to replay the removals it recorded.
+     *
+     * @param id The id of the process to be removed.
+     * @return The removed process, or null if there is no process with the specified id.
+     */
+    Process removeProcessById(UUID id) {
+        Process process = this.processesById.get(id);
+        if (process == null) {
+            return null;
+        }
+        this.processes.delete(process);
+        unindex(process);
+        release(process);
+        fireProcessRemoved(process);
+        return process;
     }
 
     /**
@@ -206,96 +735,131 @@ public class ProductSystem {
     }
 
     /**
-     * Saves the data of the ProductSystem to a JSON file.
+     * Saves the data of the ProductSystem to a JSON file, in UTF-8 whatever the platform charset, compressing it
+     * with gzip when its name ends in ".gz".
      *
      * @param filePath The path to the JSON file where the data will be saved.
      * @throws IOException If an I/O error occurs while writing to the file.
      */
     public void saveToJson(String filePath) throws IOException {
-        // Create the main JSON object to hold the data
-        JSONObject jsonObject = new JSONObject();
+        try (BufferedWriter writer = CompressedFiles.newWriter(filePath)) {
+            writeJson(writer);
+        }
+    }
 
-        // Create and populate the JSON array for flows
-        JSONArray flowArray = new JSONArray();
-        for (Flow flow : flows) {
-            JSONObject flowObject = new JSONObject();
-            flowObject.put("id", flow.getId());
-            flowObject.put("name", flow.getName());
-            flowObject.put("comment", flow.getComment());
-            flowObject.put("type", flow.getType().toString());
-            flowArray.add(flowObject);
+    /**
+     * Writes the data of the ProductSystem as a JSON document to the given writer. The document is written
+     * incrementally, one value at a time, so no representation of the whole document is built in memory.
+     *
+     * <p>The document has a {@code flows} array and a {@code processes} array; each process holds its
+     * {@code contact} object and its {@code processFlows} array. Ids are written as strings.
+     *
+     * @param writer The writer to which the JSON document is written. It is flushed but not closed.
+     * @throws IOException If an I/O error occurs while writing.
+     */
+    public void writeJson(Writer writer) throws IOException {
+        Contents contents = contents();
+        JsonWriter json = new JsonWriter(writer);
+        json.beginObject();
+
+        json.name("flows").beginArray();
+        for (Flow flow : contents.flows()) {
+            json.beginObject();
+            json.name("id").value(flow.getId());
+            json.name("name").value(flow.getName());
+            json.name("comment").value(flow.getComment());
+            json.name("type").value(flow.getType());
+            json.endObject();
         }
-        jsonObject.put("flows", flowArray);
+        json.endArray();
+
+        json.name("processes").beginArray();
+        for (Process process : contents.processes()) {
+            json.beginObject();
+            json.name("id").value(process.getId());
+            json.name("name").value(process.getName());
+            json.name("productName").value(process.getProductName());
+            json.name("operator").value(process.getOperator());
+            json.name("processType").value(process.getProcessType());
+            json.name("location").value(process.getLocation());
+            json.name("references").value(process.getReferences());
+            json.name("comment").value(process.getComment());
+
+            json.name("contact");
+            Contact contact = process.getContact();
+            if (contact == null) {
+                json.value((String) null);
+            } else {
+                json.beginObject();
+                json.name("name").value(contact.getName());
+                json.name("email").value(contact.getEmail());
+                json.name("phone").value(contact.getPhone());
+                json.name("adress").value(contact.getAddress());
+                json.endObject();
+            }
 
-        // Create and populate the JSON array for processes
-        JSONArray processArray = new JSONArray();
-        for (Process process : processes) {
-            JSONObject processObject = new JSONObject();
-            processObject.put("id", process.getId());
-            processObject.put("name", process.getName());
-            processObject.put("productName", process.getProductName());
-            processObject.put("operator", process.getOperator());
-            processObject.put("processType", process.getProcessType().toString());
-            processObject.put("location", process.getLocation());
-            processObject.put("references", process.getReferences());
-            processObject.put("comment", process.getComment());
-
-            // Create and populate the JSON object for contact
-            JSONObject contactObject = new JSONObject();
-            contactObject.put("name", process.getContact().getName());
-            contactObject.put("email", process.getContact().getEmail());
-            contactObject.put("phone", process.getContact().getPhone());
-            contactObject.put("adress", process.getContact().getAddress());
-            processObject.put("contact", contactObject);
-
-            // Create and populate the JSON array for process flows
-            JSONArray processFlowsArray = new JSONArray();
+            json.name("processFlows").beginArray();
             for (ProcessFlow processFlow : process.getProcessFlows()) {
-                JSONObject processFlowObject = new JSONObject();
-                processFlowObject.put("id", processFlow.getId());
-                processFlowObject.put("nameFlow", processFlow.getNameFlow());
-                processFlowObject.put("nameProcess", processFlow.getNameProcess());
-                processFlowObject.put("flowQuantity", processFlow.getFlowQuantity());
-                processFlowObject.put("unit", processFlow.getUnit().toString());
-                processFlowObject.put("ioflow", processFlow.getIOFlow().toString());
-                processFlowObject.put("state", processFlow.getState().toString());
-                processFlowsArray.add(processFlowObject);
+                json.beginObject();
+                json.name("id").value(processFlow.getId());
+                json.name("nameFlow").value(processFlow.getNameFlow());
+                json.name("nameProcess").value(processFlow.getNameProcess());
+                json.name("flowQuantity").value(processFlow.getFlowQuantity());
+                json.name("unit").value(processFlow.getUnit());
+                json.name("ioflow").value(processFlow.getIOFlow());
+                json.name("state").value(processFlow.getState());
+                json.endObject();
             }
-            processObject.put("processFlows", processFlowsArray);
+            json.endArray();
 
-            processArray.add(processObject);
+            json.endObject();
         }
-        jsonObject.put("processes", processArray);
+        json.endArray();
 
-        // Write the JSON data to the specified file
-        try (FileWriter fileWriter = new FileWriter(filePath)) {
-            fileWriter.write(jsonObject.toJSONString());
-        }
+        json.endObject();
+        json.flush();
     }
 
     /**
-     * Generates a CSV (Comma-Separated Values) string representation of the ProductSystem.
-     * The CSV string includes details such as flows and processes contained within the ProductSystem.
-     *
-     * <p>This method iterates over the list of flows and processes, invoking their respective toCSVString methods,
-     * and appending the generated CSV strings to a StringBuilder. The resulting CSV string represents the entire
-     * ProductSystem's information in a structured format.
+     * Writes the CSV (Comma-Separated Values) representation of the ProductSystem to the given writer, one row
+     * at a time, so no representation of the whole ProductSystem is built in memory. The text is the same as
+     * the one returned by {@link #toCsvString()}.
      *
-     * @return The generated CSV string representing the ProductSystem.
+     * @param writer The writer to which the CSV rows are written. It is flushed but not closed.
+     * @throws IOException If an I/O error occurs while writing.
      */
-    protected String toCsvString() {
-        StringBuilder csvString = new StringBuilder();
+    public void writeCsv(Writer writer) throws IOException {
+        Contents contents = contents();
 
         // Escrever objetos da classe Flow
-        for (Flow flow : flows) {
-            csvString.append(flow.toCSVString());
+        for (Flow flow : contents.flows()) {
+            writer.write(flow.toCSVString());
         }
 
         // Escrever objetos da classe Process
-        for (Process process : processes) {
-            csvString.append(process.toCSVString());
+        for (Process process : contents.processes()) {
+            process.writeCsv(writer);
         }
+        writer.flush();
+    }
 
+    /**
+     * Generates a CSV (Comma-Separated Values) string representation of the ProductSystem.
+     * The CSV string includes details such as flows and processes contained within the ProductSystem.
+     *
+     * <p>This method writes the flows and processes with {@link #writeCsv(Writer)} to a string. Use that method
+     * directly to export large ProductSystems.
+     *
+     * @return The generated CSV string representing the ProductSystem.
+     */
+    protected String toCsvString() {
+        StringWriter csvString = new StringWriter();
+        try {
+            writeCsv(csvString);
+        } catch (IOException e) {
+            // A StringWriter does not throw
+            throw new UncheckedIOException(e);
+        }
         return csvString.toString();
     }
 }
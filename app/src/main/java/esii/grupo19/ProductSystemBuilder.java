@@ -0,0 +1,85 @@
+package esii.grupo19;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+
+/**
+ * The ProductSystemBuilder class assembles a ProductSystem from records read one at a time, as done by the
+ * {@link Parser}. Processes are indexed by name as they are added, so linking a ProcessFlow to its processes
+ * is a single hash lookup instead of a scan over every process of the ProductSystem.
+ *
+ * <p>A ProcessFlow is linked to every process added so far with the name it references. When no such process
+ * exists yet, the link is buffered and resolved when the first process with that name is added, keeping the
+ * order in which the process flows were read. Links whose process is never added are dropped by {@link #build()}.
+ *
+ * <p>Usage:
+ * {@code
+ * ProductSystemBuilder builder = new ProductSystemBuilder();
+ * builder.addProcessFlow(processFlow);
+ * builder.addProcess(process);
+ * ProductSystem productSystem = builder.build();
+ * }
+ */
+class ProductSystemBuilder {
+    private final ProductSystem productSystem;
+    private final HashMap<String, LinkedList<Process>> processesByName;
+    private final HashMap<String, LinkedList<ProcessFlow>> unresolvedProcessFlows;
+
+    ProductSystemBuilder() {
+        this.productSystem = new ProductSystem();
+        this.processesByName = new HashMap<>();
+        this.unresolvedProcessFlows = new HashMap<>();
+    }
+
+    /**
+     * Adds a flow to the ProductSystem being built.
+     *
+     * @param flow The flow to be added.
+     */
+    void addFlow(Flow flow) {
+        productSystem.addFlow(flow);
+    }
+
+    /**
+     * Adds a process to the ProductSystem being built and links the buffered process flows that reference its name.
+     *
+     * @param process The process to be added.
+     */
+    void addProcess(Process process) {
+        productSystem.addProcess(process);
+        processesByName.computeIfAbsent(process.getName(), k -> new LinkedList<>()).add(process);
+        LinkedList<ProcessFlow> unresolved = unresolvedProcessFlows.remove(process.getName());
+        if (unresolved != null) {
+            for (ProcessFlow processFlow : unresolved) {
+                process.addProcessFlow(processFlow);
+            }
+        }
+    }
+
+    /**
+     * Links a process flow to every process added so far with the name it references, or buffers it until
+     * such a process is added.
+     *
+     * @param processFlow The process flow to be linked.
+     */
+    void addProcessFlow(ProcessFlow processFlow) {
+        LinkedList<Process> processes = processesByName.get(processFlow.getNameProcess());
+        if (processes == null) {
+            unresolvedProcessFlows.computeIfAbsent(processFlow.getNameProcess(), k -> new LinkedList<>()).add(processFlow);
+            return;
+        }
+        for (Process process : processes) {
+            process.addProcessFlow(processFlow);
+        }
+    }
+
+    /**
+     * Finishes the ProductSystem. Process flows whose process was never added are dropped.
+     *
+     * @return The ProductSystem with every flow, process and linked process flow added to the builder.
+     */
+    ProductSystem build() {
+        unresolvedProcessFlows.clear();
+        return productSystem;
+    }
+}
@@ -0,0 +1,790 @@
+package esii.grupo19;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.UUID;
+import java.util.zip.CRC32;
+
+import enums.*;
+import exceptions.ElementNotFoundException;
+
+/**
+ * The ProductSystemJournal class persists a ProductSystem in a directory by appending each change to a journal,
+ * instead of rewriting the whole ProductSystem with {@link ProductSystem#saveToJson(String)} after every edit.
+ * It is a {@link ProductSystemListener}, so every change reported by the ProductSystem, its processes and their
+ * process flows is appended as a small record: additions, removals and the new values set through the setters.
+ *
+ * <p>Records are written to the journal file as they happen, and made durable by {@link #commit()}, which
+ * forces the file to disk once for all the records appended so far: threads committing at the same time share
+ * a single fsync, so a group of edits costs one sync instead of one per edit.
+ *
+ * <p>When {@link #commit()} finds that the journal grew past the compaction threshold, or when {@link #compact()}
+ * is called, the ProductSystem is written to a {@link BinarySnapshot} and a new, empty journal is started. A
+ * change made of several records, such as {@link ProductSystem#setFlows}, is never split by a compaction, since
+ * the snapshot already holds the whole change. Each snapshot and journal pair is
+ * a generation, {@code snapshot-<n>.bin} and {@code journal-<n>.log}; a snapshot is renamed into place only
+ * after it is complete, and the files of the previous generation are deleted afterwards.
+ *
+ * <p>{@link #open(String)} recovers the ProductSystem by loading the snapshot of the latest generation and
+ * replaying its journal. Each record holds its length and a CRC32 checksum, so a record torn by a crash is
+ * detected and the journal is truncated after the last complete record; records that were not committed may be
+ * lost, committed records are not. The recovered flows, processes and process flows keep their ids. Records of
+ * elements the ProductSystem does not hold, such as changes to a process flow made after it was removed, are
+ * skipped.
+ *
+ * <p>Changes are recorded in the order the listener is called, so the ProductSystem must be changed by one
+ * thread at a time. Changes made directly to the lists returned by the getters are not reported, and therefore
+ * not recorded.
+ *
+ * <p>Usage:
+ * {@code
+ * try (ProductSystemJournal journal = ProductSystemJournal.open("data")) {
+ *     ProductSystem productSystem = journal.getProductSystem();
+ *     productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+ *     journal.commit();
+ * }
+ * }
+ */
+public class ProductSystemJournal implements ProductSystemListener, Closeable {
+    static final int MAGIC = 0x50534a4c;
+    static final int VERSION = 1;
+    static final long DEFAULT_COMPACTION_THRESHOLD = 16 << 20;
+    private static final int HEADER_SIZE = 8;
+    private static final int RECORD_HEADER_SIZE = 8;
+    private static final String SNAPSHOT_PREFIX = "snapshot-";
+    private static final String SNAPSHOT_SUFFIX = ".bin";
+    private static final String JOURNAL_PREFIX = "journal-";
+    private static final String JOURNAL_SUFFIX = ".log";
+    private static final String TEMPORARY_SUFFIX = ".tmp";
+    private static final FlowType[] FLOW_TYPES = FlowType.values();
+    private static final ProcessType[] PROCESS_TYPES = ProcessType.values();
+    private static final Unit[] UNITS = Unit.values();
+    private static final IOFlow[] IO_FLOWS = IOFlow.values();
+    private static final State[] STATES = State.values();
+
+    // Record types
+    private static final int FLOW_ADDED = 1;
+    private static final int FLOW_REMOVED = 2;
+    private static final int FLOW_CHANGED = 3;
+    private static final int PROCESS_ADDED = 4;
+    private static final int PROCESS_REMOVED = 5;
+    private static final int PROCESS_CHANGED = 6;
+    private static final int PROCESS_FLOW_ADDED = 7;
+    private static final int PROCESS_FLOW_REMOVED = 8;
+    private static final int PROCESS_FLOW_CHANGED = 9;
+
+    private final Path directory;
+    private final ProductSystem productSystem;
+    // Payload of the record being appended, reused by every record
+    private final ByteArrayOutputStream payload = new ByteArrayOutputStream();
+    private final DataOutputStream out = new DataOutputStream(payload);
+    private final CRC32 crc = new CRC32();
+    // Serializes the fsyncs of commit, separately from the appends
+    private final Object commitLock = new Object();
+    private long compactionThreshold = DEFAULT_COMPACTION_THRESHOLD;
+    private long generation;
+    private FileChannel journal;
+    private long journalSize;
+    // Number of records appended, and number of them known to be on disk
+    private long appended;
+    private long committed;
+    // Whether the files of the current generation were created or renamed since the directory was last forced
+    private boolean directoryChanged;
+    // Whether the journal grew past the threshold, to be compacted by the next commit
+    private boolean compactionDue;
+    private boolean closed;
+
+    private ProductSystemJournal(Path directory, ProductSystem productSystem, long generation, FileChannel journal) throws IOException {
+        this.directory = directory;
+        this.productSystem = productSystem;
+        this.generation = generation;
+        this.journal = journal;
+        this.journalSize = journal.size();
+    }
+
+    /**
+     * Opens the journal of a directory, recovering the ProductSystem it holds. The directory is created if it does
+     * not exist, in which case the ProductSystem is empty.
+     *
+     * @param directory The directory of the snapshot and journal files.
+     * @return The journal, recording the changes made to {@link #getProductSystem()} from now on.
+     * @throws IllegalArgumentException If the directory is null.
+     * @throws IOException              If the files cannot be read or written, or if a snapshot or a complete
+     *                                  record of the journal is invalid.
+     */
+    public static ProductSystemJournal open(String directory) throws IOException, IllegalArgumentException {
+        if (directory == null) {
+            throw new IllegalArgumentException("Directory must not be null.");
+        }
+        Path path = Path.of(directory);
+        Files.createDirectories(path);
+
+        long generation = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(path, SNAPSHOT_PREFIX + "*" + SNAPSHOT_SUFFIX)) {
+            for (Path file : files) {
+                generation = Math.max(generation, generationOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX));
+            }
+        }
+        ProductSystem productSystem;
+        if (generation < 0) {
+            generation = 0;
+            productSystem = new ProductSystem();
+        } else {
+            try (FileChannel channel = FileChannel.open(snapshotPath(path, generation), StandardOpenOption.READ)) {
+                productSystem = BinarySnapshot.read(channel);
+            }
+        }
+
+        FileChannel channel = FileChannel.open(journalPath(path, generation), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            replay(productSystem, channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+        try {
+            // Make the journal file itself durable before the files it replaces are deleted
+            syncDirectory(path);
+            deleteOtherGenerations(path, generation);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+
+        ProductSystemJournal productSystemJournal = new ProductSystemJournal(path, productSystem, generation, channel);
+        productSystem.addListener(productSystemJournal);
+        return productSystemJournal;
+    }
+
+    public ProductSystem getProductSystem() {
+        return productSystem;
+    }
+
+    public long getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    /**
+     * Sets the size the journal may reach before it is compacted into a snapshot.
+     *
+     * @param compactionThreshold The size in bytes, or {@link Long#MAX_VALUE} to compact only through {@link #compact()}.
+     * @throws IllegalArgumentException If the threshold is not positive.
+     */
+    public void setCompactionThreshold(long compactionThreshold) throws IllegalArgumentException {
+        if (compactionThreshold <= 0) {
+            throw new IllegalArgumentException("Compaction threshold must be positive.");
+        }
+        this.compactionThreshold = compactionThreshold;
+    }
+
+    /**
+     * Makes every record appended so far durable. When several threads commit at the same time, the records
+     * of all of them are forced to disk by a single fsync. If the journal grew past the compaction threshold, it
+     * is compacted first.
+     *
+     * @throws IOException If the journal cannot be forced to disk, or cannot be compacted.
+     */
+    public void commit() throws IOException {
+        long target;
+        synchronized (this) {
+            if (compactionDue && !closed) {
+                compact();
+            }
+            target = appended;
+        }
+        synchronized (commitLock) {
+            if (committed >= target) {
+                // Forced by another commit while this one was waiting
+                return;
+            }
+            FileChannel channel;
+            long upTo;
+            synchronized (this) {
+                channel = journal;
+                upTo = appended;
+            }
+            try {
+                channel.force(false);
+            } catch (ClosedChannelException e) {
+                // Replaced by compact, after a snapshot holding these records was written; the snapshot is
+                // durable once the directory holding its new name is
+                if (isClosed()) {
+                    throw e;
+                }
+            }
+            syncDirectoryIfChanged();
+            committed = upTo;
+        }
+    }
+
+    /**
+     * Writes the ProductSystem to a new snapshot and starts an empty journal, deleting the files of the previous
+     * generation. Every record of the previous journal is included in the snapshot, so it is committed too.
+     * The previous generation is deleted only after the directory is forced to disk, so that the new snapshot
+     * and journal survive a power loss.
+     *
+     * @throws IOException If the snapshot or the new journal cannot be written.
+     */
+    public synchronized void compact() throws IOException {
+        checkOpen();
+        compactionDue = false;
+        long next = generation + 1;
+        Path temporary = directory.resolve(snapshotPath(directory, next).getFileName() + TEMPORARY_SUFFIX);
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            BinarySnapshot.write(productSystem, channel);
+            channel.force(true);
+        }
+        FileChannel nextJournal = FileChannel.open(journalPath(directory, next), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            writeHeader(nextJournal);
+            nextJournal.force(true);
+            try {
+                Files.move(temporary, snapshotPath(directory, next), StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temporary, snapshotPath(directory, next), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException | RuntimeException e) {
+            nextJournal.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+
+        FileChannel previous = journal;
+        journal = nextJournal;
+        journalSize = nextJournal.size();
+        generation = next;
+        directoryChanged = true;
+        previous.close();
+        syncDirectoryIfChanged();
+        deleteOtherGenerations(directory, generation);
+    }
+
+    /**
+     * Forces the directory to disk if files of the current generation were created or renamed since it was
+     * last forced. Until then, a power loss may bring back the previous generation.
+     */
+    private synchronized void syncDirectoryIfChanged() throws IOException {
+        if (directoryChanged) {
+            syncDirectory(directory);
+            directoryChanged = false;
+        }
+    }
+
+    /**
+     * Commits the appended records, stops recording the changes of the ProductSystem and closes the journal.
+     *
+     * @throws IOException If the journal cannot be forced to disk or closed.
+     */
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            productSystem.removeListener(this);
+        }
+        try {
+            commit();
+        } finally {
+            synchronized (this) {
+                closed = true;
+                journal.close();
+            }
+        }
+    }
+
+    @Override
+    public synchronized void flowAdded(Flow flow) {
+        try {
+            begin(FLOW_ADDED);
+            putFlow(flow);
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void flowRemoved(Flow flow) {
+        try {
+            begin(FLOW_REMOVED);
+            putId(flow.getId());
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void flowChanged(Flow flow) {
+        try {
+            begin(FLOW_CHANGED);
+            putFlow(flow);
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void processAdded(Process process) {
+        try {
+            begin(PROCESS_ADDED);
+            putProcess(process);
+            int count = 0;
+            if (process.getProcessFlows() != null) {
+                for (ProcessFlow processFlow : process.getProcessFlows()) {
+                    count += processFlow == null ? 0 : 1;
+                }
+            }
+            out.writeInt(count);
+            if (count > 0) {
+                for (ProcessFlow processFlow : process.getProcessFlows()) {
+                    if (processFlow != null) {
+                        putProcessFlow(processFlow);
+                    }
+                }
+            }
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void processRemoved(Process process) {
+        try {
+            begin(PROCESS_REMOVED);
+            putId(process.getId());
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void processChanged(Process process) {
+        try {
+            begin(PROCESS_CHANGED);
+            putProcess(process);
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void processFlowAdded(Process process, ProcessFlow processFlow) {
+        if (processFlow == null) {
+            return;
+        }
+        try {
+            begin(PROCESS_FLOW_ADDED);
+            putId(process.getId());
+            putProcessFlow(processFlow);
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void processFlowRemoved(Process process, ProcessFlow processFlow) {
+        if (processFlow == null) {
+            return;
+        }
+        try {
+            begin(PROCESS_FLOW_REMOVED);
+            putId(process.getId());
+            putId(processFlow.getId());
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public synchronized void processFlowChanged(ProcessFlow processFlow) {
+        try {
+            begin(PROCESS_FLOW_CHANGED);
+            putProcessFlow(processFlow);
+            append();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void begin(int type) throws IOException {
+        checkOpen();
+        payload.reset();
+        out.writeByte(type);
+    }
+
+    /**
+     * Writes the record in the payload to the journal, as its length, its checksum and its bytes. When the journal
+     * grows past the threshold, it is compacted by the next commit rather than here: the record may be one of
+     * several reporting a single change, and the snapshot would already hold the records still to come.
+     */
+    private void append() throws IOException {
+        byte[] bytes = payload.toByteArray();
+        crc.reset();
+        crc.update(bytes);
+        ByteBuffer buffer = ByteBuffer.allocate(RECORD_HEADER_SIZE + bytes.length);
+        buffer.putInt(bytes.length);
+        buffer.putInt((int) crc.getValue());
+        buffer.put(bytes);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            journal.write(buffer);
+        }
+        journalSize += RECORD_HEADER_SIZE + bytes.length;
+        appended++;
+        if (journalSize > compactionThreshold) {
+            compactionDue = true;
+        }
+    }
+
+    private void putFlow(Flow flow) throws IOException {
+        putId(flow.getId());
+        putString(flow.getName());
+        putOrdinal(flow.getType());
+        putString(flow.getComment());
+    }
+
+    private void putProcess(Process process) throws IOException {
+        putId(process.getId());
+        putString(process.getName());
+        putString(process.getProductName());
+        putOrdinal(process.getProcessType());
+        putString(process.getOperator());
+        putString(process.getLocation());
+        putString(process.getReferences());
+        Contact contact = process.getContact();
+        out.writeBoolean(contact != null);
+        if (contact != null) {
+            putString(contact.getName());
+            putString(contact.getEmail());
+            putString(contact.getPhone());
+            putString(contact.getAddress());
+        }
+        putString(process.getComment());
+    }
+
+    private void putProcessFlow(ProcessFlow processFlow) throws IOException {
+        putId(processFlow.getId());
+        putString(processFlow.getNameFlow());
+        putString(processFlow.getNameProcess());
+        out.writeDouble(processFlow.getFlowQuantity());
+        putOrdinal(processFlow.getUnit());
+        putOrdinal(processFlow.getIOFlow());
+        putOrdinal(processFlow.getState());
+    }
+
+    private void putId(UUID id) throws IOException {
+        out.writeLong(id.getMostSignificantBits());
+        out.writeLong(id.getLeastSignificantBits());
+    }
+
+    private void putString(String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private void putOrdinal(Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    private synchronized boolean isClosed() {
+        return closed;
+    }
+
+    private void checkOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Journal is closed");
+        }
+    }
+
+    /**
+     * Applies the complete records of a journal to the ProductSystem, then truncates the journal after the last
+     * complete record and positions the channel there for the next appends.
+     */
+    private static void replay(ProductSystem productSystem, FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE) {
+            // New journal, or one torn before its header was written
+            channel.truncate(0);
+            writeHeader(channel);
+            return;
+        }
+        HashMap<UUID, ProcessFlow> processFlows = new HashMap<>();
+        for (Process process : productSystem.getProcesses()) {
+            for (ProcessFlow processFlow : process.getProcessFlows()) {
+                if (processFlow != null) {
+                    processFlows.putIfAbsent(processFlow.getId(), processFlow);
+                }
+            }
+        }
+
+        channel.position(0);
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        if (in.readInt() != MAGIC) {
+            throw new IOException("Invalid journal");
+        }
+        int version = in.readInt();
+        if (version != VERSION) {
+            throw new IOException("Unsupported journal version: " + version);
+        }
+        long position = HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        while (size - position >= RECORD_HEADER_SIZE) {
+            int length = in.readInt();
+            int checksum = in.readInt();
+            if (length <= 0 || length > size - position - RECORD_HEADER_SIZE) {
+                break;
+            }
+            byte[] bytes = new byte[length];
+            in.readFully(bytes);
+            crc.reset();
+            crc.update(bytes);
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            try {
+                apply(productSystem, processFlows, new DataInputStream(new ByteArrayInputStream(bytes)));
+            } catch (ElementNotFoundException e) {
+                // Record of an element no longer held, such as a change to a process flow made after it was
+                // removed; the element is not in the ProductSystem, so there is nothing to apply
+            } catch (EOFException | IllegalArgumentException e) {
+                throw new IOException("Invalid journal", e);
+            }
+            position += RECORD_HEADER_SIZE + length;
+        }
+        channel.truncate(position);
+        channel.position(position);
+    }
+
+    private static void apply(ProductSystem productSystem, HashMap<UUID, ProcessFlow> processFlows, DataInputStream in)
+            throws IOException, ElementNotFoundException {
+        int type = in.readByte();
+        switch (type) {
+            case FLOW_ADDED -> productSystem.addFlow(new Flow(getId(in), getString(in), getEnum(in, FLOW_TYPES), getString(in)));
+            case FLOW_REMOVED -> {
+                if (productSystem.removeFlowById(getId(in)) == null) {
+                    throw new ElementNotFoundException("Flow not found");
+                }
+            }
+            case FLOW_CHANGED -> {
+                Flow flow = productSystem.getFlowById(getId(in));
+                if (flow == null) {
+                    throw new ElementNotFoundException("Flow not found");
+                }
+                flow.setName(getString(in));
+                flow.setType(getEnum(in, FLOW_TYPES));
+                flow.setComment(getString(in));
+            }
+            case PROCESS_ADDED -> {
+                Process process = getProcess(in);
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    process.addProcessFlow(getProcessFlow(in, processFlows));
+                }
+                productSystem.addProcess(process);
+            }
+            case PROCESS_REMOVED -> {
+                if (productSystem.removeProcessById(getId(in)) == null) {
+                    throw new ElementNotFoundException("Process not found");
+                }
+            }
+            case PROCESS_CHANGED -> {
+                Process changed = getProcess(in);
+                Process process = getProcess(productSystem, changed.getId());
+                process.setName(changed.getName());
+                process.setProductName(changed.getProductName());
+                process.setProcessType(changed.getProcessType());
+                process.setOperator(changed.getOperator());
+                process.setLocation(changed.getLocation());
+                process.setReferences(changed.getReferences());
+                process.setContact(changed.getContact());
+                process.setComment(changed.getComment());
+            }
+            case PROCESS_FLOW_ADDED -> {
+                Process process = getProcess(productSystem, getId(in));
+                process.addProcessFlow(getProcessFlow(in, processFlows));
+            }
+            case PROCESS_FLOW_REMOVED -> {
+                Process process = getProcess(productSystem, getId(in));
+                if (process.getProcessFlows().isEmpty()) {
+                    throw new ElementNotFoundException("ProcessFlow not found");
+                }
+                process.removeProcessFlow(getId(in));
+            }
+            case PROCESS_FLOW_CHANGED -> {
+                UUID id = getId(in);
+                if (!processFlows.containsKey(id)) {
+                    throw new ElementNotFoundException("ProcessFlow not found");
+                }
+                readProcessFlow(in, processFlows.get(id));
+            }
+            default -> throw new IOException("Invalid journal");
+        }
+    }
+
+    private static Process getProcess(ProductSystem productSystem, UUID id) throws ElementNotFoundException {
+        Process process = productSystem.getProcessById(id);
+        if (process == null) {
+            throw new ElementNotFoundException("Process not found");
+        }
+        return process;
+    }
+
+    private static Process getProcess(DataInputStream in) throws IOException {
+        UUID id = getId(in);
+        String name = getString(in);
+        String productName = getString(in);
+        ProcessType type = getEnum(in, PROCESS_TYPES);
+        String operator = getString(in);
+        String location = getString(in);
+        String references = getString(in);
+        Contact contact = null;
+        if (in.readBoolean()) {
+            contact = new Contact(getString(in), getString(in), getString(in), getString(in));
+        }
+        return new Process(id, name, productName, type, operator, location, references, contact, getString(in));
+    }
+
+    /**
+     * Reads a process flow, reusing the instance with the same id so that process flows shared by several
+     * processes stay shared, with the values of the record.
+     */
+    private static ProcessFlow getProcessFlow(DataInputStream in, HashMap<UUID, ProcessFlow> processFlows) throws IOException {
+        UUID id = getId(in);
+        ProcessFlow processFlow = processFlows.get(id);
+        if (processFlow == null) {
+            processFlow = new ProcessFlow(id, null, null, 0, null, null, null);
+            processFlows.put(id, processFlow);
+        }
+        readProcessFlow(in, processFlow);
+        return processFlow;
+    }
+
+    private static void readProcessFlow(DataInputStream in, ProcessFlow processFlow) throws IOException {
+        processFlow.setNameFlow(getString(in));
+        processFlow.setNameProcess(getString(in));
+        processFlow.setFlowQuantity(in.readDouble());
+        processFlow.setUnit(getEnum(in, UNITS));
+        processFlow.setIOFlow(getEnum(in, IO_FLOWS));
+        processFlow.setState(getEnum(in, STATES));
+    }
+
+    private static UUID getId(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    private static String getString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid journal");
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    private static <E extends Enum<E>> E getEnum(DataInputStream in, E[] values) throws IOException {
+        int ordinal = in.readByte();
+        if (ordinal == -1) {
+            return null;
+        }
+        if (ordinal < 0 || ordinal >= values.length) {
+            throw new IOException("Invalid journal");
+        }
+        return values[ordinal];
+    }
+
+    /**
+     * Forces the entries of a directory to disk, making the files created, renamed or deleted in it durable.
+     */
+    private static void syncDirectory(Path directory) throws IOException {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        }
+    }
+
+    private static void writeHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    private static Path snapshotPath(Path directory, long generation) {
+        return directory.resolve(SNAPSHOT_PREFIX + generation + SNAPSHOT_SUFFIX);
+    }
+
+    private static Path journalPath(Path directory, long generation) {
+        return directory.resolve(JOURNAL_PREFIX + generation + JOURNAL_SUFFIX);
+    }
+
+    /**
+     * Parses the generation of a snapshot or journal file name, or returns -1 if the name has another form.
+     */
+    private static long generationOf(Path file, String prefix, String suffix) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(suffix)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - suffix.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Deletes the snapshots and journals of every generation but the given one, and unfinished snapshots.
+     */
+    private static void deleteOtherGenerations(Path directory, long generation) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                long snapshot = generationOf(file, SNAPSHOT_PREFIX, SNAPSHOT_SUFFIX);
+                long journal = generationOf(file, JOURNAL_PREFIX, JOURNAL_SUFFIX);
+                boolean temporary = file.getFileName().toString().startsWith(SNAPSHOT_PREFIX)
+                        && file.getFileName().toString().endsWith(SNAPSHOT_SUFFIX + TEMPORARY_SUFFIX);
+                if ((snapshot >= 0 && snapshot != generation) || (journal >= 0 && journal != generation) || temporary) {
+                    Files.delete(file);
+                }
+            }
+        }
+    }
+}
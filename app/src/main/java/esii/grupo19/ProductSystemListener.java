@@ -0,0 +1,90 @@
+package esii.grupo19;
+
+/**
+ * The ProductSystemListener interface receives the changes made to a ProductSystem and to its processes.
+ * Listeners are registered with {@link ProductSystem#addListener(ProductSystemListener)} and are called
+ * after each change has been applied. Every method does nothing by default.
+ *
+ * <p>Process flow events are fired for the processes that belong to the ProductSystem, that is the ones added
+ * with {@link ProductSystem#addProcess(Process)} or {@link ProductSystem#setProcesses(java.util.LinkedList)}.
+ * Changes made directly to the lists returned by the getters are not reported.
+ *
+ * <p>Change events are fired by the setters of the flows, processes and process flows that belong to the
+ * ProductSystem, after the new value is set.
+ */
+public interface ProductSystemListener {
+
+    /**
+     * Called after a flow is added to the ProductSystem.
+     *
+     * @param flow The added flow.
+     */
+    default void flowAdded(Flow flow) {
+    }
+
+    /**
+     * Called after a flow is removed from the ProductSystem.
+     *
+     * @param flow The removed flow.
+     */
+    default void flowRemoved(Flow flow) {
+    }
+
+    /**
+     * Called after a process is added to the ProductSystem.
+     *
+     * @param process The added process.
+     */
+    default void processAdded(Process process) {
+    }
+
+    /**
+     * Called after a process is removed from the ProductSystem.
+     *
+     * @param process The removed process.
+     */
+    default void processRemoved(Process process) {
+    }
+
+    /**
+     * Called after a process flow is added to a process of the ProductSystem.
+     *
+     * @param process     The process the process flow was added to.
+     * @param processFlow The added process flow.
+     */
+    default void processFlowAdded(Process process, ProcessFlow processFlow) {
+    }
+
+    /**
+     * Called after a process flow is removed from a process of the ProductSystem.
+     *
+     * @param process     The process the process flow was removed from.
+     * @param processFlow The removed process flow.
+     */
+    default void processFlowRemoved(Process process, ProcessFlow processFlow) {
+    }
+
+    /**
+     * Called after a flow of the ProductSystem is changed through one of its setters.
+     *
+     * @param flow The changed flow.
+     */
+    default void flowChanged(Flow flow) {
+    }
+
+    /**
+     * Called after a process of the ProductSystem is changed through one of its setters.
+     *
+     * @param process The changed process.
+     */
+    default void processChanged(Process process) {
+    }
+
+    /**
+     * Called after a process flow of a process of the ProductSystem is changed through one of its setters.
+     *
+     * @param processFlow The changed process flow.
+     */
+    default void processFlowChanged(ProcessFlow processFlow) {
+    }
+}
@@ -0,0 +1,184 @@
+package esii.grupo19;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.UUID;
+
+/**
+ * The ProductSystemSnapshot class is a read-only ProductSystem holding the flows and processes that another
+ * ProductSystem had when {@link ProductSystem#snapshot()} was called. Later additions and removals made to that
+ * ProductSystem are not seen, so calculators, exporters and reports working on a snapshot always see the flows
+ * and processes of a single moment, however long they run and whatever other threads change in the meantime.
+ *
+ * <p>The snapshot shares its lists with the ProductSystem it was taken from instead of copying them, see
+ * {@link PersistentList}. Taking a snapshot of a {@link ConcurrentProductSystem} takes constant time.
+ *
+ * <p>Only the membership is frozen: the flows, processes and process flows are the same objects as in the
+ * ProductSystem, and changes made through their setters are visible in the snapshot.
+ *
+ * <p>Usage:
+ * {@code
+ * ProductSystem snapshot = productSystem.snapshot();
+ * new CircularityCalculator("productName", u, l, lavg, uavg, snapshot).calculateCircularity();
+ * }
+ */
+public final class ProductSystemSnapshot extends ProductSystem {
+    private final PersistentList<Flow> flows;
+    private final PersistentList<Process> processes;
+    private final long version;
+    // Id indexes, built on the first lookup
+    private volatile HashMap<UUID, Flow> flowsById;
+    private volatile HashMap<UUID, Process> processesById;
+
+    ProductSystemSnapshot(PersistentList<Flow> flows, PersistentList<Process> processes, long version) {
+        this.flows = flows;
+        this.processes = processes;
+        this.version = version;
+    }
+
+    PersistentList<Flow> flows() {
+        return flows;
+    }
+
+    PersistentList<Process> processes() {
+        return processes;
+    }
+
+    /**
+     * Retrieves a copy of the flows of the snapshot.
+     *
+     * @return A new list with the flows, which can be changed without changing the snapshot.
+     */
+    @Override
+    public LinkedList<Flow> getFlows() {
+        return flows.toLinkedList();
+    }
+
+    /**
+     * Retrieves a copy of the processes of the snapshot.
+     *
+     * @return A new list with the processes, which can be changed without changing the snapshot.
+     */
+    @Override
+    public LinkedList<Process> getProcesses() {
+        return processes.toLinkedList();
+    }
+
+    @Override
+    public int getFlowCount() {
+        return flows.size();
+    }
+
+    @Override
+    public int getProcessCount() {
+        return processes.size();
+    }
+
+    /**
+     * Retrieves the version the ProductSystem had when the snapshot was taken.
+     *
+     * @return The version of the snapshot.
+     */
+    @Override
+    public long getVersion() {
+        return version;
+    }
+
+    @Override
+    public ProductSystemSnapshot snapshot() {
+        return this;
+    }
+
+    @Override
+    Contents contents() {
+        return new Contents(flows, processes);
+    }
+
+    @Override
+    public Flow getFlowByName(String name) throws IllegalArgumentException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null.");
+        }
+        for (Flow flow : flows) {
+            if (name.equals(flow.getName())) {
+                return flow;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Process getProcessByName(String name) throws IllegalArgumentException {
+        if (name == null) {
+            throw new IllegalArgumentException("Name must not be null.");
+        }
+        for (Process process : processes) {
+            if (name.equals(process.getName())) {
+                return process;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Flow getFlowById(UUID id) throws IllegalArgumentException {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must not be null.");
+        }
+        HashMap<UUID, Flow> index = flowsById;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Flow flow : flows) {
+                index.put(flow.getId(), flow);
+            }
+            flowsById = index;
+        }
+        return index.get(id);
+    }
+
+    @Override
+    public Process getProcessById(UUID id) throws IllegalArgumentException {
+        if (id == null) {
+            throw new IllegalArgumentException("Id must not be null.");
+        }
+        HashMap<UUID, Process> index = processesById;
+        if (index == null) {
+            index = new HashMap<>();
+            for (Process process : processes) {
+                index.put(process.getId(), process);
+            }
+            processesById = index;
+        }
+        return index.get(id);
+    }
+
+    @Override
+    public void setFlows(LinkedList<Flow> flows) {
+        throw new UnsupportedOperationException("ProductSystem snapshot is read-only.");
+    }
+
+    @Override
+    public void setProcesses(LinkedList<Process> processes) {
+        throw new UnsupportedOperationException("ProductSystem snapshot is read-only.");
+    }
+
+    @Override
+    public void addFlow(Flow flow) {
+        throw new UnsupportedOperationException("ProductSystem snapshot is read-only.");
+    }
+
+    @Override
+    public void addProcess(Process process) {
+        throw new UnsupportedOperationException("ProductSystem snapshot is read-only.");
+    }
+
+    @Override
+    public Flow removeFlow(String name) {
+        throw new UnsupportedOperationException("ProductSystem snapshot is read-only.");
+    }
+
+    @Override
+    public Process removeProcess(String name) {
+        throw new UnsupportedOperationException("ProductSystem snapshot is read-only.");
+    }
+}
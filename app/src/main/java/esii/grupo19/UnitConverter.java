@@ -0,0 +1,95 @@
+package esii.grupo19;
+
+import enums.Unit;
+
+/**
+ * The UnitConverter class converts process flow quantities between units of the same dimension, so that quantities
+ * given in different units can be added: g, kg and ton are masses, L and m3 volumes, m and Km lengths. kWh, m2 and
+ * unit can only be converted to themselves.
+ *
+ * <p>Each dimension has a base unit, kg, m3 and m; kWh, m2 and unit are their own base. Quantities are aggregated
+ * in the base unit of their dimension, see {@link #getBaseUnit(Unit)}, so the same amount counts the same whatever
+ * unit it was entered in.
+ *
+ * <p>The factors are kept in a table indexed by the {@link Unit#ordinal()} of both units, built once, so a
+ * conversion is a single array read and never allocates. Quantities converted to their own unit are returned
+ * unchanged.
+ *
+ * <p>Usage:
+ * {@code
+ * double quantity = UnitConverter.convert(processFlow.getFlowQuantity(), processFlow.getUnit(), UnitConverter.getBaseUnit(processFlow.getUnit()));
+ * }
+ */
+public final class UnitConverter {
+    private static final Unit[] UNITS = Unit.values();
+    // Factor from the unit of the row to the unit of the column, NaN when the units have different dimensions
+    private static final double[][] FACTORS = new double[UNITS.length][UNITS.length];
+    // Base unit of the dimension of each unit
+    private static final Unit[] BASE = new Unit[UNITS.length];
+
+    static {
+        // Base unit of the dimension of each unit, and the unit's size in that base unit
+        Unit[] base = BASE;
+        double[] size = new double[UNITS.length];
+        for (Unit unit : UNITS) {
+            base[unit.ordinal()] = unit;
+            size[unit.ordinal()] = 1;
+        }
+        base[Unit.g.ordinal()] = Unit.kg;
+        size[Unit.g.ordinal()] = 0.001;
+        base[Unit.ton.ordinal()] = Unit.kg;
+        size[Unit.ton.ordinal()] = 1000;
+        base[Unit.L.ordinal()] = Unit.m3;
+        size[Unit.L.ordinal()] = 0.001;
+        base[Unit.Km.ordinal()] = Unit.m;
+        size[Unit.Km.ordinal()] = 1000;
+        for (Unit from : UNITS) {
+            for (Unit to : UNITS) {
+                FACTORS[from.ordinal()][to.ordinal()] = base[from.ordinal()] == base[to.ordinal()]
+                        ? size[from.ordinal()] / size[to.ordinal()] : Double.NaN;
+            }
+        }
+    }
+
+    private UnitConverter() {
+    }
+
+    /**
+     * Retrieves the base unit of the dimension of a unit: kg for masses, m3 for volumes, m for lengths, and the
+     * unit itself otherwise.
+     *
+     * @return The base unit, or null if the unit is null.
+     */
+    public static Unit getBaseUnit(Unit unit) {
+        return unit == null ? null : BASE[unit.ordinal()];
+    }
+
+    /**
+     * Checks whether quantities of one unit can be converted to another.
+     *
+     * @return {@code true} if both units have the same dimension, or if either is null.
+     */
+    public static boolean isCompatible(Unit from, Unit to) {
+        return from == null || to == null || !Double.isNaN(FACTORS[from.ordinal()][to.ordinal()]);
+    }
+
+    /**
+     * Converts a quantity from one unit to another of the same dimension.
+     *
+     * @param quantity The quantity, in unit from.
+     * @param from     The unit of the quantity.
+     * @param to       The unit to convert to.
+     * @return The quantity in unit to; unchanged if the units are equal or either is null.
+     * @throws IllegalArgumentException If the units have different dimensions.
+     */
+    public static double convert(double quantity, Unit from, Unit to) throws IllegalArgumentException {
+        if (from == to || from == null || to == null) {
+            return quantity;
+        }
+        double factor = FACTORS[from.ordinal()][to.ordinal()];
+        if (Double.isNaN(factor)) {
+            throw new IllegalArgumentException("Incompatible units");
+        }
+        return quantity * factor;
+    }
+}
@@ -0,0 +1,186 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import org.junit.jupiter.api.*;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircularityAggregatorTest {
+
+    ProductSystem productSystem;
+    Contact contact;
+    Process primary;
+    Process recycling;
+
+    @BeforeEach
+    void setUp() {
+        productSystem = new ProductSystem();
+        contact = new Contact("name", "email", "organization", "address");
+        primary = new Process("primaryProcess", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        recycling = new Process("recyclingProcess", "productName", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(primary);
+        productSystem.addProcess(recycling);
+        productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+        productSystem.addFlow(new Flow("paper", FlowType.service, "comment"));
+        productSystem.addFlow(new Flow("electricity", FlowType.energy, "comment"));
+    }
+
+    @Test
+    void aggregate() {
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin));
+        primary.addProcessFlow(new ProcessFlow("electricity", "primaryProcess", 5.0, Unit.kWh, IOFlow.Input, State.virgin));
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 2.0, Unit.kg, IOFlow.Input, State.recycled));
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 3.0, Unit.kg, IOFlow.Output, State.waste));
+        primary.addProcessFlow(new ProcessFlow("paper", "primaryProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        recycling.addProcessFlow(new ProcessFlow("plastic", "recyclingProcess", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        recycling.addProcessFlow(new ProcessFlow("plastic", "recyclingProcess", 3.0, Unit.kg, IOFlow.Output, State.recycled));
+        recycling.addProcessFlow(new ProcessFlow("plastic", "recyclingProcess", 1.0, Unit.kg, IOFlow.Output, State.waste));
+
+        LinkedList<CircularityFlow> circularityFlows = new CircularityAggregator(productSystem).aggregate("productName");
+
+        //energy flows are skipped, order of first appearance is kept
+        assertEquals(2, circularityFlows.size());
+        CircularityFlow plastic = circularityFlows.get(0);
+        assertEquals("plastic", plastic.getFlowName());
+        assertEquals(10.0, plastic.getV());
+        assertEquals(2.0, plastic.getRi());
+        assertEquals(4.0, plastic.getR());
+        assertEquals(3.0, plastic.getRr());
+        assertEquals(3.0, plastic.getWf());
+        assertEquals(1.0, plastic.getWc());
+        assertEquals("paper", circularityFlows.get(1).getFlowName());
+        assertEquals(1.0, circularityFlows.get(1).getV());
+    }
+
+    @Test
+    void aggregateSameAsCalculator() {
+        primary.addProcessFlow(new ProcessFlow("paper", "primaryProcess", 1.5, Unit.kg, IOFlow.Input, State.virgin));
+        recycling.addProcessFlow(new ProcessFlow("paper", "recyclingProcess", 0.5, Unit.kg, IOFlow.Input, State.recycled));
+        recycling.addProcessFlow(new ProcessFlow("plastic", "recyclingProcess", 2.5, Unit.kg, IOFlow.Output, State.waste));
+
+        CircularityCalculator circularityCalculator = new CircularityCalculator("productName", 1, 1, 1, 1, productSystem);
+        circularityCalculator.searchCircularityFlow();
+        LinkedList<CircularityFlow> circularityFlows = new CircularityAggregator(productSystem).aggregate("productName");
+
+        assertEquals(circularityCalculator.getCircularityFlows().size(), circularityFlows.size());
+        for (int i = 0; i < circularityFlows.size(); i++) {
+            CircularityFlow expected = circularityCalculator.getCircularityFlows().get(i);
+            CircularityFlow actual = circularityFlows.get(i);
+            assertEquals(expected.getFlowName(), actual.getFlowName());
+            assertEquals(expected.getV(), actual.getV());
+            assertEquals(expected.getR(), actual.getR());
+            assertEquals(expected.getRr(), actual.getRr());
+            assertEquals(expected.getRi(), actual.getRi());
+            assertEquals(expected.getWc(), actual.getWc());
+            assertEquals(expected.getWf(), actual.getWf());
+        }
+    }
+
+    @Test
+    void aggregateErrors() {
+        CircularityAggregator aggregator = new CircularityAggregator(productSystem);
+
+        //null product name
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> aggregator.aggregate(null));
+        assertEquals("Product name is null", exception.getMessage());
+
+        //empty ProcessFlow list
+        exception = assertThrows(IllegalArgumentException.class, () -> aggregator.aggregate("productName"));
+        assertEquals("Empty ProcessFlow list", exception.getMessage());
+
+        //unknown product
+        exception = assertThrows(IllegalArgumentException.class, () -> aggregator.aggregate("otherProduct"));
+        assertEquals("There are no processes with this name: otherProduct", exception.getMessage());
+
+        //flow not found
+        primary.addProcessFlow(new ProcessFlow("glass", "primaryProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        exception = assertThrows(IllegalArgumentException.class, () -> aggregator.aggregate("productName"));
+        assertEquals("Flow does not exist", exception.getMessage());
+
+        //process not found
+        assertThrows(IllegalArgumentException.class, () -> new CircularityAggregator(null));
+        ProcessFlow processFlow = new ProcessFlow("plastic", "unknownProcess", 1.0, Unit.kg, IOFlow.Input, null);
+        exception = assertThrows(IllegalArgumentException.class, () -> aggregator.searchProcessType(processFlow));
+        assertEquals("Process does not exist", exception.getMessage());
+    }
+
+    @Test
+    void aggregateAllFailures() {
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin));
+        recycling.addProcessFlow(new ProcessFlow("plastic", "recyclingProcess", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        Process lamp = new Process("lampProcess", "lamp", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        lamp.addProcessFlow(new ProcessFlow("electricity", "lampProcess", 1.0, Unit.kWh, IOFlow.Input, State.virgin));
+        productSystem.addProcess(lamp);
+        productSystem.addProcess(new Process("emptyProcess", "empty", ProcessType.primary, "operator", "location", "references", contact, "comment"));
+
+        //invalid products are skipped, and their errors kept
+        LinkedHashMap<String, Exception> failures = new LinkedHashMap<>();
+        LinkedHashMap<String, LinkedList<CircularityFlow>> products = new CircularityAggregator(productSystem).aggregateAll(failures);
+        assertEquals("[productName]", products.keySet().toString());
+        assertEquals(14.0, products.get("productName").getFirst().getV() + products.get("productName").getFirst().getR());
+        assertEquals("There are no processes with this name: lamp", failures.get("lamp").getMessage());
+        assertEquals("Empty ProcessFlow list", failures.get("empty").getMessage());
+        assertEquals(products.keySet(), new CircularityAggregator(productSystem).aggregateAll().keySet());
+    }
+
+    @Test
+    void aggregateUnits() {
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 2.0, Unit.kg, IOFlow.Input, State.virgin));
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 500.0, Unit.g, IOFlow.Input, State.virgin));
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 0.001, Unit.ton, IOFlow.Output, State.waste));
+        primary.addProcessFlow(new ProcessFlow("paper", "primaryProcess", 2.0, Unit.L, IOFlow.Input, State.virgin));
+        primary.addProcessFlow(new ProcessFlow("paper", "primaryProcess", 0.001, Unit.m3, IOFlow.Input, State.virgin));
+        recycling.addProcessFlow(new ProcessFlow("plastic", "recyclingProcess", 1000.0, Unit.g, IOFlow.Output, State.waste));
+
+        //quantities are converted to the base unit of their dimension
+        LinkedList<CircularityFlow> circularityFlows = new CircularityAggregator(productSystem).aggregate("productName");
+        assertEquals(Unit.kg, circularityFlows.get(0).getUnit());
+        assertEquals(2.5, circularityFlows.get(0).getV());
+        assertEquals(1.0, circularityFlows.get(0).getWf());
+        assertEquals(1.0, circularityFlows.get(0).getWc());
+        assertEquals(Unit.m3, circularityFlows.get(1).getUnit());
+        assertEquals(0.003, circularityFlows.get(1).getV());
+
+        //units of another dimension are rejected
+        primary.addProcessFlow(new ProcessFlow("plastic", "primaryProcess", 1.0, Unit.m2, IOFlow.Input, State.virgin));
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> new CircularityAggregator(productSystem).aggregate("productName"));
+        assertEquals("Incompatible units", exception.getMessage());
+        LinkedList<CircularityValidator.Violation> violations = new CircularityValidator(1, 1, 1, 1, productSystem).validate().get("productName");
+        assertEquals("Incompatible units", violations.getFirst().message());
+    }
+
+    @Test
+    void aggregateUnitOrder() throws Exception {
+        for (String productName : new String[]{"gFirst", "kgFirst"}) {
+            Process process = new Process(productName + "Process", productName, ProcessType.primary, "operator", "location", "references", contact, "comment");
+            productSystem.addProcess(process);
+            ProcessFlow grams = new ProcessFlow("plastic", productName + "Process", 500.0, Unit.g, IOFlow.Input, State.virgin);
+            ProcessFlow kilograms = new ProcessFlow("plastic", productName + "Process", 0.5, Unit.kg, IOFlow.Input, State.virgin);
+            process.addProcessFlow(productName.equals("gFirst") ? grams : kilograms);
+            process.addProcessFlow(productName.equals("gFirst") ? kilograms : grams);
+            process.addProcessFlow(new ProcessFlow("paper", productName + "Process", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+            process.addProcessFlow(new ProcessFlow("paper", productName + "Process", 0.5, Unit.kg, IOFlow.Output, State.waste));
+        }
+
+        //same MCI whatever the unit of the first process flow of a flow
+        double gFirst = new CircularityCalculator("gFirst", 1, 1, 1, 1, productSystem).calculateCircularity();
+        double kgFirst = new CircularityCalculator("kgFirst", 1, 1, 1, 1, productSystem).calculateCircularity();
+        assertEquals(kgFirst, gFirst);
+        assertEquals(Unit.kg, UnitConverter.getBaseUnit(Unit.ton));
+        assertEquals(Unit.kWh, UnitConverter.getBaseUnit(Unit.kWh));
+    }
+
+    @Test
+    void unitConverter() {
+        assertEquals(1.5, UnitConverter.convert(1500, Unit.g, Unit.kg));
+        assertEquals(2000, UnitConverter.convert(2, Unit.Km, Unit.m));
+        assertEquals(7, UnitConverter.convert(7, Unit.unit, Unit.unit));
+        assertEquals(7, UnitConverter.convert(7, null, Unit.kg));
+        assertTrue(UnitConverter.isCompatible(Unit.L, Unit.m3));
+        assertFalse(UnitConverter.isCompatible(Unit.kg, Unit.kWh));
+        assertThrows(IllegalArgumentException.class, () -> UnitConverter.convert(1, Unit.kg, Unit.m3));
+    }
+}
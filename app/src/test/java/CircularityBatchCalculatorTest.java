@@ -0,0 +1,167 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import exceptions.DivideByZeroException;
+import org.junit.jupiter.api.*;
+
+import javax.management.InvalidAttributeValueException;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.LinkedHashMap;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircularityBatchCalculatorTest {
+
+    ProductSystem productSystem;
+    Contact contact;
+    CircularityBatchCalculator batchCalculator;
+
+    @BeforeEach
+    void setUp() {
+        productSystem = new ProductSystem();
+        contact = new Contact("name", "email", "organization", "address");
+        productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+        productSystem.addFlow(new Flow("paper", FlowType.service, "comment"));
+        productSystem.addFlow(new Flow("electricity", FlowType.energy, "comment"));
+
+        Process bottle = new Process("bottleProcess", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        Process bottleRecycling = new Process("bottleRecycling", "bottle", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        Process box = new Process("boxProcess", "box", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(bottle);
+        productSystem.addProcess(box);
+        productSystem.addProcess(bottleRecycling);
+
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("electricity", "bottleProcess", 2.0, Unit.kWh, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 3.0, Unit.kg, IOFlow.Output, State.waste));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 3.0, Unit.kg, IOFlow.Output, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 1.0, Unit.kg, IOFlow.Output, State.waste));
+        box.addProcessFlow(new ProcessFlow("paper", "boxProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+
+        batchCalculator = new CircularityBatchCalculator(1, 1, 1, 1, productSystem);
+    }
+
+    @Test
+    void calculateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        LinkedHashMap<String, Double> results = batchCalculator.calculateCircularity();
+
+        //products in order of first appearance
+        assertEquals(2, results.size());
+        assertEquals("bottle", results.keySet().iterator().next());
+        assertEquals(results, batchCalculator.getResults());
+
+        //same results as a calculator for each product
+        for (String productName : results.keySet()) {
+            CircularityCalculator circularityCalculator = new CircularityCalculator(productName, 1, 1, 1, 1, productSystem);
+            assertEquals(circularityCalculator.calculateCircularity(), results.get(productName).doubleValue());
+            assertEquals(circularityCalculator.getCircularityFlows().size(), batchCalculator.getCircularityFlows(productName).size());
+        }
+        assertEquals(0.27, batchCalculator.getCircularityFlows("bottle").get(0).getMCIp());
+        assertEquals(0.1, results.get("box").doubleValue());
+        assertNull(batchCalculator.getCircularityFlows("unknownProduct"));
+    }
+
+    @Test
+    void calculateCircularitySnapshot() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        LinkedHashMap<String, Double> results = batchCalculator.calculateCircularity();
+        ProductSystem snapshot = productSystem.snapshot();
+
+        //same counts as the ProductSystem it was taken from
+        assertEquals(productSystem.getFlowCount(), snapshot.getFlowCount());
+        assertEquals(productSystem.getProcessCount(), snapshot.getProcessCount());
+
+        //same results on the snapshot
+        batchCalculator.setProductSystem(snapshot);
+        assertEquals(results, batchCalculator.calculateCircularity());
+        CircularityCalculator circularityCalculator = new CircularityCalculator("bottle", 1, 1, 1, 1, snapshot);
+        assertEquals(results.get("bottle").doubleValue(), circularityCalculator.calculateCircularity());
+
+        //same results on the snapshot of a ConcurrentProductSystem
+        ConcurrentProductSystem concurrentProductSystem = new ConcurrentProductSystem();
+        concurrentProductSystem.setFlows(productSystem.getFlows());
+        concurrentProductSystem.setProcesses(productSystem.getProcesses());
+        batchCalculator.setProductSystem(concurrentProductSystem.snapshot());
+        assertEquals(results, batchCalculator.calculateCircularity());
+    }
+
+    @Test
+    void calculateCircularityErrors() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //null productSystem
+        batchCalculator.setProductSystem(null);
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> batchCalculator.calculateCircularity());
+        assertEquals("ProductSystem is null", exception.getMessage());
+
+        //empty processes list
+        batchCalculator.setProductSystem(new ProductSystem());
+        exception = assertThrows(IllegalArgumentException.class, () -> batchCalculator.calculateCircularity());
+        assertEquals("Empty Process list", exception.getMessage());
+
+        //product with energy flows only, and product without process flows, are reported without stopping the others
+        batchCalculator.setProductSystem(productSystem);
+        Process lamp = new Process("lampProcess", "lamp", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        lamp.addProcessFlow(new ProcessFlow("electricity", "lampProcess", 1.0, Unit.kWh, IOFlow.Input, State.virgin));
+        productSystem.addProcess(lamp);
+        productSystem.addProcess(new Process("emptyProcess", "empty", ProcessType.primary, "operator", "location", "references", contact, "comment"));
+        LinkedHashMap<String, Double> results = batchCalculator.calculateCircularity();
+        assertEquals("[bottle, box]", results.keySet().toString());
+        assertEquals("[lamp, empty]", batchCalculator.getFailures().keySet().toString());
+        assertEquals("There are no processes with this name: lamp", batchCalculator.getFailures().get("lamp").getMessage());
+        assertEquals("Empty ProcessFlow list", batchCalculator.getFailures().get("empty").getMessage());
+        assertNull(batchCalculator.getCircularityFlows("lamp"));
+
+        //invalid bounds fail the whole batch
+        batchCalculator.setLavg(-1);
+        assertThrows(InvalidAlgorithmParameterException.class, () -> batchCalculator.calculateCircularity());
+    }
+
+    @Test
+    void calculateCircularityParallel() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //many products, and one product with enough flows to be split
+        for (int i = 0; i < 50; i++) {
+            Process process = new Process("process" + i, "product" + i, ProcessType.primary, "operator", "location", "references", contact, "comment");
+            productSystem.addProcess(process);
+            int flows = i == 0 ? 3000 : 1 + i % 7;
+            for (int j = 0; j < flows; j++) {
+                if (i == 0 || j >= 2) {
+                    productSystem.addFlow(new Flow("flow" + i + "_" + j, FlowType.material, "comment"));
+                }
+                String flowName = i == 0 || j >= 2 ? "flow" + i + "_" + j : j == 0 ? "plastic" : "paper";
+                process.addProcessFlow(new ProcessFlow(flowName, "process" + i, 1.0 + (i * 31 + j) % 17, Unit.kg, IOFlow.Input, State.virgin));
+                process.addProcessFlow(new ProcessFlow(flowName, "process" + i, 0.1 + (i + j) % 3, Unit.kg, IOFlow.Output, State.waste));
+            }
+        }
+        LinkedHashMap<String, Double> sequential = new LinkedHashMap<>(batchCalculator.calculateCircularity());
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            batchCalculator.setForkJoinPool(pool);
+            LinkedHashMap<String, Double> parallel = batchCalculator.calculateCircularity();
+            //same values in the same order
+            assertEquals(52, parallel.size());
+            assertEquals(sequential.keySet().toString(), parallel.keySet().toString());
+            for (String productName : sequential.keySet()) {
+                assertEquals(sequential.get(productName).doubleValue(), parallel.get(productName).doubleValue());
+            }
+
+            //the errors of the failing products are reported, and the other products calculated
+            productSystem.getProcessByName("process20").getProcessFlows().getFirst().setState(State.recycled);
+            productSystem.getProcessByName("process30").getProcessFlows().getFirst().setState(null);
+            productSystem.getProcessByName("process40").getProcessFlows().getFirst().setState(null);
+            parallel = batchCalculator.calculateCircularity();
+            assertEquals(49, parallel.size());
+            assertFalse(parallel.containsKey("product20"));
+            LinkedHashMap<String, Exception> failures = new LinkedHashMap<>(batchCalculator.getFailures());
+            assertEquals("[product30, product40, product20]", failures.keySet().toString());
+            assertEquals("Invalid processFlow state", failures.get("product30").getMessage());
+            assertTrue(failures.get("product20") instanceof InvalidAttributeValueException);
+            batchCalculator.setForkJoinPool(null);
+            assertEquals(parallel, batchCalculator.calculateCircularity());
+            assertEquals(failures.keySet(), batchCalculator.getFailures().keySet());
+            assertEquals(failures.get("product20").getMessage(), batchCalculator.getFailures().get("product20").getMessage());
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
@@ -58,7 +58,7 @@ public class CircularityCalculatorTest {
         assertEquals("Empty ProcessFlow list", exception.getMessage());
 
         //empty flows list
-        processFlow = new ProcessFlow("flowName", "processName", 1.0, Unit.g, IOFlow.Input, State.virgin);
+        processFlow = new ProcessFlow("flowName", "processName", 1.0, Unit.kg, IOFlow.Input, State.virgin);
         process.addProcessFlow(processFlow);
         exception = assertThrows(IllegalArgumentException.class, () -> circularityCalculator.searchCircularityFlow(), "Empty Flow list");
         assertEquals("Empty Flow list", exception.getMessage());
@@ -82,7 +82,7 @@ public class CircularityCalculatorTest {
         assertEquals(1.0, circularityCalculator.getCircularityFlows().get(0).getV());
 
         //another material flow
-        ProcessFlow processFlow2 = new ProcessFlow("flowName", "processName", 1.0, Unit.g, IOFlow.Input, State.virgin);
+        ProcessFlow processFlow2 = new ProcessFlow("flowName", "processName", 1.0, Unit.kg, IOFlow.Input, State.virgin);
         process.addProcessFlow(processFlow2);
         circularityCalculator.searchCircularityFlow();
         assertTrue(circularityCalculator.containsByName("flowName"));
@@ -111,7 +111,7 @@ public class CircularityCalculatorTest {
         assertEquals("Process flow is null", exception.getMessage());
 
         //empty circularityFlows list
-        processFlow = new ProcessFlow("flowName", "processName", 1.0, Unit.g, IOFlow.Input, null);
+        processFlow = new ProcessFlow("flowName", "processName", 1.0, Unit.kg, IOFlow.Input, null);
         exception = assertThrows(IllegalArgumentException.class, () -> circularityCalculator.updateCircularityFlows(processFlow), "Empty Circularity Flow list");
 
         //process type null
@@ -0,0 +1,125 @@
+import enums.FlowStatus;
+import esii.grupo19.*;
+import exceptions.DivideByZeroException;
+import org.junit.jupiter.api.*;
+
+import javax.management.InvalidAttributeValueException;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.LinkedList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircularityFlowBatchTest {
+
+    LinkedList<CircularityFlow> circularityFlows;
+    CircularityFlowBatch batch;
+
+    @BeforeEach
+    void setUp() {
+        circularityFlows = new LinkedList<>();
+        circularityFlows.add(new CircularityFlow("polyethylene terephthalate (PET) granulate", 247, -143.26, 103.15, 0, 40.11, 103.74));
+        circularityFlows.add(new CircularityFlow("Low-density polyethylene (LD-PE)", 730, -423.38, 270.98, 0, 152.4, 306));
+        circularityFlows.add(new CircularityFlow("adhesive PUR", 23, -13.34, 0, 0, 13.34, 13.34));
+        batch = CircularityFlowBatch.of(circularityFlows);
+    }
+
+    @Test
+    void add() {
+        //Test flows are copied in order
+        assertEquals(3, batch.size());
+        assertEquals("adhesive PUR", batch.getCircularityFlow(2).getFlowName());
+        assertEquals(730, batch.getCircularityFlow(1).getV());
+
+        //Test growing past the capacity
+        CircularityFlowBatch small = new CircularityFlowBatch(0);
+        for (int i = 0; i < 20; i++) {
+            small.add("flow" + i, i, 0, 0, 0, 0, 0);
+        }
+        assertEquals(20, small.size());
+        assertEquals(19, small.getCircularityFlow(19).getV());
+
+        //Test invalid arguments
+        assertThrows(IllegalArgumentException.class, () -> new CircularityFlowBatch(-1));
+        assertThrows(IllegalArgumentException.class, () -> batch.add(null));
+        assertThrows(IndexOutOfBoundsException.class, () -> batch.getCircularityFlow(3));
+    }
+
+    @Test
+    void calculateColumns() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        double[] w = batch.calculateW();
+        double[] m = batch.calculateM();
+        double[] ep = batch.calculateEp();
+        double[] es = batch.calculateEs();
+        double[] lfi = batch.calculateLFI();
+        //Test same values as each CircularityFlow
+        for (int i = 0; i < circularityFlows.size(); i++) {
+            CircularityFlow circularityFlow = circularityFlows.get(i);
+            assertEquals(circularityFlow.calculateW(), w[i]);
+            assertEquals(circularityFlow.calculateM(), m[i]);
+            assertEquals(circularityFlow.calculateEp(), ep[i]);
+            assertEquals(circularityFlow.calculateEs(), es[i]);
+            assertEquals(circularityFlow.calculateLFI(), lfi[i]);
+        }
+    }
+
+    @Test
+    void calculateMCIp() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        CircularityKernel.Utility utility = CircularityKernel.calculateUtility(1, 1, 1, 1);
+        double[] mcip = batch.calculateMCIp(utility);
+        //Test same values as each CircularityFlow
+        for (int i = 0; i < circularityFlows.size(); i++) {
+            assertEquals(circularityFlows.get(i).calculateMCIp(utility), mcip[i]);
+        }
+        assertEquals(0.33, mcip[0]);
+
+        //Test same MCI as the calculator
+        for (CircularityFlow circularityFlow : circularityFlows) {
+            circularityFlow.calculateMCIp(utility);
+        }
+        double x = 0;
+        double y = 0;
+        for (CircularityFlow circularityFlow : circularityFlows) {
+            x += circularityFlow.getMCIp() * circularityFlow.getM();
+            y += circularityFlow.getM();
+        }
+        assertEquals(x / y, batch.calculateCircularity(utility));
+    }
+
+    @Test
+    void calculateExceptions() {
+        CircularityKernel.Utility utility = CircularityKernel.calculateUtility(1, 1, 1, 1);
+
+        //Test the first invalid flow is reported
+        batch.add("CF9", 30, -20, 100, 0, 5, 20);
+        batch.add("CF11", 20, 0, 10, 0, 0, 0);
+        InvalidAttributeValueException exception = assertThrows(InvalidAttributeValueException.class, () -> batch.calculateMCIp(utility));
+        assertEquals("R can't be bigger or equal to W", exception.getMessage());
+
+        //Test R = 0
+        DivideByZeroException divideByZero = assertThrows(DivideByZeroException.class, () -> batch.calculateEp());
+        assertEquals("Ep Division by zero", divideByZero.getMessage());
+
+        //Test invalid bounds
+        CircularityFlowBatch valid = CircularityFlowBatch.of(circularityFlows);
+        divideByZero = assertThrows(DivideByZeroException.class, () -> valid.calculateCircularity(CircularityKernel.calculateUtility(1, 0, 1, 1)));
+        assertEquals("X Division by zero", divideByZero.getMessage());
+
+        //Test empty batch
+        divideByZero = assertThrows(DivideByZeroException.class, () -> new CircularityFlowBatch().calculateCircularity(utility));
+        assertEquals("MCI Division by zero", divideByZero.getMessage());
+    }
+
+    @Test
+    void validate() {
+        CircularityKernel.Utility utility = CircularityKernel.calculateUtility(1, 1, 1, 1);
+        batch.add("CF9", 30, -20, 100, 0, 5, 20);
+        batch.add("CF11", 20, 0, 10, 0, 0, 0);
+
+        //Test every flow gets a status
+        FlowStatus[] status = batch.validate(utility);
+        assertEquals(5, status.length);
+        assertEquals(FlowStatus.valid, status[0]);
+        assertEquals(FlowStatus.rNotBelowW, status[3]);
+        assertEquals(FlowStatus.rrWithoutR, status[4]);
+    }
+}
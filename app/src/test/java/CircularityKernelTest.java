@@ -0,0 +1,240 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import exceptions.DivideByZeroException;
+import org.junit.jupiter.api.*;
+
+import javax.management.InvalidAttributeValueException;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.LinkedList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircularityKernelTest {
+
+    ProductSystem productSystem;
+    Contact contact;
+    Process bottle;
+    Process bottleRecycling;
+    CircularityCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        productSystem = new ProductSystem();
+        contact = new Contact("name", "email", "organization", "address");
+        productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+        productSystem.addFlow(new Flow("electricity", FlowType.energy, "comment"));
+
+        bottle = new Process("bottleProcess", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        bottleRecycling = new Process("bottleRecycling", "bottle", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(bottle);
+        productSystem.addProcess(bottleRecycling);
+
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("electricity", "bottleProcess", 2.0, Unit.kWh, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 3.0, Unit.kg, IOFlow.Output, State.waste));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 3.0, Unit.kg, IOFlow.Output, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 1.0, Unit.kg, IOFlow.Output, State.waste));
+
+        calculator = new CircularityCalculator("bottle", 1, 1, 1, 1, productSystem);
+    }
+
+    @Test
+    void calculateMCIp() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //Test valid values
+        CircularityKernel.Result result = CircularityKernel.calculateMCIp(247, -143.26, 103.15, 0, 40.11, 103.74, 1, 1, 1, 1);
+        assertEquals(143.85, result.w());
+        assertEquals(247, result.m());
+        assertEquals(1, result.x());
+        assertEquals(0.9, result.fx());
+        assertEquals(0.74, result.lfi());
+        assertEquals(0.33, result.mcip());
+
+        //Test same values as CircularityFlow
+        CircularityFlow circularityFlow = new CircularityFlow("polyethylene terephthalate (PET) granulate", 247, -143.26, 103.15, 0, 40.11, 103.74);
+        assertEquals(circularityFlow.calculateMCIp(1, 1, 1, 1), result.mcip());
+        assertEquals(circularityFlow.getLFI(), result.lfi());
+        assertEquals(circularityFlow.getW(), result.w());
+    }
+
+    @Test
+    void calculateMCIpExceptions() {
+        //Test R = 0 and Rr != 0
+        InvalidAttributeValueException exception = assertThrows(InvalidAttributeValueException.class, () -> CircularityKernel.calculateMCIp(20, 0, 10, 0, 0, 0, 1, 1, 1, 1));
+        assertEquals("R is equal to 0, Rr can't be different than 0!", exception.getMessage());
+
+        //Test flow checks come before the bounds
+        exception = assertThrows(InvalidAttributeValueException.class, () -> CircularityKernel.calculateMCIp(30, -20, 100, 0, 5, 20, 1, 0, 1, 1));
+        assertEquals("R can't be bigger or equal to W", exception.getMessage());
+
+        //Test Wc > Wf
+        exception = assertThrows(InvalidAttributeValueException.class, () -> CircularityKernel.calculateMCIp(25, -10, 5, 2, 5, 3, 1, 1, 1, 1));
+        assertEquals("Wc can't be bigger than Wf", exception.getMessage());
+
+        //Test lavg = 0
+        DivideByZeroException divideByZero = assertThrows(DivideByZeroException.class, () -> CircularityKernel.calculateMCIp(247, -143.26, 103.15, 0, 40.11, 103.74, 1, 0, 1, 1));
+        assertEquals("X Division by zero", divideByZero.getMessage());
+
+        //Test l = 0
+        divideByZero = assertThrows(DivideByZeroException.class, () -> CircularityKernel.calculateMCIp(247, -143.26, 103.15, 0, 40.11, 103.74, 0, 1, 1, 1));
+        assertEquals("Fx Division by zero", divideByZero.getMessage());
+
+        //Test negative uavg
+        assertThrows(InvalidAlgorithmParameterException.class, () -> CircularityKernel.calculateMCIp(247, -143.26, 103.15, 0, 40.11, 103.74, 1, 1, 1, -1));
+    }
+
+    @Test
+    void evaluateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //Test same result without keeping state
+        double result = calculator.evaluateCircularity();
+        assertEquals(0, calculator.getResult());
+        assertTrue(calculator.getCircularityFlows() == null || calculator.getCircularityFlows().isEmpty());
+        assertEquals(new CircularityCalculator("bottle", 1, 1, 1, 1, productSystem).calculateCircularity(), result);
+
+        //Test validations
+        calculator.setProductName(null);
+        IllegalArgumentException exception = assertThrows(IllegalArgumentException.class, () -> calculator.evaluateCircularity());
+        assertEquals("Product name is null", exception.getMessage());
+        calculator.setProductName("bottle");
+        calculator.setProductSystem(new ProductSystem());
+        exception = assertThrows(IllegalArgumentException.class, () -> calculator.evaluateCircularity());
+        assertEquals("Empty Process list", exception.getMessage());
+    }
+
+    @Test
+    void evaluateCircularityShared() throws Exception {
+        double expected = calculator.evaluateCircularity();
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            LinkedList<Future<Double>> results = new LinkedList<>();
+            for (int i = 0; i < 64; i++) {
+                Callable<Double> task = () -> calculator.evaluateCircularity();
+                results.add(executor.submit(task));
+            }
+            //Test every thread gets the same result from one calculator
+            for (Future<Double> future : results) {
+                assertEquals(expected, future.get().doubleValue());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void calculateUtility() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //Test valid bounds
+        CircularityKernel.Utility utility = CircularityKernel.calculateUtility(2, 1, 1, 1);
+        assertTrue(utility.isValid());
+        assertEquals(2, utility.x());
+        assertEquals(0.45, utility.fx());
+        assertEquals(CircularityKernel.calculateMCIp(247, -143.26, 103.15, 0, 40.11, 103.74, 2, 1, 1, 1),
+                CircularityKernel.calculateMCIp(247, -143.26, 103.15, 0, 40.11, 103.74, utility));
+
+        //Test invalid bounds don't throw until a flow is calculated
+        utility = CircularityKernel.calculateUtility(1, 0, 1, 1);
+        assertFalse(utility.isValid());
+        CircularityKernel.Utility invalid = utility;
+        DivideByZeroException divideByZero = assertThrows(DivideByZeroException.class, () -> CircularityKernel.calculateMCIp(247, -143.26, 103.15, 0, 40.11, 103.74, invalid));
+        assertEquals("X Division by zero", divideByZero.getMessage());
+
+        //Test flow checks still come before the bounds
+        InvalidAttributeValueException exception = assertThrows(InvalidAttributeValueException.class, () -> CircularityKernel.calculateMCIp(30, -20, 100, 0, 5, 20, invalid));
+        assertEquals("R can't be bigger or equal to W", exception.getMessage());
+
+        //Test calculator context
+        assertEquals(CircularityKernel.calculateUtility(1, 1, 1, 1), calculator.getUtility());
+    }
+
+    @Test
+    void validate() {
+        CircularityKernel.Utility utility = CircularityKernel.calculateUtility(1, 1, 1, 1);
+        //Test valid flow
+        assertEquals(FlowStatus.valid, CircularityKernel.validate(247, -143.26, 103.15, 0, 40.11, 103.74, utility));
+
+        //Test same status as the exceptions
+        assertEquals(FlowStatus.rrWithoutR, CircularityKernel.validate(20, 0, 10, 0, 0, 0, utility));
+        assertEquals(FlowStatus.rNotBelowW, CircularityKernel.validate(30, -20, 100, 0, 5, 20, utility));
+        assertEquals(FlowStatus.wcAboveWf, CircularityKernel.validate(25, -10, 5, 2, 5, 3, utility));
+        assertEquals(FlowStatus.lfiOutOfRange, CircularityKernel.validate(100, -70, 0, 0, 70, 50, utility));
+        assertEquals("Wc can't be bigger than Wf", FlowStatus.wcAboveWf.getMessage());
+
+        //Test bounds come after the flow checks
+        CircularityKernel.Utility invalid = CircularityKernel.calculateUtility(1, -1, 1, 1);
+        assertEquals(FlowStatus.invalidBounds, invalid.status());
+        assertEquals(FlowStatus.invalidBounds, CircularityKernel.validate(247, -143.26, 103.15, 0, 40.11, 103.74, invalid));
+        assertEquals(FlowStatus.rNotBelowW, CircularityKernel.validate(30, -20, 100, 0, 5, 20, invalid));
+        assertEquals(FlowStatus.fxDivisionByZero, CircularityKernel.calculateUtility(0, 1, 1, 1).status());
+
+        //Test CircularityFlow is not changed
+        CircularityFlow circularityFlow = new CircularityFlow("CF7", 100, -70, 0, 0, 70, 50);
+        assertEquals(FlowStatus.lfiOutOfRange, circularityFlow.validate(utility));
+        assertThrows(IllegalStateException.class, () -> circularityFlow.getLFI());
+    }
+
+    @Test
+    void validateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //Test valid product
+        assertTrue(calculator.validateCircularity().isEmpty());
+
+        //Test every invalid flow is reported
+        productSystem.addFlow(new Flow("cardboard", FlowType.material, "comment"));
+        bottleRecycling.addProcessFlow(new ProcessFlow("cardboard", "bottleRecycling", 2.0, Unit.kg, IOFlow.Output, State.recycled));
+        calculator.setLavg(-1);
+        java.util.LinkedHashMap<String, FlowStatus> violations = calculator.validateCircularity();
+        assertEquals(2, violations.size());
+        assertEquals(FlowStatus.invalidBounds, violations.get("plastic"));
+        assertEquals(FlowStatus.rrWithoutR, violations.get("cardboard"));
+        assertEquals(0, calculator.getResult());
+
+        //Test first violation is the exception of calculateCircularity
+        InvalidAlgorithmParameterException exception = assertThrows(InvalidAlgorithmParameterException.class, () -> calculator.calculateCircularity());
+        assertEquals(violations.values().iterator().next().getMessage(), exception.getMessage());
+    }
+
+    @Test
+    void utilityContext() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        CircularityFlow circularityFlow = new CircularityFlow("polyethylene terephthalate (PET) granulate", 247, -143.26, 103.15, 0, 40.11, 103.74);
+
+        //Test same MCIp with the utility computed once and with the utility computed per flow
+        int[][] bounds = {{1, 1, 1, 1}, {2, 2, 3, 3}, {2, 1, 2, 1}};
+        for (int[] bound : bounds) {
+            CircularityKernel.Utility utility = CircularityKernel.calculateUtility(bound[0], bound[1], bound[2], bound[3]);
+            double perFlow = circularityFlow.calculateMCIp(bound[0], bound[1], bound[2], bound[3]);
+            assertEquals(perFlow, circularityFlow.calculateMCIp(utility));
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void utilityBenchmark() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        int flows = 1_000_000;
+        CircularityFlow circularityFlow = new CircularityFlow("polyethylene terephthalate (PET) granulate", 247, -143.26, 103.15, 0, 40.11, 103.74);
+        double perFlow = 0;
+        double withUtility = 0;
+        double sum = 0;
+        double hoisted = 0;
+        // The first rounds warm up the JIT; the last one is reported
+        for (int round = 0; round < 5; round++) {
+            sum = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < flows; i++) {
+                sum += circularityFlow.calculateMCIp(1, 1, 1, 1);
+            }
+            perFlow = (System.nanoTime() - start) / (double) flows;
+
+            CircularityKernel.Utility utility = CircularityKernel.calculateUtility(1, 1, 1, 1);
+            hoisted = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < flows; i++) {
+                hoisted += circularityFlow.calculateMCIp(utility);
+            }
+            withUtility = (System.nanoTime() - start) / (double) flows;
+        }
+        System.out.printf("MCIp per flow: %.1f ns, with utility context: %.1f ns (sums %.2f, %.2f)%n", perFlow, withUtility, sum, hoisted);
+    }
+}
@@ -0,0 +1,93 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import exceptions.DivideByZeroException;
+import org.junit.jupiter.api.*;
+
+import javax.management.InvalidAttributeValueException;
+import java.security.InvalidAlgorithmParameterException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircularityResultCacheTest {
+
+    ProductSystem productSystem;
+    Contact contact;
+    ProcessFlow virgin;
+    CircularityResultCache cache;
+    CircularityCalculator circularityCalculator;
+
+    @BeforeEach
+    void setUp() {
+        productSystem = new ProductSystem();
+        contact = new Contact("name", "email", "organization", "address");
+        productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+
+        Process bottle = new Process("bottleProcess", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        Process bottleRecycling = new Process("bottleRecycling", "bottle", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(bottle);
+        productSystem.addProcess(bottleRecycling);
+
+        virgin = new ProcessFlow("plastic", "bottleProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin);
+        bottle.addProcessFlow(virgin);
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 3.0, Unit.kg, IOFlow.Output, State.waste));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 3.0, Unit.kg, IOFlow.Output, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 1.0, Unit.kg, IOFlow.Output, State.waste));
+
+        cache = new CircularityResultCache(2);
+        circularityCalculator = new CircularityCalculator("bottle", 1, 1, 1, 1, productSystem);
+        circularityCalculator.setResultCache(cache);
+    }
+
+    @Test
+    void calculateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //first calculation is stored
+        double result = circularityCalculator.calculateCircularity();
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        assertEquals(1, cache.size());
+
+        //same product and parameters are answered by the cache
+        circularityCalculator.getCircularityFlows().clear();
+        assertEquals(result, circularityCalculator.calculateCircularity());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, circularityCalculator.getCircularityFlows().size());
+        assertEquals(0.27, circularityCalculator.getCircularityFlows().getFirst().getMCIp());
+
+        //shared between calculators
+        CircularityCalculator other = new CircularityCalculator("bottle", 1, 1, 1, 1, productSystem);
+        other.setResultCache(cache);
+        assertEquals(result, other.calculateCircularity());
+        assertEquals(2, cache.getHits());
+
+        //a change in the product system is a miss
+        virgin.setFlowQuantity(20.0);
+        CircularityCalculator uncached = new CircularityCalculator("bottle", 1, 1, 1, 1, productSystem);
+        assertEquals(uncached.calculateCircularity(), circularityCalculator.calculateCircularity());
+        assertEquals(2, cache.getMisses());
+
+        //new parameters are a miss, and the least recently used result is evicted
+        circularityCalculator.setL(2);
+        circularityCalculator.calculateCircularity();
+        assertEquals(3, cache.getMisses());
+        assertEquals(1, cache.getEvictions());
+        assertEquals(2, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void cacheErrors() {
+        //invalid size
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> new CircularityResultCache(0));
+        assertEquals("Size must be positive.", exception.getMessage());
+
+        //failed calculations are not stored
+        virgin.setFlowQuantity(0.0);
+        assertThrows(InvalidAttributeValueException.class, () -> circularityCalculator.calculateCircularity());
+        assertEquals(0, cache.size());
+        assertEquals(1, cache.getMisses());
+    }
+}
@@ -0,0 +1,112 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import org.junit.jupiter.api.*;
+
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CircularityValidatorTest {
+
+    ProductSystem productSystem;
+    Contact contact;
+    Process bottle;
+    Process bottleRecycling;
+    Process box;
+    CircularityValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        productSystem = new ProductSystem();
+        contact = new Contact("name", "email", "organization", "address");
+        productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+        productSystem.addFlow(new Flow("paper", FlowType.service, "comment"));
+        productSystem.addFlow(new Flow("electricity", FlowType.energy, "comment"));
+
+        bottle = new Process("bottleProcess", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        bottleRecycling = new Process("bottleRecycling", "bottle", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        box = new Process("boxProcess", "box", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(bottle);
+        productSystem.addProcess(box);
+        productSystem.addProcess(bottleRecycling);
+
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("electricity", "bottleProcess", 2.0, Unit.kWh, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 3.0, Unit.kg, IOFlow.Output, State.waste));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 3.0, Unit.kg, IOFlow.Output, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 1.0, Unit.kg, IOFlow.Output, State.waste));
+        box.addProcessFlow(new ProcessFlow("paper", "boxProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+
+        validator = new CircularityValidator(1, 1, 1, 1, productSystem);
+    }
+
+    @Test
+    void validate() {
+        //Test valid ProductSystem
+        assertTrue(validator.validate().isEmpty());
+
+        //Test every problem is reported
+        bottle.addProcessFlow(new ProcessFlow("glass", "bottleProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("plastic", "unknownProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 1.0, Unit.kg, IOFlow.Input, null));
+        Process boxRecycling = new Process("boxRecycling", "box", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        boxRecycling.addProcessFlow(new ProcessFlow("paper", "boxRecycling", 1.0, Unit.kg, IOFlow.Output, State.waste));
+        productSystem.addProcess(boxRecycling);
+        LinkedHashMap<String, LinkedList<CircularityValidator.Violation>> report = validator.validate();
+        assertEquals(2, report.size());
+
+        LinkedList<CircularityValidator.Violation> violations = report.get("bottle");
+        assertEquals(3, violations.size());
+        assertEquals("Flow does not exist", violations.get(0).message());
+        assertEquals("glass", violations.get(0).flowName());
+        assertEquals("Process does not exist", violations.get(1).message());
+        assertEquals("Invalid processFlow state", violations.get(2).message());
+        assertEquals("bottle/bottleProcess/plastic: Invalid processFlow state", violations.get(2).toString());
+
+        //Test Circularity Flow checks
+        violations = report.get("box");
+        assertEquals(1, violations.size());
+        assertEquals(FlowStatus.unbalancedR.getMessage(), violations.get(0).message());
+        assertNull(violations.get(0).processName());
+    }
+
+    @Test
+    void validateSameAsCalculator() {
+        bottleRecycling.addProcessFlow(new ProcessFlow("paper", "bottleRecycling", 1.0, Unit.kg, IOFlow.Output, State.recycled));
+        validator.setLavg(-1);
+        LinkedList<CircularityValidator.Violation> violations = validator.validate().get("bottle");
+
+        //Test same statuses as the calculator of the product
+        LinkedHashMap<String, FlowStatus> expected = new CircularityCalculator("bottle", 1, 1, -1, 1, productSystem).validateCircularity();
+        assertEquals(expected.size(), violations.size());
+        for (CircularityValidator.Violation violation : violations) {
+            assertEquals(expected.get(violation.flowName()), violation.status());
+        }
+    }
+
+    @Test
+    void validateParallel() {
+        for (int i = 0; i < 200; i++) {
+            Process process = new Process("process" + i, "product" + i, ProcessType.primary, "operator", "location", "references", contact, "comment");
+            process.addProcessFlow(new ProcessFlow("plastic", "process" + i, 1.0, Unit.kg, IOFlow.Input, State.virgin));
+            if (i % 10 == 0) {
+                process.addProcessFlow(new ProcessFlow("glass", "process" + i, 2.0, Unit.kg, IOFlow.Input, State.virgin));
+            }
+            productSystem.addProcess(process);
+        }
+        LinkedHashMap<String, LinkedList<CircularityValidator.Violation>> sequential = validator.validate();
+        assertEquals(20, sequential.size());
+
+        //Test same report in parallel
+        validator.setForkJoinPool(new ForkJoinPool(4));
+        assertEquals(sequential, validator.validate());
+
+        //Test null ProductSystem
+        validator.setProductSystem(null);
+        assertThrows(IllegalArgumentException.class, () -> validator.validate());
+    }
+}
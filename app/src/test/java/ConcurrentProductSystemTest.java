@@ -0,0 +1,168 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import exceptions.DivideByZeroException;
+import exceptions.ElementNotFoundException;
+import org.junit.jupiter.api.*;
+
+import javax.management.InvalidAttributeValueException;
+import java.security.InvalidAlgorithmParameterException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ConcurrentProductSystemTest {
+
+    ConcurrentProductSystem productSystem;
+    Contact contact;
+
+    @BeforeEach
+    void setUp() {
+        productSystem = new ConcurrentProductSystem();
+        contact = new Contact("name", "email", "organization", "address");
+    }
+
+    @Test
+    void addAndRemove() throws ElementNotFoundException {
+        Flow flow = new Flow("flowName", FlowType.material, "comment");
+        Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addFlow(flow);
+        productSystem.addProcess(process);
+
+        //lookups
+        assertEquals(flow, productSystem.getFlowByName("flowName"));
+        assertEquals(flow, productSystem.getFlowById(flow.getId()));
+        assertEquals(process, productSystem.getProcessByName("processName"));
+        assertEquals(process, productSystem.getProcessById(process.getId()));
+        process.setName("renamed");
+        assertEquals(process, productSystem.getProcessByName("renamed"));
+
+        //duplicates
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> productSystem.addFlow(flow));
+        assertEquals("Flow already exists.", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> productSystem.addProcess(process));
+        assertEquals("Process already exists.", exception.getMessage());
+
+        //the lists returned are copies
+        LinkedList<Flow> flows = productSystem.getFlows();
+        flows.clear();
+        assertEquals(1, productSystem.getFlows().size());
+        assertEquals(1, productSystem.getFlowCount());
+        assertEquals(1, productSystem.getProcessCount());
+
+        //removal
+        assertEquals(flow, productSystem.removeFlow("flowName"));
+        assertNull(productSystem.getFlowById(flow.getId()));
+        exception = assertThrows(ElementNotFoundException.class, () -> productSystem.removeProcess("processName"));
+        assertEquals("Process not found", exception.getMessage());
+        assertEquals(process, productSystem.removeProcess("renamed"));
+        assertTrue(productSystem.getProcesses().isEmpty());
+        assertEquals(0, productSystem.getProcessCount());
+        exception = assertThrows(IllegalArgumentException.class, () -> productSystem.removeFlow("flowName"));
+        assertEquals("Empty list", exception.getMessage());
+    }
+
+    @Test
+    void readWhileWriting() throws InterruptedException {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread writer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 2000; i++) {
+                    productSystem.addFlow(new Flow("flow" + i, FlowType.material, "comment"));
+                    if (i % 10 == 9) {
+                        productSystem.removeFlow("flow" + (i - 5));
+                    }
+                }
+            } catch (Throwable e) {
+                failure.set(e);
+            }
+        });
+        writer.start();
+
+        //iterating while flows are added and removed never fails, and sees the flows in order
+        while (writer.isAlive()) {
+            ProductSystem snapshot = productSystem.snapshot();
+            int size = snapshot.getFlows().size();
+            assertEquals(size, snapshot.getFlows().size());
+            int previous = -1;
+            for (Flow flow : productSystem.getFlows()) {
+                int number = Integer.parseInt(flow.getName().substring(4));
+                assertTrue(number > previous);
+                previous = number;
+            }
+        }
+        writer.join();
+        assertNull(failure.get());
+        assertEquals(1800, productSystem.getFlows().size());
+        assertEquals(2200, productSystem.getVersion());
+    }
+
+    @Test
+    void listeners() throws Exception {
+        LinkedList<String> events = new LinkedList<>();
+        AtomicReference<Thread> writer = new AtomicReference<>();
+        productSystem.addListener(new ProductSystemListener() {
+            @Override
+            public void flowAdded(Flow flow) {
+                //the flow is indexed before the listeners are called
+                assertSame(flow, productSystem.getFlowById(flow.getId()));
+                assertSame(flow, productSystem.getFlowByName(flow.getName()));
+                events.add("added " + flow.getName());
+                if (flow.getName().equals("first")) {
+                    //other writers are not blocked by a listener
+                    Thread thread = new Thread(() -> productSystem.addFlow(new Flow("other", FlowType.material, "comment")));
+                    writer.set(thread);
+                    thread.start();
+                    long deadline = System.nanoTime() + 5_000_000_000L;
+                    while (productSystem.getFlowCount() < 2 && System.nanoTime() < deadline) {
+                        Thread.onSpinWait();
+                    }
+                    assertEquals(2, productSystem.getFlowCount());
+                    //a listener may change the ProductSystem
+                    productSystem.addFlow(new Flow("nested", FlowType.material, "comment"));
+                }
+            }
+
+            @Override
+            public void flowRemoved(Flow flow) {
+                assertNull(productSystem.getFlowById(flow.getId()));
+                events.add("removed " + flow.getName());
+            }
+        });
+
+        productSystem.addFlow(new Flow("first", FlowType.material, "comment"));
+        writer.get().join(5000);
+        productSystem.removeFlow("first");
+
+        //the listeners are called once per change, in the order of the changes
+        assertEquals(List.of("added first", "added other", "added nested", "removed first"), events);
+        assertEquals(2, productSystem.getFlowCount());
+        assertNull(productSystem.getFlowByName("first"));
+    }
+
+    @Test
+    void calculateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+        Process bottle = new Process("bottleProcess", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        Process bottleRecycling = new Process("bottleRecycling", "bottle", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 3.0, Unit.kg, IOFlow.Output, State.waste));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 3.0, Unit.kg, IOFlow.Output, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 1.0, Unit.kg, IOFlow.Output, State.waste));
+        productSystem.addProcess(bottle);
+        productSystem.addProcess(bottleRecycling);
+
+        //same result as a ProductSystem
+        CircularityCalculator circularityCalculator = new CircularityCalculator("bottle", 1, 1, 1, 1, productSystem);
+        circularityCalculator.calculateCircularity();
+        assertEquals(0.27, circularityCalculator.getCircularityFlows().getFirst().getMCIp());
+
+        //changes to the process flows are reported
+        long version = productSystem.getVersion();
+        bottle.getProcessFlows().getFirst().setFlowQuantity(20.0);
+        assertEquals(version + 1, productSystem.getVersion());
+    }
+}
@@ -0,0 +1,86 @@
+import esii.grupo19.CsvTokenizer;
+import enums.*;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CsvTokenizerTest {
+
+    @Test
+    void nextRecordSameAsSplit() throws IOException {
+        String[] lines = {"a,b,c", "a, b ,c,", " a,,", ",", ",,a", "", "  ", "a,,b,,", "a, ", "single"};
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(String.join("\r\n", lines)))) {
+            for (String line : lines) {
+                assertTrue(tokenizer.nextRecord());
+                String[] values = line.split(",");
+                assertEquals(values.length, tokenizer.getFieldCount(), line);
+                for (int i = 0; i < values.length; i++) {
+                    assertEquals(values[i].trim(), tokenizer.getField(i));
+                }
+            }
+            assertFalse(tokenizer.nextRecord());
+        }
+    }
+
+    @Test
+    void nextRecordLineEndings() throws IOException {
+        //\n, \r and \r\n, with no extra record after the last terminator
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("a\nb\rc\r\n\nd\n"))) {
+            String[] expected = {"a", "b", "c", "", "d"};
+            for (String value : expected) {
+                assertTrue(tokenizer.nextRecord());
+                assertEquals(1, tokenizer.getFieldCount());
+                assertEquals(value, tokenizer.getField(0));
+            }
+            assertFalse(tokenizer.nextRecord());
+        }
+
+        //lines longer than the initial line buffer
+        String longLine = "x".repeat(100000) + ",y";
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(longLine + "\n" + longLine))) {
+            assertTrue(tokenizer.nextRecord());
+            assertTrue(tokenizer.nextRecord());
+            assertEquals(2, tokenizer.getFieldCount());
+            assertEquals(100000, tokenizer.getField(0).length());
+            assertEquals("y", tokenizer.getField(1));
+        }
+    }
+
+    @Test
+    void getDoubleSameAsParseDouble() throws IOException {
+        String[] numbers = {"1.0", "0", "-0", "+2.5", " 3.75 ", "0.1", "123456.789", "1e3", "1.5E-7", "2.", ".5",
+                "9007199254740993", "0.30000000000000004", "1e300", "4.9e-324", "NaN", "-Infinity", "1.0d", "0x1p3",
+                "12345678901234567890", "1e-22", "1e23"};
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader(String.join(",", numbers)))) {
+            assertTrue(tokenizer.nextRecord());
+            for (int i = 0; i < numbers.length; i++) {
+                assertEquals(Double.doubleToLongBits(Double.parseDouble(numbers[i])), Double.doubleToLongBits(tokenizer.getDouble(i)), numbers[i]);
+            }
+        }
+
+        //invalid numbers
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("notANumber,,1e,-,."))) {
+            assertTrue(tokenizer.nextRecord());
+            assertThrows(NumberFormatException.class, () -> tokenizer.getDouble(0));
+            assertThrows(NumberFormatException.class, () -> tokenizer.getDouble(1));
+            assertThrows(NumberFormatException.class, () -> tokenizer.getDouble(2));
+            assertThrows(NumberFormatException.class, () -> tokenizer.getDouble(3));
+            assertThrows(NumberFormatException.class, () -> tokenizer.getDouble(4));
+            assertThrows(IndexOutOfBoundsException.class, () -> tokenizer.getDouble(5));
+        }
+    }
+
+    @Test
+    void getEnum() throws IOException {
+        try (CsvTokenizer tokenizer = new CsvTokenizer(new StringReader("kg, Input ,virgins"))) {
+            assertTrue(tokenizer.nextRecord());
+            assertEquals(Unit.kg, tokenizer.getEnum(0, Unit.values()));
+            assertEquals(IOFlow.Input, tokenizer.getEnum(1, IOFlow.values()));
+            assertThrows(IllegalArgumentException.class, () -> tokenizer.getEnum(2, State.values()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> new CsvTokenizer(null));
+    }
+}
@@ -3,11 +3,19 @@ import esii.grupo19.*;
 import esii.grupo19.Process;
 import org.junit.jupiter.api.*;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.DoubleBuffer;
+import java.nio.charset.StandardCharsets;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import static org.junit.jupiter.api.Assertions.*;
 
 
@@ -53,6 +61,278 @@ public class DataExporterTest {
         }
     }
 
+    @Test
+    public void testSaveToCsvStream() throws IOException {
+        DataExporter dataExporter = new DataExporter();
+        ProductSystem productSystem = new ProductSystem();
+        Contact contact = new Contact("name", "email", "organization", "endereço");
+        Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addFlow(new Flow("flowName", FlowType.energy, "comment"));
+        productSystem.addProcess(process);
+        process.addProcessFlow(new ProcessFlow("flowName", "processName", 1.0, Unit.g, IOFlow.Input, State.virgin));
+
+        //same rows as the file export, in UTF-8
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dataExporter.toCsvProductSystem(productSystem, outputStream);
+        StringWriter expected = new StringWriter();
+        productSystem.writeCsv(expected);
+        assertEquals(expected.toString(), outputStream.toString(StandardCharsets.UTF_8));
+        assertEquals("flowName,energy,comment, \n" + "processName,productName,primary,operator,location,references,name,email,organization,endereço,comment,\n" + "flowName,processName,1.0,g,Input,virgin", expected.toString());
+
+        String fileName = "testStream.csv";
+        try {
+            dataExporter.toCsvProductSystem(productSystem, fileName);
+            assertEquals(expected.toString(), Files.readString(Path.of(fileName), StandardCharsets.UTF_8));
+        } finally {
+            Files.deleteIfExists(Path.of(fileName));
+        }
+
+        //null arguments
+        assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvProductSystem(productSystem, (java.io.OutputStream) null));
+    }
+
+    @Test
+    public void testSaveToJsonStream() throws IOException {
+        DataExporter dataExporter = new DataExporter();
+        ProductSystem productSystem = new ProductSystem();
+        Contact contact = new Contact("name", "email", "organization", "endereço");
+        Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addFlow(new Flow("flowName", FlowType.energy, "comment"));
+        productSystem.addProcess(process);
+        process.addProcessFlow(new ProcessFlow("flowName", "processName", 1.0, Unit.g, IOFlow.Input, State.virgin));
+
+        //same document as the file export, in UTF-8
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        dataExporter.toJsonProductSystem(productSystem, outputStream);
+        StringWriter expected = new StringWriter();
+        productSystem.writeJson(expected);
+        assertEquals(expected.toString(), outputStream.toString(StandardCharsets.UTF_8));
+        assertTrue(expected.toString().contains("\"adress\":\"endereço\""));
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> dataExporter.toJsonProductSystem(productSystem, (ByteArrayOutputStream) null));
+        assertEquals("ProductSystem or outputStream must not be null.", exception.getMessage());
+    }
+
+    @Test
+    public void testSaveToBinary() throws IOException {
+        DataExporter dataExporter = new DataExporter();
+        ProductSystem productSystem = new ProductSystem();
+        Contact contact = new Contact("name", "email", null, "endereço");
+        Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        Process sameName = new Process("processName", "productName", null, "operator", "location", "references", null, null);
+        ProcessFlow processFlow = new ProcessFlow("flowName", "processName", 0.1, Unit.g, IOFlow.Input, State.virgin);
+        productSystem.addFlow(new Flow("flowName", FlowType.energy, "comment"));
+        productSystem.addFlow(new Flow("otherFlow", null, null));
+        productSystem.addProcess(process);
+        productSystem.addProcess(sameName);
+        process.addProcessFlow(processFlow);
+        process.addProcessFlow(new ProcessFlow("otherFlow", "processName", -2.5e-300, Unit.Km, IOFlow.Output, null));
+        sameName.addProcessFlow(processFlow);
+        //more than the size of the buffer
+        for (int i = 0; i < 5000; i++) {
+            sameName.addProcessFlow(new ProcessFlow("flow" + i, "processName", i, Unit.kg, IOFlow.Input, State.recycled));
+        }
+
+        String fileName = "testProductSystem.bin";
+        try {
+            dataExporter.toBinaryProductSystem(productSystem, fileName);
+            ProductSystem loaded = new Parser().loadFromBinary(fileName);
+
+            assertEquals(2, loaded.getFlows().size());
+            assertEquals(productSystem.getFlows().get(0).getId(), loaded.getFlows().get(0).getId());
+            assertNull(loaded.getFlows().get(1).getType());
+            assertEquals(2, loaded.getProcesses().size());
+            for (int i = 0; i < 2; i++) {
+                Process expected = productSystem.getProcesses().get(i);
+                Process actual = loaded.getProcesses().get(i);
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getProcessType(), actual.getProcessType());
+                assertEquals(expected.getComment(), actual.getComment());
+                assertEquals(expected.getProcessFlows().size(), actual.getProcessFlows().size());
+                for (int j = 0; j < expected.getProcessFlows().size(); j++) {
+                    assertEquals(expected.getProcessFlows().get(j).getId(), actual.getProcessFlows().get(j).getId());
+                    assertEquals(expected.getProcessFlows().get(j).toCSVString(), actual.getProcessFlows().get(j).toCSVString());
+                }
+            }
+            assertEquals("endereço", loaded.getProcesses().get(0).getContact().getAddress());
+            assertNull(loaded.getProcesses().get(0).getContact().getPhone());
+            assertNull(loaded.getProcesses().get(1).getContact());
+            assertSame(loaded.getProcesses().get(0).getProcessFlows().get(0), loaded.getProcesses().get(1).getProcessFlows().get(0));
+
+            //not a snapshot
+            Files.writeString(Path.of(fileName), "flowName,energy,comment");
+            Exception exception = assertThrows(IOException.class, () -> new Parser().loadFromBinary(fileName));
+            assertEquals("Invalid snapshot", exception.getMessage());
+        } finally {
+            Files.deleteIfExists(Path.of(fileName));
+        }
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> dataExporter.toBinaryProductSystem(null, fileName));
+        assertEquals("ProductSystem or fileName must not be null.", exception.getMessage());
+    }
+
+    @Test
+    public void testSaveToCsvCalculators() throws Exception {
+        DataExporter dataExporter = new DataExporter();
+        ProductSystem productSystem = new ProductSystem();
+        Contact contact = new Contact("name", "email", "organization", "address");
+        Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addFlow(new Flow("flowName", FlowType.material, "comment"));
+        productSystem.addFlow(new Flow("garrafa de plástico", FlowType.material, "comment"));
+        productSystem.addProcess(process);
+        process.addProcessFlow(new ProcessFlow("flowName", "processName", 1.0, Unit.g, IOFlow.Input, State.virgin));
+
+        LinkedList<CircularityCalculator> calculators = new LinkedList<>();
+        for (int i = 0; i < 20; i++) {
+            CircularityCalculator calculator = new CircularityCalculator("product" + i, 1, 1, 1, 1, productSystem);
+            CircularityFlow circularityFlow = new CircularityFlow("flow" + i, 247, -143.26, 103.15, 0, 40.11, 103.74);
+            circularityFlow.calculateMCIp(1, 1, 1, 1);
+            circularityFlow.calculateEp();
+            circularityFlow.calculateEs();
+            LinkedList<CircularityFlow> circularityFlows = new LinkedList<>();
+            circularityFlows.add(circularityFlow);
+            calculator.setCircularityFlows(circularityFlows);
+            calculators.add(calculator);
+        }
+
+        Path directory = Files.createTempDirectory("calculators");
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            //Test same files as the single export, written in parallel
+            LinkedList<Path> files = dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), executor);
+            assertEquals(calculators.size(), files.size());
+            for (int i = 0; i < calculators.size(); i++) {
+                assertEquals(directory.resolve("product" + i + ".csv"), files.get(i));
+                assertEquals(calculators.get(i).toCsvString(), Files.readString(files.get(i), StandardCharsets.UTF_8));
+            }
+
+            //Test sequential export replaces the files and leaves no temporary files
+            calculators.getFirst().setResult(0.5);
+            dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), null);
+            assertEquals(calculators.getFirst().toCsvString(), Files.readString(files.getFirst(), StandardCharsets.UTF_8));
+            try (var entries = Files.list(directory)) {
+                assertEquals(calculators.size(), entries.count());
+            }
+
+            //Test invalid calculators
+            calculators.add(new CircularityCalculator("product0", 1, 1, 1, 1, productSystem));
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), executor));
+            assertEquals("Duplicate product name: product0", exception.getMessage());
+            calculators.getLast().setProductName("PRODUCT0");
+            exception = assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), executor));
+            assertEquals("Duplicate product name: PRODUCT0", exception.getMessage());
+
+            //Test product names placing the file outside the directory
+            calculators.getLast().setProductName("../product");
+            exception = assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), executor));
+            assertEquals("Invalid product name: ../product", exception.getMessage());
+            calculators.getLast().setProductName("sub/product");
+            exception = assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), executor));
+            assertEquals("Invalid product name: sub/product", exception.getMessage());
+            calculators.getLast().setProductName(directory.resolve("product").toAbsolutePath().toString());
+            assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), executor));
+
+            calculators.getLast().setProductName("empty");
+            exception = assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvCircularityCalculators(calculators, directory.toString(), executor));
+            assertEquals("Empty Circularity Flow list", exception.getMessage());
+            assertThrows(IllegalArgumentException.class, () -> dataExporter.toCsvCircularityCalculators(null, directory.toString(), executor));
+        } finally {
+            executor.shutdown();
+            try (var entries = Files.list(directory)) {
+                for (Path file : entries.toList()) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+    }
+
+    @Test
+    public void testSaveToBinaryResults() throws Exception {
+        DataExporter dataExporter = new DataExporter();
+        ProductSystem productSystem = new ProductSystem();
+        LinkedList<CircularityCalculator> calculators = new LinkedList<>();
+        for (int product = 0; product < 2; product++) {
+            CircularityCalculator calculator = new CircularityCalculator("product" + product, 1, 1, 1, 1, productSystem);
+            LinkedList<CircularityFlow> circularityFlows = new LinkedList<>();
+            for (int i = 0; i < 3000; i++) {
+                CircularityFlow circularityFlow = new CircularityFlow("flow" + i, 247 + i, -143.26, 103.15, 0, 40.11, 103.74);
+                circularityFlow.calculateMCIp(1, 1, 1, 1);
+                circularityFlow.calculateEp();
+                circularityFlow.calculateEs();
+                circularityFlows.add(circularityFlow);
+            }
+            calculator.setCircularityFlows(circularityFlows);
+            calculators.add(calculator);
+        }
+
+        String fileName = "testResults.bin";
+        try {
+            dataExporter.toBinaryCircularityResults(calculators, fileName);
+            CircularityResults results = new Parser().loadFromBinaryResults(fileName);
+
+            //Test one row per flow, with the values of the flow
+            assertEquals(6000, results.size());
+            assertEquals(2, results.getRowGroupCount());
+            int row = 0;
+            for (CircularityCalculator calculator : calculators) {
+                for (CircularityFlow circularityFlow : calculator.getCircularityFlows()) {
+                    assertEquals(calculator.getProductName(), results.getProductName(row));
+                    assertEquals(circularityFlow.getFlowName(), results.getFlowName(row));
+                    assertEquals(circularityFlow.getV(), results.get(ResultColumn.V, row));
+                    assertEquals(circularityFlow.getWf(), results.get(ResultColumn.Wf, row));
+                    assertEquals(circularityFlow.getEp(), results.get(ResultColumn.Ep, row));
+                    assertEquals(circularityFlow.getEs(), results.get(ResultColumn.Es, row));
+                    assertEquals(circularityFlow.getMCIp(), results.get(ResultColumn.MCIp, row));
+                    row++;
+                }
+            }
+
+            //Test columns and row group statistics
+            DoubleBuffer v = results.getColumn(ResultColumn.V);
+            assertEquals(6000, v.remaining());
+            assertTrue(v.isReadOnly());
+            assertEquals(247.0, results.getMin(ResultColumn.V, 0));
+            assertEquals(247.0 + 2999, results.getMax(ResultColumn.V, 0));
+            assertEquals(247.0 + 1096, results.getMin(ResultColumn.V, 1));
+            assertThrows(IndexOutOfBoundsException.class, () -> results.getMin(ResultColumn.V, 2));
+            assertThrows(IndexOutOfBoundsException.class, () -> results.get(ResultColumn.V, 6000));
+
+            //Test not a results file
+            Files.writeString(Path.of(fileName), "not a results file");
+            Exception exception = assertThrows(IOException.class, () -> new Parser().loadFromBinaryResults(fileName));
+            assertEquals("Invalid results file", exception.getMessage());
+
+            //Test metrics not calculated are written as NaN, and ignored by the statistics
+            calculators.getFirst().getCircularityFlows().add(new CircularityFlow("flow", 1, 0, 0, 0, 0, 0));
+            dataExporter.toBinaryCircularityResults(calculators, fileName);
+            CircularityResults notCalculated = new Parser().loadFromBinaryResults(fileName);
+            assertTrue(Double.isNaN(notCalculated.get(ResultColumn.MCIp, 3000)));
+            assertEquals(1.0, notCalculated.get(ResultColumn.V, 3000));
+            assertEquals(1.0, notCalculated.getMin(ResultColumn.V, 0));
+            assertFalse(Double.isNaN(notCalculated.getMax(ResultColumn.MCIp, 0)));
+
+            //Test a calculator of calculateCircularity, which does not calculate Ep and Es
+            Contact contact = new Contact("name", "email", "organization", "address");
+            Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+            productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+            productSystem.addProcess(process);
+            process.addProcessFlow(new ProcessFlow("plastic", "processName", 2.0, Unit.kg, IOFlow.Input, State.virgin));
+            process.addProcessFlow(new ProcessFlow("plastic", "processName", 1.0, Unit.kg, IOFlow.Output, State.waste));
+            CircularityCalculator calculated = new CircularityCalculator("productName", 1, 1, 1, 1, productSystem);
+            calculated.calculateCircularity();
+            dataExporter.toBinaryCircularityResults(List.of(calculated), fileName);
+            CircularityResults calculatedResults = new Parser().loadFromBinaryResults(fileName);
+            assertEquals(1, calculatedResults.size());
+            assertEquals(calculated.getCircularityFlows().getFirst().getMCIp(), calculatedResults.get(ResultColumn.MCIp, 0));
+            assertEquals(2.0, calculatedResults.get(ResultColumn.V, 0));
+            assertTrue(Double.isNaN(calculatedResults.get(ResultColumn.Ep, 0)));
+            assertTrue(Double.isNaN(calculatedResults.getMin(ResultColumn.Es, 0)));
+            assertTrue(Double.isNaN(calculatedResults.getMax(ResultColumn.Es, 0)));
+        } finally {
+            Files.deleteIfExists(Path.of(fileName));
+        }
+    }
+
     private void assertCsvContent(String fileName, String expectedContent) throws IOException {
         try (BufferedReader reader = new BufferedReader(new FileReader(fileName))) {
             String line;
@@ -0,0 +1,205 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import exceptions.DivideByZeroException;
+import exceptions.ElementNotFoundException;
+import org.junit.jupiter.api.*;
+
+import javax.management.InvalidAttributeValueException;
+import java.security.InvalidAlgorithmParameterException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class IncrementalCircularityCalculatorTest {
+
+    ProductSystem productSystem;
+    Contact contact;
+    Process bottle;
+    Process bottleRecycling;
+    IncrementalCircularityCalculator calculator;
+
+    @BeforeEach
+    void setUp() {
+        productSystem = new ProductSystem();
+        contact = new Contact("name", "email", "organization", "address");
+        productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+        productSystem.addFlow(new Flow("paper", FlowType.service, "comment"));
+        productSystem.addFlow(new Flow("electricity", FlowType.energy, "comment"));
+
+        bottle = new Process("bottleProcess", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        bottleRecycling = new Process("bottleRecycling", "bottle", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(bottle);
+        productSystem.addProcess(bottleRecycling);
+
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("electricity", "bottleProcess", 2.0, Unit.kWh, IOFlow.Input, State.virgin));
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 3.0, Unit.kg, IOFlow.Output, State.waste));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 4.0, Unit.kg, IOFlow.Input, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 3.0, Unit.kg, IOFlow.Output, State.recycled));
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 1.0, Unit.kg, IOFlow.Output, State.waste));
+
+        calculator = new IncrementalCircularityCalculator("bottle", 1, 1, 1, 1, productSystem);
+    }
+
+    @AfterEach
+    void tearDown() {
+        calculator.close();
+    }
+
+    private void assertSameAsFullCalculation() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        CircularityCalculator full = new CircularityCalculator("bottle", calculator.getU(), calculator.getL(),
+                calculator.getLavg(), calculator.getUavg(), productSystem);
+        assertEquals(full.calculateCircularity(), calculator.calculateCircularity());
+        assertEquals(full.getCircularityFlows().size(), calculator.getCircularityFlows().size());
+        for (int i = 0; i < full.getCircularityFlows().size(); i++) {
+            CircularityFlow expected = full.getCircularityFlows().get(i);
+            CircularityFlow actual = calculator.getCircularityFlows().get(i);
+            assertEquals(expected.getFlowName(), actual.getFlowName());
+            assertEquals(expected.getV(), actual.getV());
+            assertEquals(expected.getR(), actual.getR());
+            assertEquals(expected.getWc(), actual.getWc());
+            assertEquals(expected.getMCIp(), actual.getMCIp());
+        }
+    }
+
+    @Test
+    void calculateCircularity() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //first calculation rebuilds the circularity flows
+        assertTrue(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+        assertFalse(calculator.isInvalidated());
+        assertEquals(0.27, calculator.getCircularityFlows().get(0).getMCIp());
+    }
+
+    @Test
+    void processFlowAdded() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        calculator.calculateCircularity();
+
+        //process flow of the last process is accumulated without a rebuild
+        bottleRecycling.addProcessFlow(new ProcessFlow("plastic", "bottleRecycling", 2.0, Unit.kg, IOFlow.Input, State.virgin));
+        assertFalse(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+
+        //process flow of an earlier process is inserted in order
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 5.0, Unit.kg, IOFlow.Input, State.virgin));
+        assertFalse(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+
+        //energy flows are ignored
+        bottle.addProcessFlow(new ProcessFlow("electricity", "bottleProcess", 1.0, Unit.kWh, IOFlow.Input, State.virgin));
+        assertFalse(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+
+        //a new circularity flow
+        bottleRecycling.addProcessFlow(new ProcessFlow("paper", "bottleRecycling", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        assertFalse(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+        assertEquals(2, calculator.getCircularityFlows().size());
+    }
+
+    @Test
+    void processFlowRemoved() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException, ElementNotFoundException {
+        ProcessFlow virgin = new ProcessFlow("plastic", "bottleRecycling", 2.0, Unit.kg, IOFlow.Input, State.virgin);
+        bottleRecycling.addProcessFlow(virgin);
+        bottle.addProcessFlow(new ProcessFlow("plastic", "bottleProcess", 15.0, Unit.kg, IOFlow.Input, State.virgin));
+        calculator.calculateCircularity();
+
+        //removing a later contribution sums the remaining ones again
+        bottleRecycling.removeProcessFlow(virgin.getId());
+        assertFalse(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+
+        //removing the first contribution of a flow rebuilds it
+        bottle.removeProcessFlow(bottle.getProcessFlows().getFirst().getId());
+        assertTrue(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+    }
+
+    @Test
+    void processFlowChanged() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        calculator.calculateCircularity();
+
+        //quantity changes sum the flow again without a rebuild
+        bottle.getProcessFlows().getFirst().setFlowQuantity(20.0);
+        assertFalse(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+
+        //process flows of other products are ignored
+        ProcessFlow paper = new ProcessFlow("paper", "boxProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin);
+        Process box = new Process("boxProcess", "box", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        box.addProcessFlow(paper);
+        productSystem.addProcess(box);
+        calculator.calculateCircularity();
+        paper.setFlowQuantity(2.0);
+        assertFalse(calculator.isInvalidated());
+
+        //an energy flow of the product that becomes a material flow rebuilds the circularity flows
+        bottle.getProcessFlows().get(1).setUnit(Unit.kg);
+        bottle.getProcessFlows().get(1).setNameFlow("plastic");
+        assertTrue(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+    }
+
+    @Test
+    void rebuildOnChanges() throws DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        calculator.calculateCircularity();
+
+        //new processes and flows rebuild the circularity flows
+        Process bottleFilling = new Process("bottleFilling", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        bottleFilling.addProcessFlow(new ProcessFlow("plastic", "bottleFilling", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        productSystem.addProcess(bottleFilling);
+        assertTrue(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+
+        //processes of other products are ignored
+        Process box = new Process("boxProcess", "box", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(box);
+        calculator.calculateCircularity();
+        box.addProcessFlow(new ProcessFlow("paper", "boxProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        assertFalse(calculator.isInvalidated());
+
+        //process changes rebuild the circularity flows
+        bottleRecycling.setProcessType(ProcessType.recycling);
+        assertTrue(calculator.isInvalidated());
+        assertSameAsFullCalculation();
+
+        //changes made directly to the lists need an explicit invalidation
+        bottle.getProcessFlows().add(new ProcessFlow("plastic", "bottleProcess", 5.0, Unit.kg, IOFlow.Input, State.virgin));
+        assertFalse(calculator.isInvalidated());
+        calculator.invalidate();
+        assertSameAsFullCalculation();
+
+        //new parameters are applied to every circularity flow
+        calculator.setL(2);
+        assertSameAsFullCalculation();
+    }
+
+    @Test
+    void calculateCircularityErrors() throws ElementNotFoundException, DivideByZeroException, InvalidAttributeValueException, InvalidAlgorithmParameterException {
+        //same errors as a full calculation
+        Process bottleEnergy = new Process("bottleEnergy", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addProcess(bottleEnergy);
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> calculator.calculateCircularity());
+        assertEquals("Empty ProcessFlow list", exception.getMessage());
+
+        //unknown flow added after a calculation
+        productSystem.removeProcess("bottleEnergy");
+        assertDoesNotThrow(() -> calculator.calculateCircularity());
+        bottle.addProcessFlow(new ProcessFlow("glass", "bottleProcess", 1.0, Unit.kg, IOFlow.Input, State.virgin));
+        assertTrue(calculator.isInvalidated());
+        exception = assertThrows(IllegalArgumentException.class, () -> calculator.calculateCircularity());
+        assertEquals("Flow does not exist", exception.getMessage());
+
+        //closed, no longer listening but still up to date
+        calculator.close();
+        productSystem.removeProcess("bottleRecycling");
+        bottle.removeProcessFlow(bottle.getProcessFlows().getLast().getId());
+        assertFalse(productSystem.removeListener(calculator));
+        assertSameAsFullCalculation();
+
+        //null productSystem
+        calculator.setProductSystem(null);
+        exception = assertThrows(IllegalArgumentException.class, () -> calculator.calculateCircularity());
+        assertEquals("ProductSystem is null", exception.getMessage());
+    }
+}
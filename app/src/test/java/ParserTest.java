@@ -1,14 +1,23 @@
 import java.io.File;
 import java.io.IOException;
 
-import esii.grupo19.Parser;
-import esii.grupo19.ProductSystem;
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
 import org.junit.jupiter.api.*;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -67,6 +76,243 @@ public class ParserTest {
 
     }
 
+    @Test
+    public void testLoadFromCsvProcessFlowBeforeProcess() throws IOException {
+        String fileName = "forwardFlow.csv";
+        try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
+            //ProcessFlows before and after their processes, and one without a process
+            writer.write("flowName,processName,1.0,g,Input,virgin\n");
+            writer.write("flowName,material,comment\n");
+            writer.write("flowName,otherProcess,4.0,g,Input,virgin\n");
+            writer.write("processName,productName,primary,operator,location,references,name,email,organization,address,comment\n");
+            writer.write("flowName,processName,2.0,g,Output,waste\n");
+            writer.write("processName,productName,recycling,operator,location,references,name,email,organization,address,comment\n");
+            writer.write("flowName,processName,3.0,g,Output,recycled\n");
+        }
+        ProductSystem productSystem = parser.loadFromCsv(fileName);
+        Files.deleteIfExists(Path.of(fileName));
+
+        assertEquals(2, productSystem.getProcesses().size());
+        Process first = productSystem.getProcesses().get(0);
+        Process second = productSystem.getProcesses().get(1);
+        assertEquals(3, first.getProcessFlows().size());
+        assertEquals(1.0, first.getProcessFlows().get(0).getFlowQuantity());
+        assertEquals(2.0, first.getProcessFlows().get(1).getFlowQuantity());
+        assertEquals(3.0, first.getProcessFlows().get(2).getFlowQuantity());
+        //processes with the same name share the process flows read after them
+        assertEquals(1, second.getProcessFlows().size());
+        assertSame(first.getProcessFlows().get(2), second.getProcessFlows().get(0));
+    }
+
+    @Test
+    public void testLoadFromCsvParallel() throws IOException {
+        //large enough to be split in several chunks
+        Path file = Files.createTempFile("parallelFlow", ".csv");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (int i = 0; i < 20000; i++) {
+                writer.write("flow" + i + ",material,comment\r\n");
+                writer.write("flow" + i + ",process" + (i + 1) + "," + (i * 0.25) + ",kg,Input,virgin\n");
+                writer.write("process" + i + ",product" + (i % 10) + ",primary,operator,location,references,name,email,organization,address,comment\n");
+                writer.write("flow" + i + ",process" + i + "," + i + ".5,kg,Output,waste\n");
+            }
+        }
+        ProductSystem expected = parser.loadFromCsv(file.toString());
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            ProductSystem productSystem = parser.loadFromCsvParallel(file.toString(), pool);
+            assertEquals(expected.getFlows().size(), productSystem.getFlows().size());
+            assertEquals(expected.getProcesses().size(), productSystem.getProcesses().size());
+            for (int i = 0; i < expected.getProcesses().size(); i++) {
+                Process expectedProcess = expected.getProcesses().get(i);
+                Process process = productSystem.getProcesses().get(i);
+                assertEquals(expectedProcess.getName(), process.getName());
+                assertEquals(expectedProcess.getProcessFlows().size(), process.getProcessFlows().size());
+                for (int j = 0; j < process.getProcessFlows().size(); j++) {
+                    assertEquals(expectedProcess.getProcessFlows().get(j).toCSVString(), process.getProcessFlows().get(j).toCSVString());
+                }
+            }
+            for (int i = 0; i < expected.getFlows().size(); i++) {
+                assertEquals(expected.getFlows().get(i).getName(), productSystem.getFlows().get(i).getName());
+            }
+
+            //the error of the first invalid line is thrown
+            try (BufferedWriter writer = Files.newBufferedWriter(file, StandardOpenOption.APPEND)) {
+                writer.write("linha,extra\n");
+                for (int i = 0; i < 30000; i++) {
+                    writer.write("flow" + i + ",material,comment\n");
+                }
+                writer.write("flowName,energyy,comment\n");
+            }
+            Exception exception = assertThrows(IOException.class, () -> parser.loadFromCsvParallel(file.toString(), pool));
+            assertEquals("Invalid Number of lines", exception.getMessage());
+
+            //empty file
+            Files.write(file, new byte[0]);
+            assertEquals(0, parser.loadFromCsvParallel(file.toString(), pool).getFlows().size());
+        } finally {
+            pool.shutdown();
+        }
+
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> parser.loadFromCsvParallel(null));
+        assertEquals("File name must not be null.", exception.getMessage());
+        String invalidDataCsvFileName = "invalidDataParallelFlow.csv";
+        createInvalidDataCsvFile(invalidDataCsvFileName);
+        exception = assertThrows(IllegalArgumentException.class, () -> parser.loadFromCsvParallel(invalidDataCsvFileName));
+        assertEquals("Invalid arguments", exception.getMessage());
+        new File(invalidDataCsvFileName).deleteOnExit();
+    }
+
+    @Test
+    public void testLoadFromJson() throws IOException {
+        ProductSystem productSystem = new ProductSystem();
+        Contact contact = new Contact("name", "email", "organization", "address");
+        Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        Process sameName = new Process("processName", "productName", ProcessType.recycling, "operator", "location", "references", null, "comment");
+        ProcessFlow processFlow = new ProcessFlow("flowName", "processName", 1.25, Unit.g, IOFlow.Input, State.virgin);
+        productSystem.addFlow(new Flow("flowName", FlowType.material, "comment \"quoted\"\n"));
+        productSystem.addFlow(new Flow("otherFlow", null, null));
+        productSystem.addFlow(new Flow("garrafa de plástico", FlowType.material, "comment"));
+        productSystem.addProcess(process);
+        productSystem.addProcess(sameName);
+        process.addProcessFlow(processFlow);
+        process.addProcessFlow(new ProcessFlow("otherFlow", "processName", 2.0, Unit.kg, IOFlow.Output, State.waste));
+        sameName.addProcessFlow(processFlow);
+
+        String fileName = "testProductSystemLoad.json";
+        try {
+            productSystem.saveToJson(fileName);
+            ProductSystem loaded = parser.loadFromJson(fileName);
+
+            //written in UTF-8, whatever the platform charset
+            assertTrue(Files.readString(Path.of(fileName), StandardCharsets.UTF_8).contains("garrafa de plástico"));
+
+            //same ids and values
+            assertEquals(productSystem.getFlows().size(), loaded.getFlows().size());
+            for (int i = 0; i < productSystem.getFlows().size(); i++) {
+                Flow expected = productSystem.getFlows().get(i);
+                Flow actual = loaded.getFlows().get(i);
+                assertEquals(expected.getId(), actual.getId());
+                assertEquals(expected.getName(), actual.getName());
+                assertEquals(expected.getType(), actual.getType());
+                assertEquals(expected.getComment(), actual.getComment());
+            }
+            assertEquals(2, loaded.getProcesses().size());
+            Process loadedProcess = loaded.getProcessById(process.getId());
+            assertEquals(process.getProcessType(), loadedProcess.getProcessType());
+            assertEquals("address", loadedProcess.getContact().getAddress());
+            assertEquals("organization", loadedProcess.getContact().getPhone());
+            assertEquals(2, loadedProcess.getProcessFlows().size());
+            ProcessFlow loadedProcessFlow = loadedProcess.getProcessFlows().get(0);
+            assertEquals(processFlow.getId(), loadedProcessFlow.getId());
+            assertEquals(processFlow.toCSVString(), loadedProcessFlow.toCSVString());
+            assertEquals(process.toCSVString(), loadedProcess.toCSVString());
+            //shared process flows stay shared, missing contacts stay missing
+            Process loadedSameName = loaded.getProcessById(sameName.getId());
+            assertNull(loadedSameName.getContact());
+            assertSame(loadedProcessFlow, loadedSameName.getProcessFlows().get(0));
+
+            //invalid files
+            Files.writeString(Path.of(fileName), "{\"flows\":[{\"id\":\"not an id\"}]}");
+            Exception exception = assertThrows(IllegalArgumentException.class, () -> parser.loadFromJson(fileName));
+            assertEquals("Invalid arguments", exception.getMessage());
+            Files.writeString(Path.of(fileName), "{\"flows\":[{\"type\":\"gas\"}]}");
+            exception = assertThrows(IllegalArgumentException.class, () -> parser.loadFromJson(fileName));
+            assertEquals("Invalid arguments", exception.getMessage());
+            Files.writeString(Path.of(fileName), "{\"flows\":[");
+            assertThrows(IOException.class, () -> parser.loadFromJson(fileName));
+            exception = assertThrows(IllegalArgumentException.class, () -> parser.loadFromJson(null));
+            assertEquals("File name must not be null.", exception.getMessage());
+        } finally {
+            Files.deleteIfExists(Path.of(fileName));
+        }
+    }
+
+
+    @Test
+    public void testLoadCompressed() throws IOException {
+        ProductSystem productSystem = new ProductSystem();
+        Contact contact = new Contact("name", "email", "organization", "address");
+        Process process = new Process("processName", "productName", ProcessType.primary, "operator", "location", "references", contact, "comment");
+        productSystem.addFlow(new Flow("flowName", FlowType.material, "comment"));
+        productSystem.addProcess(process);
+        for (int i = 0; i < 1000; i++) {
+            process.addProcessFlow(new ProcessFlow("flowName", "processName", i, Unit.kg, IOFlow.Input, State.virgin));
+        }
+        DataExporter dataExporter = new DataExporter();
+
+        for (String fileName : new String[]{"testCompressed.csv.gz", "testCompressed.json.gz", "testCompressed.bin.gz"}) {
+            try {
+                if (fileName.endsWith(".csv.gz")) {
+                    dataExporter.toCsvProductSystem(productSystem, fileName);
+                } else if (fileName.endsWith(".json.gz")) {
+                    dataExporter.toJsonProductSystem(productSystem, fileName);
+                } else {
+                    dataExporter.toBinaryProductSystem(productSystem, fileName);
+                }
+
+                //Test the file is gzip
+                byte[] bytes = Files.readAllBytes(Path.of(fileName));
+                assertEquals((byte) 0x1f, bytes[0]);
+                assertEquals((byte) 0x8b, bytes[1]);
+
+                //Test same ProductSystem read back
+                if (fileName.endsWith(".csv.gz")) {
+                    assertTrue(bytes.length < csv(productSystem).length() / 4);
+                    try (GZIPInputStream inputStream = new GZIPInputStream(Files.newInputStream(Path.of(fileName)))) {
+                        assertEquals(csv(productSystem), new String(inputStream.readAllBytes(), StandardCharsets.UTF_8));
+                    }
+                } else if (fileName.endsWith(".json.gz")) {
+                    assertEquals(csv(productSystem), csv(parser.loadFromJson(fileName)));
+                } else {
+                    assertEquals(csv(productSystem), csv(parser.loadFromBinary(fileName)));
+                }
+            } finally {
+                Files.deleteIfExists(Path.of(fileName));
+            }
+        }
+
+        //Test compressed CSV files are read like plain ones, also in parallel
+        String plainFileName = "testPlain.csv";
+        String fileName = "testPlain.csv.gz";
+        try {
+            createTestCsvFile(plainFileName);
+            try (OutputStream outputStream = new GZIPOutputStream(Files.newOutputStream(Path.of(fileName)))) {
+                outputStream.write(Files.readAllBytes(Path.of(plainFileName)));
+            }
+            String expected = csv(parser.loadFromCsv(plainFileName));
+            assertEquals(expected, csv(parser.loadFromCsv(fileName)));
+            assertEquals(expected, csv(parser.loadFromCsvParallel(fileName)));
+
+            //Test not a gzip file
+            Files.copy(Path.of(plainFileName), Path.of(fileName), StandardCopyOption.REPLACE_EXISTING);
+            assertThrows(IOException.class, () -> parser.loadFromCsv(fileName));
+        } finally {
+            Files.deleteIfExists(Path.of(plainFileName));
+            Files.deleteIfExists(Path.of(fileName));
+        }
+    }
+
+    @Test
+    public void testLoadFromCsvUtf8() throws IOException {
+        String fileName = "testUtf8.csv";
+        try {
+            Files.writeString(Path.of(fileName), "papelão,material,reciclável\n", StandardCharsets.UTF_8);
+
+            //Test plain CSV files are read in UTF-8, also in parallel
+            assertEquals("papelão", parser.loadFromCsv(fileName).getFlows().getFirst().getName());
+            assertEquals("reciclável", parser.loadFromCsv(fileName).getFlows().getFirst().getComment());
+            assertEquals("papelão", parser.loadFromCsvParallel(fileName).getFlows().getFirst().getName());
+        } finally {
+            Files.deleteIfExists(Path.of(fileName));
+        }
+    }
+
+    private static String csv(ProductSystem productSystem) throws IOException {
+        StringWriter writer = new StringWriter();
+        productSystem.writeCsv(writer);
+        return writer.toString();
+    }
 
     private void createInvalidDataCsvFile(String fileName) throws IOException {
         try (BufferedWriter writer = new BufferedWriter(new FileWriter(fileName))) {
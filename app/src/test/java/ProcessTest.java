@@ -6,6 +6,7 @@ import esii.grupo19.ProcessFlow;
 import exceptions.ElementNotFoundException;
 import org.junit.jupiter.api.*;
 
+import java.util.LinkedList;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -42,6 +43,33 @@ public class ProcessTest {
         assertEquals("This Input already exists", exception.getMessage());
     }
 
+    @Test
+    void addSharedProcessFlow() throws ElementNotFoundException {
+        Process other = new Process("processName", "productName", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+
+        //same processFlow in two processes
+        process.addProcessFlow(processFlow);
+        other.addProcessFlow(processFlow);
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> other.addProcessFlow(processFlow));
+        assertEquals("This Input already exists", exception.getMessage());
+
+        //removing it from one process keeps it in the other
+        process.removeProcessFlow(processFlow.getId());
+        assertEquals(1, other.getProcessFlows().size());
+        exception = assertThrows(IllegalArgumentException.class, () -> other.addProcessFlow(processFlow));
+        assertEquals("This Input already exists", exception.getMessage());
+        process.addProcessFlow(processFlow);
+        assertEquals(1, process.getProcessFlows().size());
+
+        //processFlows set as a list
+        LinkedList<ProcessFlow> processFlows = new LinkedList<>();
+        ProcessFlow listed = new ProcessFlow("flowName", "processName", 2.0, Unit.g, IOFlow.Output, State.waste);
+        processFlows.add(listed);
+        process.setProcessFlows(processFlows);
+        exception = assertThrows(IllegalArgumentException.class, () -> process.addProcessFlow(listed));
+        assertEquals("This Input already exists", exception.getMessage());
+    }
+
     @Test
     void removeProcessFlow() throws ElementNotFoundException {
         processFlow = new ProcessFlow("flowName2", "processName", 1.0, Unit.g, IOFlow.Input, State.virgin);
@@ -62,6 +90,10 @@ public class ProcessTest {
         //valid id
         assertEquals(processFlow, process.removeProcessFlow(processFlow.getId()));
 
+        //removed processFlow can be added again
+        process.addProcessFlow(processFlow);
+        assertEquals(1, process.getProcessFlows().size());
+
     }
 
 
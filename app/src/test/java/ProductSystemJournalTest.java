@@ -0,0 +1,221 @@
+import enums.*;
+import esii.grupo19.*;
+import esii.grupo19.Process;
+import org.junit.jupiter.api.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ProductSystemJournalTest {
+
+    Path directory;
+    Contact contact;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        contact = new Contact("name", "email", "organization", "address");
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        for (Path file : files()) {
+            Files.delete(file);
+        }
+        Files.delete(directory);
+    }
+
+    @Test
+    void recover() throws Exception {
+        ProductSystem expected;
+        ProcessFlow shared = new ProcessFlow("plastic", "bottleProcess", 10.0, Unit.kg, IOFlow.Input, State.virgin);
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            expected = journal.getProductSystem();
+            assertTrue(expected.getFlows().isEmpty());
+
+            Flow plastic = new Flow("plastic", FlowType.material, "comment");
+            expected.addFlow(plastic);
+            expected.addFlow(new Flow("paper", FlowType.material, "comment"));
+            expected.addFlow(new Flow("glass", FlowType.material, "comment"));
+            Process bottle = new Process("bottleProcess", "bottle", ProcessType.primary, "operator", "location", "references", contact, "comment");
+            bottle.addProcessFlow(shared);
+            expected.addProcess(bottle);
+            Process recycling = new Process("bottleRecycling", "bottle", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+            expected.addProcess(recycling);
+            recycling.addProcessFlow(shared);
+            ProcessFlow waste = new ProcessFlow("plastic", "bottleRecycling", 3.0, Unit.kg, IOFlow.Output, State.waste);
+            recycling.addProcessFlow(waste);
+            expected.addProcess(new Process("boxProcess", "box", ProcessType.primary, "operator", "location", "references", contact, "comment"));
+
+            //setters and removals
+            plastic.setComment("changed");
+            bottle.setContact(new Contact("other", "email", "organization", "address"));
+            shared.setFlowQuantity(12.5);
+            recycling.removeProcessFlow(waste.getId());
+            expected.removeFlow("paper");
+            expected.removeProcess("boxProcess");
+            journal.commit();
+        }
+
+        //Test same ProductSystem, with the same ids, after reopening
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            ProductSystem recovered = journal.getProductSystem();
+            assertEquals(csv(expected), csv(recovered));
+            assertEquals(2, recovered.getFlows().size());
+            assertEquals("changed", recovered.getFlowById(expected.getFlows().getFirst().getId()).getComment());
+            Process bottle = recovered.getProcessById(expected.getProcesses().getFirst().getId());
+            assertEquals("other", bottle.getContact().getName());
+            Process recycling = recovered.getProcessById(expected.getProcesses().getLast().getId());
+            assertEquals(1, recycling.getProcessFlows().size());
+            assertSame(bottle.getProcessFlows().getFirst(), recycling.getProcessFlows().getFirst());
+            assertEquals(12.5, recycling.getProcessFlows().getFirst().getFlowQuantity());
+
+            //Test changes after recovery are recorded too
+            recovered.addFlow(new Flow("wood", FlowType.material, "comment"));
+        }
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            assertEquals(3, journal.getProductSystem().getFlows().size());
+        }
+    }
+
+    @Test
+    void recoverTornRecord() throws Exception {
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            journal.getProductSystem().addFlow(new Flow("plastic", FlowType.material, "comment"));
+            journal.getProductSystem().addFlow(new Flow("paper", FlowType.material, "comment"));
+        }
+        Path journalFile = directory.resolve("journal-0.log");
+        long size = Files.size(journalFile);
+
+        //Test a record torn by a crash is dropped, and the journal truncated after the last complete record
+        Files.write(journalFile, new byte[]{0, 0, 0, 40, 1, 2, 3}, StandardOpenOption.APPEND);
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            assertEquals(2, journal.getProductSystem().getFlows().size());
+            assertEquals(size, Files.size(journalFile));
+        }
+
+        //Test a record with an invalid checksum is dropped with the ones after it
+        byte[] bytes = Files.readAllBytes(journalFile);
+        bytes[bytes.length - 1] ^= 1;
+        Files.write(journalFile, bytes);
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            assertEquals(1, journal.getProductSystem().getFlows().size());
+        }
+
+        //Test not a journal
+        Files.writeString(journalFile, "not a journal");
+        Exception exception = assertThrows(IOException.class, () -> ProductSystemJournal.open(directory.toString()));
+        assertEquals("Invalid journal", exception.getMessage());
+        assertThrows(IllegalArgumentException.class, () -> ProductSystemJournal.open(null));
+    }
+
+    @Test
+    void compact() throws Exception {
+        String expected;
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            journal.setCompactionThreshold(4096);
+            ProductSystem productSystem = journal.getProductSystem();
+            productSystem.addFlow(new Flow("plastic", FlowType.material, "comment"));
+            Process process = new Process("process", "product", ProcessType.primary, "operator", "location", "references", contact, "comment");
+            productSystem.addProcess(process);
+            for (int i = 0; i < 500; i++) {
+                process.addProcessFlow(new ProcessFlow("plastic", "process", i, Unit.kg, IOFlow.Input, State.virgin));
+            }
+            expected = csv(productSystem);
+
+            //Test the journal is compacted into a snapshot by the next commit, keeping a single generation
+            assertEquals("journal-0.log", files().get(0).getFileName().toString());
+            journal.commit();
+            List<Path> files = files();
+            assertEquals(2, files.size());
+            assertTrue(files.get(0).getFileName().toString().startsWith("journal-"));
+            assertTrue(files.get(1).getFileName().toString().startsWith("snapshot-"));
+            assertNotEquals("journal-0.log", files.get(0).getFileName().toString());
+
+            //Test an explicit compaction leaves an empty journal
+            journal.compact();
+            files = files();
+            assertEquals(2, files.size());
+            assertEquals(8, Files.size(files.get(0)));
+        }
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            assertEquals(expected, csv(journal.getProductSystem()));
+        }
+    }
+
+    @Test
+    void compactMultiRecordChange() throws Exception {
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            journal.setCompactionThreshold(50);
+            LinkedList<Flow> flows = new LinkedList<>();
+            flows.add(new Flow("a", FlowType.material, "comment"));
+            flows.add(new Flow("b", FlowType.material, "comment"));
+            flows.add(new Flow("c", FlowType.material, "comment"));
+            journal.getProductSystem().setFlows(flows);
+            journal.commit();
+        }
+
+        //Test a change reported by several records is not replayed twice after a compaction
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            assertEquals("a\nb\nc\n", journal.getProductSystem().listAllFlows());
+        }
+    }
+
+    @Test
+    void removedProcessFlow() throws Exception {
+        ProcessFlow processFlow = new ProcessFlow("plastic", "process", 1.0, Unit.kg, IOFlow.Input, State.virgin);
+        ProcessFlow released = new ProcessFlow("plastic", "process", 2.0, Unit.kg, IOFlow.Input, State.virgin);
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            ProductSystem productSystem = journal.getProductSystem();
+            Process process = new Process("process", "product", ProcessType.primary, "operator", "location", "references", contact, "comment");
+            process.addProcessFlow(processFlow);
+            productSystem.addProcess(process);
+            Process other = new Process("other", "product", ProcessType.primary, "operator", "location", "references", contact, "comment");
+            other.addProcessFlow(released);
+            productSystem.addProcess(other);
+
+            ProcessFlow shared = new ProcessFlow("plastic", "process", 3.0, Unit.kg, IOFlow.Input, State.virgin);
+            process.addProcessFlow(shared);
+            other.addProcessFlow(shared);
+
+            //Test changes to removed process flows are not recorded
+            process.removeProcessFlow(processFlow.getId());
+            process.removeProcessFlow(shared.getId());
+            productSystem.removeProcess("other");
+            journal.compact();
+            long version = productSystem.getVersion();
+            processFlow.setFlowQuantity(5);
+            released.setFlowQuantity(5);
+            assertEquals(version, productSystem.getVersion());
+
+            //Test a shared process flow may still be in another process, so its changes are recorded, and skipped
+            //on recovery when it is in no process
+            shared.setFlowQuantity(5);
+            assertNotEquals(version, productSystem.getVersion());
+            journal.commit();
+        }
+        try (ProductSystemJournal journal = ProductSystemJournal.open(directory.toString())) {
+            assertEquals(1, journal.getProductSystem().getProcessCount());
+            assertTrue(journal.getProductSystem().getProcesses().getFirst().getProcessFlows().isEmpty());
+        }
+    }
+
+    private List<Path> files() throws IOException {
+        try (var entries = Files.list(directory)) {
+            return entries.sorted().toList();
+        }
+    }
+
+    private static String csv(ProductSystem productSystem) throws IOException {
+        StringWriter writer = new StringWriter();
+        productSystem.writeCsv(writer);
+        return writer.toString();
+    }
+}
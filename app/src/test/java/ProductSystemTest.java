@@ -9,12 +9,18 @@ import esii.grupo19.ProductSystem;
 import static org.junit.jupiter.api.Assertions.*;
 
 import exceptions.ElementNotFoundException;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
 import org.junit.jupiter.api.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.Iterator;
 
 class ProductSystemTest {
 
@@ -104,6 +110,154 @@ class ProductSystemTest {
         assertFalse(productSystem.getFlows().contains(flow));
     }
 
+    @Test
+    void removeFromMiddle() throws ElementNotFoundException {
+        Flow flow2 = new Flow("flowName2", FlowType.energy, "comment");
+        Flow flow3 = new Flow("flowName3", FlowType.energy, "comment");
+        Flow flow4 = new Flow("flowName4", FlowType.energy, "comment");
+        productSystem.addFlow(flow);
+        productSystem.addFlow(flow2);
+        productSystem.addFlow(flow3);
+        productSystem.addFlow(flow4);
+
+        //removing an element that is not at the end of the list
+        assertEquals(flow2, productSystem.removeFlow("flowName2"));
+        assertEquals(3, productSystem.getFlows().size());
+        assertEquals(flow3, productSystem.getFlows().get(1));
+        assertNull(productSystem.getFlowByName("flowName2"));
+        assertNull(productSystem.getFlowById(flow2.getId()));
+
+        //the removed flow can be added again
+        productSystem.addFlow(flow2);
+        assertEquals(flow2, productSystem.getFlows().getLast());
+    }
+
+    @Test
+    void getByNameAndId() {
+        Process process2 = new Process("processName2", "productName", ProcessType.recycling, "operator", "location", "references", contact, "comment");
+        Flow sameName = new Flow("flowName", FlowType.material, "comment");
+        productSystem.addFlow(flow);
+        productSystem.addFlow(sameName);
+        productSystem.addProcess(process);
+        productSystem.addProcess(process2);
+
+        //first flow with the name
+        assertEquals(flow, productSystem.getFlowByName("flowName"));
+        assertEquals(sameName, productSystem.getFlowById(sameName.getId()));
+        assertEquals(process2, productSystem.getProcessByName("processName2"));
+        assertEquals(process, productSystem.getProcessById(process.getId()));
+
+        //not found
+        assertNull(productSystem.getFlowByName("nonExistingName"));
+        assertNull(productSystem.getProcessByName("nonExistingName"));
+
+        //renamed after being added
+        process2.setName("renamed");
+        assertNull(productSystem.getProcessByName("processName2"));
+        assertEquals(process2, productSystem.getProcessByName("renamed"));
+
+        //a renamed flow that shared its name leaves the index to the next flow with that name
+        flow.setName("renamedFlow");
+        assertEquals(sameName, productSystem.getFlowByName("flowName"));
+        assertEquals(flow, productSystem.getFlowByName("renamedFlow"));
+        flow.setName("flowName");
+        assertEquals(flow, productSystem.getFlowByName("flowName"));
+        assertNull(productSystem.getFlowByName("renamedFlow"));
+
+        //added through the list
+        Flow flow2 = new Flow("flowName2", FlowType.energy, "comment");
+        productSystem.getFlows().add(flow2);
+        assertEquals(flow2, productSystem.getFlowById(flow2.getId()));
+        assertEquals(flow2, productSystem.getFlowByName("flowName2"));
+        Exception exception = assertThrows(IllegalArgumentException.class, () -> productSystem.addFlow(flow2));
+        assertEquals("Flow already exists.", exception.getMessage());
+
+        //renamed after being added through the list
+        flow2.setName("renamedFlow2");
+        assertEquals(flow2, productSystem.getFlowByName("renamedFlow2"));
+
+        //replaced and removed through the list, its iterators and its sublists
+        Flow flow3 = new Flow("flowName3", FlowType.energy, "comment");
+        productSystem.getFlows().set(2, flow3);
+        assertNull(productSystem.getFlowById(flow2.getId()));
+        assertEquals(flow3, productSystem.getFlowByName("flowName3"));
+        Iterator<Flow> iterator = productSystem.getFlows().iterator();
+        iterator.next();
+        iterator.remove();
+        assertEquals(sameName, productSystem.getFlowByName("flowName"));
+        productSystem.getFlows().subList(1, 2).clear();
+        assertNull(productSystem.getFlowByName("flowName3"));
+        assertEquals(1, productSystem.getFlows().size());
+        productSystem.getProcesses().clear();
+        assertNull(productSystem.getProcessById(process.getId()));
+        productSystem.addProcess(process);
+        assertEquals(process, productSystem.getProcessByName("processName"));
+
+        //null arguments
+        exception = assertThrows(IllegalArgumentException.class, () -> productSystem.getFlowByName(null));
+        assertEquals("Name must not be null.", exception.getMessage());
+        exception = assertThrows(IllegalArgumentException.class, () -> productSystem.getProcessById(null));
+        assertEquals("Id must not be null.", exception.getMessage());
+    }
+
+    @Test
+    void getVersion() throws ElementNotFoundException {
+        long version = productSystem.getVersion();
+
+        //additions
+        productSystem.addFlow(flow);
+        productSystem.addProcess(process);
+        process.addProcessFlow(processFlow);
+        assertEquals(version + 3, productSystem.getVersion());
+
+        //setters of the flows, processes and process flows
+        version = productSystem.getVersion();
+        flow.setComment("changed");
+        process.setOperator("changed");
+        processFlow.setFlowQuantity(2.0);
+        assertEquals(version + 3, productSystem.getVersion());
+        assertEquals(1, flow.getVersion());
+        assertEquals(1, processFlow.getVersion());
+
+        //removed elements are no longer counted
+        process.removeProcessFlow(processFlow.getId());
+        productSystem.removeProcess("processName");
+        productSystem.removeFlow("flowName");
+        version = productSystem.getVersion();
+        flow.setComment("removed");
+        process.setOperator("removed");
+        assertEquals(version, productSystem.getVersion());
+
+        //changes made directly to the lists are not counted
+        productSystem.getFlows().add(new Flow("flowName2", FlowType.energy, "comment"));
+        assertEquals(version, productSystem.getVersion());
+    }
+
+    @Test
+    void snapshot() throws ElementNotFoundException {
+        productSystem.addFlow(flow);
+        productSystem.addProcess(process);
+        ProductSystem snapshot = productSystem.snapshot();
+
+        //later changes are not seen
+        productSystem.addFlow(new Flow("flowName2", FlowType.energy, "comment"));
+        productSystem.removeProcess("processName");
+        assertEquals(1, snapshot.getFlows().size());
+        assertEquals(process, snapshot.getProcessByName("processName"));
+        assertEquals(flow, snapshot.getFlowById(flow.getId()));
+        assertNotEquals(productSystem.getVersion(), snapshot.getVersion());
+
+        //the lists returned are copies
+        snapshot.getProcesses().clear();
+        assertEquals(1, snapshot.getProcesses().size());
+
+        //read-only
+        Exception exception = assertThrows(UnsupportedOperationException.class, () -> snapshot.addFlow(flow));
+        assertEquals("ProductSystem snapshot is read-only.", exception.getMessage());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.removeProcess("processName"));
+        assertSame(snapshot, snapshot.snapshot());
+    }
+
     @Test
     public void testsaveToJson() throws IOException {
         // Configurar o nome do arquivo
@@ -133,4 +287,40 @@ class ProductSystemTest {
 
     }
 
+    @Test
+    public void testWriteJson() throws IOException, ParseException {
+        productSystem.addFlow(flow);
+        productSystem.addProcess(process);
+        process.addProcessFlow(processFlow);
+        Process noContact = new Process("other \"process\"", "productName", ProcessType.recycling, "operator", "location", "references", null, null);
+        productSystem.addProcess(noContact);
+
+        StringWriter writer = new StringWriter();
+        productSystem.writeJson(writer);
+
+        //valid JSON with the same keys as before, and ids written as strings
+        JSONObject json = (JSONObject) new JSONParser().parse(writer.toString());
+        JSONArray flows = (JSONArray) json.get("flows");
+        assertEquals(1, flows.size());
+        JSONObject flowObject = (JSONObject) flows.get(0);
+        assertEquals(flow.getId().toString(), flowObject.get("id"));
+        assertEquals("flowName", flowObject.get("name"));
+        assertEquals("energy", flowObject.get("type"));
+        JSONArray processes = (JSONArray) json.get("processes");
+        assertEquals(2, processes.size());
+        JSONObject processObject = (JSONObject) processes.get(0);
+        assertEquals(process.getId().toString(), processObject.get("id"));
+        assertEquals("primary", processObject.get("processType"));
+        assertEquals("address", ((JSONObject) processObject.get("contact")).get("adress"));
+        JSONObject processFlowObject = (JSONObject) ((JSONArray) processObject.get("processFlows")).get(0);
+        assertEquals(processFlow.getId().toString(), processFlowObject.get("id"));
+        assertEquals(1.0, ((Double) processFlowObject.get("flowQuantity")).doubleValue());
+        assertEquals("virgin", processFlowObject.get("state"));
+        JSONObject otherObject = (JSONObject) processes.get(1);
+        assertEquals("other \"process\"", otherObject.get("name"));
+        assertNull(otherObject.get("contact"));
+        assertNull(otherObject.get("comment"));
+        assertEquals(0, ((JSONArray) otherObject.get("processFlows")).size());
+    }
+
 }